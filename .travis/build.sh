@@ -1,3 +1,12 @@
 #!/bin/sh
 curl -fsLO https://raw.githubusercontent.com/scijava/scijava-scripts/master/travis-build.sh
-sh travis-build.sh
+sh travis-build.sh || exit $?
+
+# Replay the viewer scenarios under headless AWT, failing the build when a
+# step regresses against the baseline recorded on the CI machines.
+baseline=.travis/replay-baseline.csv
+if [ -f "$baseline" ]; then
+	replayArgs="-Dreplay.baseline=$PWD/$baseline"
+fi
+mvn -B -Pbenchmarks -Dreplay.headless=true $replayArgs \
+	test-compile exec:exec@replay
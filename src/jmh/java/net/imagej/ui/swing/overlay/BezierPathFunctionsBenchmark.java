@@ -0,0 +1,101 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.ui.swing.overlay;
+
+import java.util.concurrent.TimeUnit;
+
+import net.imagej.ui.swing.overlay.BezierPathFunctions.OP;
+
+import org.jhotdraw.geom.BezierPath;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks {@link BezierPathFunctions#op} on two overlapping star-shaped
+ * polygons.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class BezierPathFunctionsBenchmark {
+
+	@Param({ "16", "256", "4096" })
+	private int vertices;
+
+	@Param({ "ADD", "XOR", "INTERSECT", "SUBTRACT" })
+	private OP op;
+
+	private BezierPath path1, path2;
+
+	@Setup
+	public void setUp() {
+		path1 = star(200, 200, vertices);
+		path2 = star(260, 230, vertices);
+	}
+
+	@Benchmark
+	public BezierPath op() {
+		return BezierPathFunctions.op(path1, path2, op);
+	}
+
+	// -- Helper methods --
+
+	/** Creates a closed star with alternating outer and inner vertices. */
+	private static BezierPath star(final double cx, final double cy,
+		final int vertices)
+	{
+		final BezierPath path = new BezierPath();
+		for (int i = 0; i < vertices; i++) {
+			final double angle = 2 * Math.PI * i / vertices;
+			final double r = i % 2 == 0 ? 150 : 100;
+			final double x = cx + r * Math.cos(angle);
+			final double y = cy + r * Math.sin(angle);
+			if (i == 0) path.moveTo(x, y);
+			else path.lineTo(x, y);
+		}
+		path.setClosed(true);
+		return path;
+	}
+
+}
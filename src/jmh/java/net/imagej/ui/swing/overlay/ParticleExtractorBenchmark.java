@@ -0,0 +1,119 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.ui.swing.overlay;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.scijava.Context;
+import org.scijava.thread.ThreadService;
+
+/**
+ * Benchmarks finding the particles of a binary plane of small nuclei with a
+ * {@link ParticleExtractor}, on one worker and on one per processor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ParticleExtractorBenchmark {
+
+	private static final int SIZE = 4096;
+	private static final int NUCLEI = 20000;
+
+	/** Number of workers, or 0 for one per processor. */
+	@Param({ "1", "0" })
+	private int workers;
+
+	private Context context;
+	private Img<UnsignedByteType> image;
+	private ParticleExtractor extractor;
+
+	@Setup
+	public void setUp() {
+		context = new Context(ThreadService.class);
+		final ThreadService threadService = context.service(ThreadService.class);
+		image = ArrayImgs.unsignedBytes(SIZE, SIZE);
+		final RandomAccess<UnsignedByteType> access = image.randomAccess();
+		final Random random = new Random(0xcafe);
+		for (int k = 0; k < NUCLEI; k++) {
+			final int cx = random.nextInt(SIZE), cy = random.nextInt(SIZE);
+			final int radius = 3 + random.nextInt(6);
+			for (int y = Math.max(0, cy - radius); y <= Math.min(SIZE - 1, cy +
+				radius); y++)
+			{
+				for (int x = Math.max(0, cx - radius); x <= Math.min(SIZE - 1, cx +
+					radius); x++)
+				{
+					final int dx = x - cx, dy = y - cy;
+					if (dx * dx + dy * dy > radius * radius) continue;
+					access.setPosition(x, 0);
+					access.setPosition(y, 1);
+					access.get().set(255);
+				}
+			}
+		}
+		extractor = workers == 0 ? new ParticleExtractor(threadService)
+			: new ParticleExtractor(threadService, workers);
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.dispose();
+	}
+
+	@Benchmark
+	public List<ParticleExtractor.Particle> extract() {
+		return extractor.extract(image, 0, 1, new long[2], 1, 255);
+	}
+
+}
@@ -0,0 +1,120 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.ui.swing.overlay;
+
+import java.awt.geom.AffineTransform;
+import java.util.concurrent.TimeUnit;
+
+import net.imagej.display.ImageDisplayService;
+import net.imagej.display.OverlayService;
+import net.imagej.display.OverlayView;
+import net.imagej.overlay.PolygonOverlay;
+import net.imglib2.RealPoint;
+import net.imglib2.roi.PolygonRegionOfInterest;
+
+import org.jhotdraw.draw.BezierFigure;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.scijava.Context;
+
+/**
+ * Benchmarks {@link PolygonJHotDrawAdapter#updateOverlay} while a polygon
+ * figure is being dragged, i.e. every vertex moves between updates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class PolygonJHotDrawAdapterBenchmark {
+
+	@Param({ "4", "64", "1024" })
+	private int vertices;
+
+	private Context context;
+	private PolygonJHotDrawAdapter adapter;
+	private OverlayView view;
+	private BezierFigure figure;
+
+	private final AffineTransform right = AffineTransform.getTranslateInstance(1,
+		0);
+	private final AffineTransform left = AffineTransform.getTranslateInstance(-1,
+		0);
+	private boolean moveRight;
+
+	@Setup
+	public void setUp() {
+		context = new Context(ImageDisplayService.class, OverlayService.class);
+		adapter = new PolygonJHotDrawAdapter();
+		adapter.setContext(context);
+
+		final PolygonOverlay overlay = new PolygonOverlay(context);
+		final PolygonRegionOfInterest roi = overlay.getRegionOfInterest();
+		for (int i = 0; i < vertices; i++) {
+			final double angle = 2 * Math.PI * i / vertices;
+			roi.addVertex(i, new RealPoint(new double[] {
+				500 + 400 * Math.cos(angle), 500 + 400 * Math.sin(angle) }));
+		}
+		view = (OverlayView) context.service(ImageDisplayService.class)
+			.createDataView(overlay);
+
+		figure = (BezierFigure) adapter.createDefaultFigure();
+		adapter.updateFigure(view, figure);
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.dispose();
+	}
+
+	@Benchmark
+	public OverlayView updateOverlay() {
+		moveRight = !moveRight;
+		figure.willChange();
+		figure.transform(moveRight ? right : left);
+		figure.changed();
+		adapter.updateOverlay(figure, view);
+		return view;
+	}
+
+}
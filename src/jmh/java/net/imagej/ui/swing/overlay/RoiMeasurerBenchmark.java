@@ -0,0 +1,144 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.ui.swing.overlay;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RealPoint;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.roi.EllipseRegionOfInterest;
+import net.imglib2.roi.RegionOfInterest;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.scijava.Context;
+import org.scijava.thread.ThreadService;
+
+/**
+ * Benchmarks measuring many regions on every plane of a stack with a
+ * {@link RoiMeasurer}, versus asking each region about every pixel of its
+ * bounding box on every plane.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RoiMeasurerBenchmark {
+
+	private static final int SIZE = 512;
+	private static final int PLANES = 16;
+
+	@Param({ "10", "1000" })
+	private int regions;
+
+	private Context context;
+	private RoiMeasurer measurer;
+	private Img<FloatType> image;
+	private List<RegionOfInterest> rois;
+	private List<long[]> planes;
+
+	@Setup
+	public void setUp() {
+		context = new Context(ThreadService.class);
+		measurer = new RoiMeasurer(context.service(ThreadService.class));
+		image = ArrayImgs.floats(SIZE, SIZE, PLANES);
+		final Random random = new Random(0xcafe);
+		for (final FloatType t : image) {
+			t.set(random.nextFloat());
+		}
+		rois = new ArrayList<>(regions);
+		for (int i = 0; i < regions; i++) {
+			final double radius = 4 + 20 * random.nextDouble();
+			rois.add(new EllipseRegionOfInterest(new RealPoint(SIZE * random
+				.nextDouble(), SIZE * random.nextDouble()), new double[] { radius,
+					radius }));
+		}
+		planes = RoiMeasurer.planes(image, 0, 1);
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.dispose();
+	}
+
+	@Benchmark
+	public RoiMeasurement[][] measurer() {
+		final List<RoiMask> masks = measurer.rasterize(rois, SIZE, SIZE);
+		return measurer.measure(image, 0, 1, masks, planes);
+	}
+
+	@Benchmark
+	public double perRegion() {
+		final RandomAccess<FloatType> access = image.randomAccess();
+		final double[] position = new double[2];
+		double sum = 0;
+		for (final RegionOfInterest roi : rois) {
+			for (int z = 0; z < PLANES; z++) {
+				access.setPosition(z, 2);
+				final long x0 = Math.max(0, (long) Math.ceil(roi.realMin(0)));
+				final long y0 = Math.max(0, (long) Math.ceil(roi.realMin(1)));
+				final long x1 = Math.min(SIZE - 1, (long) Math.floor(roi.realMax(0)));
+				final long y1 = Math.min(SIZE - 1, (long) Math.floor(roi.realMax(1)));
+				for (long y = y0; y <= y1; y++) {
+					position[1] = y;
+					access.setPosition(y, 1);
+					for (long x = x0; x <= x1; x++) {
+						position[0] = x;
+						if (!roi.contains(position)) continue;
+						access.setPosition(x, 0);
+						sum += access.get().getRealDouble();
+					}
+				}
+			}
+		}
+		return sum;
+	}
+
+}
@@ -0,0 +1,151 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.ui.swing.overlay;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RealPoint;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.roi.EllipseRegionOfInterest;
+import net.imglib2.roi.RegionOfInterest;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.scijava.Context;
+import org.scijava.thread.ThreadService;
+
+/**
+ * Benchmarks the mean intensity traces of many small regions over a movie,
+ * computed by a {@link RoiProfiler} in one pass per frame, versus a pass over
+ * the movie per region, on a single thread each.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RoiProfilerBenchmark {
+
+	private static final int SIZE = 256;
+	private static final int FRAMES = 200;
+
+	@Param({ "10", "1000" })
+	private int regions;
+
+	private Context context;
+	private Img<FloatType> movie;
+	private List<RoiMask> masks;
+	private List<long[]> frames;
+	private RoiProfiler profiler;
+
+	@Setup
+	public void setUp() {
+		context = new Context(ThreadService.class);
+		final ThreadService threadService = context.service(ThreadService.class);
+		movie = ArrayImgs.floats(SIZE, SIZE, FRAMES);
+		final Random random = new Random(0xcafe);
+		for (final FloatType t : movie) {
+			t.set(random.nextFloat());
+		}
+		final List<RegionOfInterest> rois = new ArrayList<>(regions);
+		for (int i = 0; i < regions; i++) {
+			rois.add(new EllipseRegionOfInterest(new RealPoint(SIZE * random
+				.nextDouble(), SIZE * random.nextDouble()), new double[] { 5, 5 }));
+		}
+		masks = new RoiMeasurer(threadService, 1).rasterize(rois, SIZE, SIZE);
+		frames = RoiMeasurer.planes(movie, 0, 1);
+		profiler = new RoiProfiler(threadService, masks, SIZE, 1);
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.dispose();
+	}
+
+	@Benchmark
+	public double profiler() {
+		final double[] total = new double[1];
+		profiler.profile(movie, 0, 1, frames, new RoiProfiler.Listener() {
+
+			@Override
+			public boolean planeProfiled(final int plane, final double[] means) {
+				total[0] += means[0];
+				return true;
+			}
+		});
+		return total[0];
+	}
+
+	@Benchmark
+	public double perRegion() {
+		final RandomAccess<FloatType> access = movie.randomAccess();
+		double total = 0;
+		for (final RoiMask mask : masks) {
+			for (int t = 0; t < FRAMES; t++) {
+				access.setPosition(t, 2);
+				double sum = 0;
+				for (int row = 0; row < mask.getHeight(); row++) {
+					access.setPosition(mask.getMinY() + row, 1);
+					for (int run = 0; run < mask.getRunCount(row); run++) {
+						access.setPosition(mask.getRunStart(row, run), 0);
+						for (int x = mask.getRunStart(row, run); x < mask.getRunEnd(row,
+							run); x++)
+						{
+							sum += access.get().getRealDouble();
+							access.fwd(0);
+						}
+					}
+				}
+				total += sum / mask.getArea();
+			}
+		}
+		return total;
+	}
+
+}
@@ -0,0 +1,118 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.ui.swing.overlay;
+
+import java.awt.geom.Path2D;
+import java.awt.geom.Point2D;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.jhotdraw.geom.BezierPath;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks hit-testing a traced outline, with {@link PolygonFigure#contains}
+ * (backed by a {@link SegmentIndex}) versus {@link Path2D#contains}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class SegmentIndexBenchmark {
+
+	private static final int POINTS = 1024;
+
+	@Param({ "64", "2048", "20000" })
+	private int vertices;
+
+	private PolygonFigure figure;
+	private Path2D.Double path;
+	private Point2D.Double[] points;
+	private int next;
+
+	@Setup
+	public void setUp() {
+		final Random random = new Random(0xcafe);
+		final BezierPath bezierPath = new BezierPath();
+		path = new Path2D.Double(Path2D.WIND_EVEN_ODD);
+		for (int i = 0; i < vertices; i++) {
+			final double angle = 2 * Math.PI * i / vertices;
+			final double radius = 400 + 20 * random.nextDouble();
+			final double x = 500 + radius * Math.cos(angle);
+			final double y = 500 + radius * Math.sin(angle);
+			bezierPath.add(new BezierPath.Node(x, y));
+			if (i == 0) path.moveTo(x, y);
+			else path.lineTo(x, y);
+		}
+		bezierPath.setClosed(true);
+		path.closePath();
+		figure = new PolygonFigure();
+		figure.setBezierPath(bezierPath);
+		figure.getSegmentIndex();
+
+		points = new Point2D.Double[POINTS];
+		for (int i = 0; i < POINTS; i++) {
+			points[i] = new Point2D.Double(1000 * random.nextDouble(), 1000 * random
+				.nextDouble());
+		}
+	}
+
+	@Benchmark
+	public boolean figureContains() {
+		return figure.contains(nextPoint());
+	}
+
+	@Benchmark
+	public boolean pathContains() {
+		return path.contains(nextPoint());
+	}
+
+	// -- Helper methods --
+
+	private Point2D.Double nextPoint() {
+		next = (next + 1) % POINTS;
+		return points[next];
+	}
+
+}
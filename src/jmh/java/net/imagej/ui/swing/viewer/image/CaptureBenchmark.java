@@ -0,0 +1,117 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.ui.swing.viewer.image;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import net.imagej.Dataset;
+import net.imagej.DatasetService;
+import net.imagej.axis.Axes;
+import net.imagej.axis.AxisType;
+import net.imagej.display.ImageDisplay;
+import net.imagej.display.ImageDisplayService;
+import net.imagej.overlay.RectangleOverlay;
+import net.imglib2.type.numeric.RealType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.scijava.Context;
+
+/**
+ * Benchmarks {@link JHotDrawImageCanvas#capture()} of an image with a number
+ * of rectangle overlays.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class CaptureBenchmark {
+
+	@Param({ "256", "1024" })
+	private int size;
+
+	@Param({ "0", "100", "1000" })
+	private int overlays;
+
+	private OffscreenViewer viewer;
+
+	@Setup
+	public void setUp() {
+		final Context context = OffscreenViewer.createContext();
+		final DatasetService datasetService =
+			context.service(DatasetService.class);
+		final Dataset dataset = datasetService.create(new long[] { size, size },
+			"capture", new AxisType[] { Axes.X, Axes.Y }, 8, false, false);
+		final Random random = new Random(0xcafe);
+		for (final RealType<?> t : dataset) {
+			t.setReal(random.nextInt(256));
+		}
+
+		final ImageDisplay display = OffscreenViewer.createDisplay(dataset);
+		final ImageDisplayService imageDisplayService =
+			context.service(ImageDisplayService.class);
+		for (int i = 0; i < overlays; i++) {
+			final RectangleOverlay overlay = new RectangleOverlay(context);
+			overlay.setOrigin(random.nextInt(size), 0);
+			overlay.setOrigin(random.nextInt(size), 1);
+			overlay.setExtent(1 + random.nextInt(size / 8), 0);
+			overlay.setExtent(1 + random.nextInt(size / 8), 1);
+			display.add(imageDisplayService.createDataView(overlay));
+		}
+
+		viewer = new OffscreenViewer(display, size, size);
+	}
+
+	@TearDown
+	public void tearDown() {
+		viewer.dispose();
+	}
+
+	@Benchmark
+	public Dataset capture() {
+		return viewer.getCanvas().capture();
+	}
+
+}
@@ -0,0 +1,141 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.ui.swing.viewer.image;
+
+import java.awt.BorderLayout;
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Graphics2D;
+
+import javax.swing.JComponent;
+import javax.swing.JPanel;
+
+import org.scijava.ui.viewer.DisplayPanel;
+import org.scijava.ui.viewer.DisplayWindow;
+
+/**
+ * A {@link DisplayWindow} which is never shown on screen. Its content is laid
+ * out at the window's size and painted into a caller-supplied
+ * {@link Graphics2D}.
+ * <p>
+ * The window is a {@link JPanel} rather than a frame, since the display panel
+ * expects its window to be a {@link Component}, and frames cannot be created
+ * under headless AWT.
+ * </p>
+ */
+public class OffscreenDisplayWindow extends JPanel implements DisplayWindow {
+
+	private JComponent content;
+	private String title;
+
+	public OffscreenDisplayWindow(final int width, final int height) {
+		super(new BorderLayout());
+		setSize(width, height);
+	}
+
+	// -- OffscreenDisplayWindow methods --
+
+	public JComponent getContent() {
+		return content;
+	}
+
+	public String getTitle() {
+		return title;
+	}
+
+	/** Lays out the content at the window's size and paints it. */
+	public void render(final Graphics2D g) {
+		layout(this);
+		printAll(g);
+	}
+
+	// -- DisplayWindow methods --
+
+	@Override
+	public void setTitle(final String s) {
+		title = s;
+	}
+
+	@Override
+	public void setContent(final DisplayPanel panel) {
+		if (content != null) remove(content);
+		content = (JComponent) panel;
+		add(content, BorderLayout.CENTER);
+	}
+
+	@Override
+	public void pack() {
+		// NB: The size of an offscreen window only changes when asked to.
+	}
+
+	@Override
+	public void showDisplay(final boolean visible) {
+		// NB: An offscreen window is never shown.
+	}
+
+	@Override
+	public void requestFocus() {
+		// NB: An offscreen window never has the focus.
+	}
+
+	@Override
+	public void close() {
+		if (content != null) remove(content);
+		content = null;
+	}
+
+	@Override
+	public int findDisplayContentScreenX() {
+		return 0;
+	}
+
+	@Override
+	public int findDisplayContentScreenY() {
+		return 0;
+	}
+
+	// -- Helper methods --
+
+	/**
+	 * Lays out the component tree. Unlike {@link Container#validate()}, this
+	 * also works for components which have no native peer.
+	 */
+	private static void layout(final Component c) {
+		if (!(c instanceof Container)) return;
+		final Container container = (Container) c;
+		container.doLayout();
+		for (final Component child : container.getComponents()) {
+			layout(child);
+		}
+	}
+
+}
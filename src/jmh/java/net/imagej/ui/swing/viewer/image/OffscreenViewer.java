@@ -0,0 +1,128 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.ui.swing.viewer.image;
+
+import net.imagej.Dataset;
+import net.imagej.DatasetService;
+import net.imagej.display.DataView;
+import net.imagej.display.DatasetView;
+import net.imagej.display.ImageDisplay;
+import net.imagej.display.ImageDisplayService;
+import net.imagej.display.OverlayService;
+import net.imagej.ui.swing.overlay.JHotDrawService;
+import net.imagej.ui.swing.sdi.viewer.SwingSdiImageDisplayViewer;
+
+import org.scijava.Context;
+import org.scijava.display.DisplayService;
+import org.scijava.event.EventService;
+import org.scijava.thread.ThreadService;
+import org.scijava.tool.ToolService;
+
+/**
+ * A {@link SwingSdiImageDisplayViewer}, with its {@link JHotDrawImageCanvas},
+ * viewing an image display inside an {@link OffscreenDisplayWindow}.
+ * <p>
+ * The viewer does not fit its window to the screen when there is none, so it
+ * can be used with {@code java.awt.headless=true}.
+ * </p>
+ */
+public class OffscreenViewer {
+
+	/** The services needed to view an image display with overlays. */
+	@SuppressWarnings("unchecked")
+	public static Context createContext() {
+		return new Context(DatasetService.class, DisplayService.class,
+			EventService.class, ImageDisplayService.class, JHotDrawService.class,
+			OverlayService.class, ThreadService.class, ToolService.class);
+	}
+
+	private final ImageDisplay display;
+	private final OffscreenDisplayWindow window;
+	private final SwingSdiImageDisplayViewer viewer;
+
+	public OffscreenViewer(final ImageDisplay display, final int width,
+		final int height)
+	{
+		this.display = display;
+		window = new OffscreenDisplayWindow(width, height);
+		viewer = new SwingSdiImageDisplayViewer();
+		viewer.setContext(display.getContext());
+		viewer.view(window, display);
+		refresh();
+	}
+
+	/** Creates a display of the given dataset, without showing it. */
+	public static ImageDisplay createDisplay(final Dataset dataset) {
+		final DisplayService displayService =
+			dataset.getContext().service(DisplayService.class);
+		return (ImageDisplay) displayService.createDisplayQuietly(dataset);
+	}
+
+	// -- OffscreenViewer methods --
+
+	public ImageDisplay getDisplay() {
+		return display;
+	}
+
+	public OffscreenDisplayWindow getWindow() {
+		return window;
+	}
+
+	public SwingSdiImageDisplayViewer getViewer() {
+		return viewer;
+	}
+
+	public JHotDrawImageCanvas getCanvas() {
+		return viewer.getCanvas();
+	}
+
+	/**
+	 * Brings the screen image and the figures up to date with the display, as
+	 * the viewer would on a display update.
+	 */
+	public void refresh() {
+		for (final DataView view : display) {
+			if (view instanceof DatasetView) {
+				((DatasetView) view).getProjector().map();
+			}
+		}
+		getCanvas().rebuild();
+		getCanvas().update();
+	}
+
+	/** Disposes the viewer and the display's context. */
+	public void dispose() {
+		viewer.dispose();
+		display.getContext().dispose();
+	}
+
+}
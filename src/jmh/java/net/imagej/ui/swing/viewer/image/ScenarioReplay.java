@@ -0,0 +1,577 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.ui.swing.viewer.image;
+
+import java.awt.EventQueue;
+import java.awt.Graphics2D;
+import java.awt.Toolkit;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import javax.swing.SwingUtilities;
+
+import net.imagej.Dataset;
+import net.imagej.DatasetService;
+import net.imagej.axis.Axes;
+import net.imagej.axis.AxisType;
+import net.imagej.display.ImageDisplay;
+import net.imagej.overlay.Overlay;
+import net.imagej.overlay.PolygonOverlay;
+import net.imagej.overlay.RectangleOverlay;
+import net.imglib2.Cursor;
+import net.imglib2.RealPoint;
+import net.imglib2.roi.PolygonRegionOfInterest;
+import net.imglib2.type.numeric.RealType;
+
+import org.jhotdraw.draw.Drawing;
+import org.jhotdraw.draw.Figure;
+import org.scijava.Context;
+
+/**
+ * Replays scripted scenarios against a {@link SwingSdiImageDisplayViewer} and
+ * its {@link JHotDrawImageCanvas}, rendering every frame into an offscreen
+ * image, and reports frame times and allocation per step.
+ * <p>
+ * A scenario is a script with one command per line:
+ * </p>
+ * <ul>
+ * <li>{@code open <width> <height> <depth>} - opens a new 8-bit image</li>
+ * <li>{@code scrub [axis]} - shows every position along an axis (default Z)
+ * </li>
+ * <li>{@code rois <count>} - adds random rectangles to the current plane</li>
+ * <li>{@code zoom <factor>...} - zooms to each of the given factors</li>
+ * <li>{@code drag <vertices> <steps>} - adds a polygon and drags it</li>
+ * </ul>
+ * <p>
+ * Arguments are the names of built-in scenarios ({@code all} for all of
+ * them) or paths to script files. The harness is configured through system
+ * properties:
+ * </p>
+ * <ul>
+ * <li>{@code replay.scale} - factor applied to the image sizes of
+ * {@code open} (default 1)</li>
+ * <li>{@code replay.out} - CSV file to write the results to</li>
+ * <li>{@code replay.baseline} - CSV file of earlier results; steps which got
+ * slower or allocate more than the tolerance allows make the harness exit
+ * with status 1</li>
+ * <li>{@code replay.tolerance} - allowed relative regression (default 0.25)
+ * </li>
+ * </ul>
+ * <p>
+ * The harness runs both under headless AWT and under a (virtual) frame
+ * buffer. Allocation is measured on the event dispatch thread, where all the
+ * rendering happens.
+ * </p>
+ */
+public class ScenarioReplay {
+
+	/** Built-in scenarios, by name. */
+	private static final Map<String, String> SCENARIOS = new LinkedHashMap<>();
+
+	static {
+		SCENARIOS.put("scrub", "open 4096 4096 200\nscrub Z\n");
+		SCENARIOS.put("rois", "open 4096 4096 1\nrois 10000\n");
+		SCENARIOS.put("zoom",
+			"open 4096 4096 1\nrois 1000\nzoom 0.125 0.25 0.5 1 2 4 8 1\n");
+		SCENARIOS.put("drag", "open 4096 4096 1\nrois 1000\ndrag 64 100\n");
+	}
+
+	/** Size of the offscreen window, in pixels. */
+	private static final int WINDOW_SIZE = 1024;
+
+	/** Maximum number of frames whose times are kept per step. */
+	private static final int MAX_FRAMES = 4096;
+
+	/** Maximum number of round trips to wait for the event queue to drain. */
+	private static final int MAX_DRAIN = 100;
+
+	/** Frame time changes smaller than this are considered noise. */
+	private static final double TIME_NOISE_MS = 1;
+
+	/** Allocation changes smaller than this are considered noise. */
+	private static final double ALLOC_NOISE_MB = 1;
+
+	private final double scale;
+	private final Random random = new Random(0xcafe);
+	private final List<Step> steps = new ArrayList<>();
+
+	private final BufferedImage image = new BufferedImage(WINDOW_SIZE,
+		WINDOW_SIZE, BufferedImage.TYPE_INT_ARGB);
+	private final Graphics2D graphics = image.createGraphics();
+
+	private Context context;
+	private Dataset dataset;
+	private ImageDisplay display;
+	private OffscreenViewer viewer;
+
+	public ScenarioReplay(final double scale) {
+		this.scale = scale;
+	}
+
+	public static void main(final String[] args) throws Exception {
+		final List<String> names = new ArrayList<>();
+		for (final String arg : args) {
+			if (arg.equals("all")) names.addAll(SCENARIOS.keySet());
+			else names.add(arg);
+		}
+		if (names.isEmpty()) names.addAll(SCENARIOS.keySet());
+
+		final ScenarioReplay replay = new ScenarioReplay(Double.parseDouble(System
+			.getProperty("replay.scale", "1")));
+		for (final String name : names) {
+			replay.run(name, script(name));
+		}
+		replay.report(System.out);
+
+		final String out = System.getProperty("replay.out", "");
+		if (!out.isEmpty()) replay.write(new File(out));
+
+		int regressions = 0;
+		final String baseline = System.getProperty("replay.baseline", "");
+		if (!baseline.isEmpty()) {
+			final double tolerance =
+				Double.parseDouble(System.getProperty("replay.tolerance", "0.25"));
+			regressions = replay.compare(new File(baseline), tolerance, System.out);
+		}
+		System.exit(regressions > 0 ? 1 : 0);
+	}
+
+	// -- ScenarioReplay methods --
+
+	/** Runs the given scenario script, recording the results of each step. */
+	public void run(final String scenario, final String script)
+		throws InterruptedException, InvocationTargetException
+	{
+		int lineNumber = 0;
+		try {
+			for (final String rawLine : script.split("\n")) {
+				lineNumber++;
+				final String line = rawLine.trim();
+				if (line.isEmpty() || line.startsWith("#")) continue;
+				try {
+					execute(scenario, line);
+				}
+				catch (final IllegalArgumentException exc) {
+					throw new IllegalArgumentException(scenario + ":" + lineNumber +
+						": " + exc.getMessage(), exc);
+				}
+			}
+		}
+		finally {
+			close();
+		}
+	}
+
+	/** Prints the results of all steps so far. */
+	public void report(final PrintStream out) {
+		out.println(String.format("%-8s %-36s %6s %9s %9s %12s", "scenario",
+			"step", "frames", "p50 ms", "p99 ms", "MB/frame"));
+		for (final Step step : steps) {
+			out.println(String.format("%-8s %-36s %6d %9.2f %9.2f %12.2f",
+				step.scenario, step.command, step.frames.count(), step.frames.p50(),
+				step.frames.p99(), step.allocatedPerFrame()));
+		}
+	}
+
+	/** Writes the results of all steps so far as CSV. */
+	public void write(final File file) throws IOException {
+		final List<String> lines = new ArrayList<>();
+		lines.add("scenario,step,frames,p50_ms,p99_ms,mb_per_frame");
+		for (final Step step : steps) {
+			lines.add(String.format("%s,%s,%d,%.3f,%.3f,%.3f", step.scenario,
+				step.command, step.frames.count(), step.frames.p50(), step.frames
+					.p99(), step.allocatedPerFrame()));
+		}
+		Files.write(file.toPath(), lines, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Compares the results of all steps so far with those of an earlier run.
+	 *
+	 * @return the number of regressions found
+	 */
+	public int compare(final File baseline, final double tolerance,
+		final PrintStream out) throws IOException
+	{
+		final Map<String, double[]> base = new HashMap<>();
+		for (final String line : Files.readAllLines(baseline.toPath(),
+			StandardCharsets.UTF_8))
+		{
+			final String[] fields = line.split(",");
+			if (fields.length < 6 || fields[0].equals("scenario")) continue;
+			base.put(fields[0] + "/" + fields[1], new double[] {
+				Double.parseDouble(fields[3]), Double.parseDouble(fields[5]) });
+		}
+
+		int regressions = 0;
+		for (final Step step : steps) {
+			final double[] b = base.get(step.scenario + "/" + step.command);
+			if (b == null) continue;
+			final double p50 = step.frames.p50();
+			if (p50 - b[0] > Math.max(TIME_NOISE_MS, tolerance * b[0])) {
+				out.println(String.format("REGRESSION %s/%s: p50 %.2f ms, was %.2f ms",
+					step.scenario, step.command, p50, b[0]));
+				regressions++;
+			}
+			final double alloc = step.allocatedPerFrame();
+			if (alloc - b[1] > Math.max(ALLOC_NOISE_MB, tolerance * b[1])) {
+				out.println(String.format(
+					"REGRESSION %s/%s: %.2f MB/frame, was %.2f MB/frame", step.scenario,
+					step.command, alloc, b[1]));
+				regressions++;
+			}
+		}
+		return regressions;
+	}
+
+	// -- Commands --
+
+	private void execute(final String scenario, final String line)
+		throws InterruptedException, InvocationTargetException
+	{
+		final String[] tokens = line.split("\\s+");
+		final Step step = new Step(scenario, line);
+		switch (tokens[0]) {
+			case "open":
+				args(tokens, 3);
+				open(scaled(tokens[1]), scaled(tokens[2]), scaled(tokens[3]), step);
+				break;
+			case "scrub":
+				scrub(Axes.get(tokens.length > 1 ? tokens[1] : "Z"), step);
+				break;
+			case "rois":
+				args(tokens, 1);
+				rois(Integer.parseInt(tokens[1]), step);
+				break;
+			case "zoom":
+				args(tokens, 1);
+				for (int i = 1; i < tokens.length; i++) {
+					zoom(Double.parseDouble(tokens[i]), step);
+				}
+				break;
+			case "drag":
+				args(tokens, 2);
+				final Step add = new Step(scenario, line + " (add)");
+				steps.add(add);
+				drag(Integer.parseInt(tokens[1]), Integer.parseInt(tokens[2]), add,
+					step);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown command: " + tokens[0]);
+		}
+		steps.add(step);
+	}
+
+	private void open(final long width, final long height, final long depth,
+		final Step step) throws InterruptedException, InvocationTargetException
+	{
+		close();
+		context = OffscreenViewer.createContext();
+		final DatasetService datasetService =
+			context.service(DatasetService.class);
+		final boolean stack = depth > 1;
+		final long[] dims = stack ? new long[] { width, height, depth }
+			: new long[] { width, height };
+		final AxisType[] axes = stack ? new AxisType[] { Axes.X, Axes.Y, Axes.Z }
+			: new AxisType[] { Axes.X, Axes.Y };
+		dataset = datasetService.create(dims, "replay", axes, 8, false, false);
+		final Cursor<? extends RealType<?>> c =
+			dataset.getImgPlus().localizingCursor();
+		while (c.hasNext()) {
+			c.fwd();
+			final long z = stack ? c.getLongPosition(2) : 0;
+			c.get().setReal((c.getLongPosition(0) + c.getLongPosition(1) + 8 * z) &
+				0xff);
+		}
+
+		frame(step, new Runnable() {
+
+			@Override
+			public void run() {
+				display = OffscreenViewer.createDisplay(dataset);
+				viewer = new OffscreenViewer(display, WINDOW_SIZE, WINDOW_SIZE);
+			}
+		});
+	}
+
+	private void scrub(final AxisType axis, final Step step)
+		throws InterruptedException, InvocationTargetException
+	{
+		requireDisplay();
+		final int d = display.dimensionIndex(axis);
+		if (d < 0) throw new IllegalArgumentException("No such axis: " + axis);
+		for (long pos = 0; pos < display.dimension(d); pos++) {
+			final long p = pos;
+			frame(step, new Runnable() {
+
+				@Override
+				public void run() {
+					display.setPosition(p, axis);
+					display.update();
+				}
+			});
+		}
+	}
+
+	private void rois(final int count, final Step step)
+		throws InterruptedException, InvocationTargetException
+	{
+		requireDisplay();
+		final long width = dataset.dimension(0), height = dataset.dimension(1);
+		final List<Overlay> overlays = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			final RectangleOverlay overlay = new RectangleOverlay(context);
+			overlay.setOrigin(random.nextDouble() * width, 0);
+			overlay.setOrigin(random.nextDouble() * height, 1);
+			overlay.setExtent(1 + random.nextInt(64), 0);
+			overlay.setExtent(1 + random.nextInt(64), 1);
+			overlays.add(overlay);
+		}
+		frame(step, new Runnable() {
+
+			@Override
+			public void run() {
+				viewer.getCanvas().addOverlays(overlays);
+			}
+		});
+	}
+
+	private void zoom(final double factor, final Step step)
+		throws InterruptedException, InvocationTargetException
+	{
+		requireDisplay();
+		frame(step, new Runnable() {
+
+			@Override
+			public void run() {
+				display.getCanvas().setZoom(factor);
+			}
+		});
+	}
+
+	private void drag(final int vertices, final int count, final Step add,
+		final Step step) throws InterruptedException, InvocationTargetException
+	{
+		requireDisplay();
+		final double cx = dataset.dimension(0) / 2d;
+		final double cy = dataset.dimension(1) / 2d;
+		final double r = Math.min(cx, cy) / 2;
+		final PolygonOverlay polygon = new PolygonOverlay(context);
+		final PolygonRegionOfInterest roi = polygon.getRegionOfInterest();
+		for (int i = 0; i < vertices; i++) {
+			final double angle = 2 * Math.PI * i / vertices;
+			roi.addVertex(i, new RealPoint(new double[] {
+				cx + r * Math.cos(angle), cy + r * Math.sin(angle) }));
+		}
+
+		final Figure[] figure = new Figure[1];
+		frame(add, new Runnable() {
+
+			@Override
+			public void run() {
+				viewer.getCanvas().addOverlays(Collections.singletonList(polygon));
+				// NB: The figure of the most recently added overlay is drawn last.
+				final Drawing drawing = viewer.getCanvas().getDrawing();
+				figure[0] = drawing.getChild(drawing.getChildCount() - 1);
+			}
+		});
+
+		final AffineTransform tx = AffineTransform.getTranslateInstance(2, 1);
+		for (int i = 0; i < count; i++) {
+			frame(step, new Runnable() {
+
+				@Override
+				public void run() {
+					figure[0].willChange();
+					figure[0].transform(tx);
+					figure[0].changed();
+				}
+			});
+		}
+	}
+
+	// -- Helper methods --
+
+	private static String script(final String name) throws IOException {
+		final String script = SCENARIOS.get(name);
+		if (script != null) return script;
+		final File file = new File(name);
+		if (!file.isFile()) {
+			throw new IllegalArgumentException("No such scenario: " + name +
+				" (built-in scenarios: " + SCENARIOS.keySet() + ")");
+		}
+		final StringBuilder sb = new StringBuilder();
+		for (final String line : Files.readAllLines(file.toPath(),
+			StandardCharsets.UTF_8))
+		{
+			sb.append(line).append("\n");
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Performs an action on the event dispatch thread, waits for the events it
+	 * caused to be processed and renders the window, recording the elapsed time
+	 * and the allocation on the event dispatch thread as one frame.
+	 */
+	private void frame(final Step step, final Runnable action)
+		throws InterruptedException, InvocationTargetException
+	{
+		final long[] allocated = new long[2];
+		final long start = System.nanoTime();
+		SwingUtilities.invokeAndWait(new Runnable() {
+
+			@Override
+			public void run() {
+				allocated[0] = allocatedBytes();
+				action.run();
+			}
+		});
+		drain();
+		SwingUtilities.invokeAndWait(new Runnable() {
+
+			@Override
+			public void run() {
+				viewer.getWindow().render(graphics);
+				allocated[1] = allocatedBytes();
+			}
+		});
+		step.add(System.nanoTime() - start, allocated[1] - allocated[0]);
+	}
+
+	/** Waits until the event queue has no more pending events. */
+	private static void drain() throws InterruptedException,
+		InvocationTargetException
+	{
+		final EventQueue queue = Toolkit.getDefaultToolkit().getSystemEventQueue();
+		final boolean[] empty = new boolean[1];
+		for (int i = 0; i < MAX_DRAIN && !empty[0]; i++) {
+			SwingUtilities.invokeAndWait(new Runnable() {
+
+				@Override
+				public void run() {
+					empty[0] = queue.peekEvent() == null;
+				}
+			});
+		}
+	}
+
+	/** Disposes the current viewer and its context, if any. */
+	private void close() throws InterruptedException,
+		InvocationTargetException
+	{
+		if (viewer != null) {
+			SwingUtilities.invokeAndWait(new Runnable() {
+
+				@Override
+				public void run() {
+					viewer.dispose();
+				}
+			});
+		}
+		else if (context != null) context.dispose();
+		viewer = null;
+		display = null;
+		dataset = null;
+		context = null;
+	}
+
+	private void requireDisplay() {
+		if (viewer == null) {
+			throw new IllegalArgumentException("No image is open");
+		}
+	}
+
+	private long scaled(final String value) {
+		return Math.max(1, Math.round(Long.parseLong(value) * scale));
+	}
+
+	private static void args(final String[] tokens, final int count) {
+		if (tokens.length <= count) {
+			throw new IllegalArgumentException("Expected " + count +
+				" argument(s): " + Arrays.toString(tokens));
+		}
+	}
+
+	private static long allocatedBytes() {
+		final java.lang.management.ThreadMXBean bean =
+			ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean)) return 0;
+		return ((com.sun.management.ThreadMXBean) bean)
+			.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	// -- Helper classes --
+
+	/** The results of one command of a scenario. */
+	private static class Step {
+
+		private final String scenario;
+		private final String command;
+		private final RenderMetrics.Histogram frames =
+			new RenderMetrics.Histogram(MAX_FRAMES);
+		private long allocated;
+
+		private Step(final String scenario, final String command) {
+			this.scenario = scenario;
+			this.command = command;
+		}
+
+		private void add(final long nanos, final long bytes) {
+			frames.add(nanos);
+			allocated += bytes;
+		}
+
+		/** Gets the mean allocation per frame, in megabytes. */
+		private double allocatedPerFrame() {
+			final int count = frames.count();
+			return count == 0 ? 0 : allocated / 1048576.0 / count;
+		}
+
+	}
+
+}
@@ -0,0 +1,143 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.ui.swing.viewer.image;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks drawing a zoomed-in plane into a viewport, with a
+ * {@link ZoomBlitter} versus Java2D's nearest neighbor scaling.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ZoomBlitterBenchmark {
+
+	private static final int SIZE = 2048;
+	private static final int VIEWPORT_WIDTH = 1024;
+	private static final int VIEWPORT_HEIGHT = 768;
+
+	@Param({ "4", "8", "32" })
+	private int zoom;
+
+	@Param({ "false", "true" })
+	private boolean grid;
+
+	private BufferedImage image;
+	private BufferedImage viewport;
+	private Graphics2D g;
+	private ZoomBlitter blitter;
+
+	@Setup
+	public void setUp() {
+		final Random random = new Random(0xcafe);
+		image = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB);
+		for (int y = 0; y < SIZE; y++) {
+			for (int x = 0; x < SIZE; x++) {
+				image.setRGB(x, y, 0xff000000 | random.nextInt());
+			}
+		}
+		viewport = new BufferedImage(VIEWPORT_WIDTH, VIEWPORT_HEIGHT,
+			BufferedImage.TYPE_INT_RGB);
+		g = viewport.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+			RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+		g.setClip(0, 0, VIEWPORT_WIDTH, VIEWPORT_HEIGHT);
+		// look at the middle of the image, as when scrolled there
+		g.translate(VIEWPORT_WIDTH / 2 - zoom * SIZE / 2 + 0.25,
+			VIEWPORT_HEIGHT / 2 - zoom * SIZE / 2 + 0.25);
+		g.scale(zoom, zoom);
+		blitter = new ZoomBlitter();
+		if (grid) blitter.setGridColor(Color.darkGray);
+	}
+
+	@TearDown
+	public void tearDown() {
+		g.dispose();
+	}
+
+	@Benchmark
+	public BufferedImage java2D() {
+		g.drawImage(image, 0, 0, SIZE, SIZE, null);
+		if (grid) drawGrid();
+		return viewport;
+	}
+
+	@Benchmark
+	public BufferedImage blit() {
+		blitter.blit(g, image, 0, 0);
+		return viewport;
+	}
+
+	// -- Helper methods --
+
+	/** Draws the pixel grid the way one would without the blitter. */
+	private void drawGrid() {
+		final Graphics2D g2 = (Graphics2D) g.create();
+		try {
+			g2.setColor(Color.darkGray);
+			g2.setStroke(new BasicStroke(0));
+			final int span = VIEWPORT_WIDTH / zoom + 2;
+			final int x0 = SIZE / 2 - span / 2, y0 = SIZE / 2 - span / 2;
+			for (int i = 0; i <= span; i++) {
+				g2.drawLine(x0 + i, y0, x0 + i, y0 + span);
+				g2.drawLine(x0, y0 + i, x0 + span, y0 + i);
+			}
+		}
+		finally {
+			g2.dispose();
+		}
+	}
+
+}
@@ -0,0 +1,128 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.ui.swing.widget;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import net.imagej.widget.HistogramBundle;
+import net.imglib2.histogram.Histogram1d;
+import net.imglib2.histogram.Real1dBinMapper;
+import net.imglib2.type.numeric.real.DoubleType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.scijava.widget.WidgetModel;
+
+/**
+ * Benchmarks building the chart panel of a {@link SwingHistogramWidget} from a
+ * {@link HistogramBundle} of normally distributed data, as the widget does
+ * when it is given its model.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class SwingHistogramWidgetBenchmark {
+
+	private static final int SAMPLES = 100000;
+
+	@Param({ "256", "4096", "65536" })
+	private int bins;
+
+	private WidgetModel model;
+
+	@Setup
+	public void setUp() {
+		final Random random = new Random(0xcafe);
+		final List<DoubleType> data = new ArrayList<>(SAMPLES);
+		for (int i = 0; i < SAMPLES; i++) {
+			data.add(new DoubleType(500 + 100 * random.nextGaussian()));
+		}
+		final Histogram1d<DoubleType> histogram = new Histogram1d<>(data,
+			new Real1dBinMapper<DoubleType>(0, 1000, bins, false));
+		model = createModel(new HistogramBundle(histogram));
+	}
+
+	@Benchmark
+	public SwingHistogramWidget set() {
+		// NB: A fresh widget each time, since set() adds a chart panel.
+		final SwingHistogramWidget widget = new SwingHistogramWidget();
+		widget.set(model);
+		return widget;
+	}
+
+	// -- Helper methods --
+
+	/**
+	 * Creates a model holding the given bundle. Only the value is needed to
+	 * build the chart, so everything else is left at its default.
+	 */
+	private static WidgetModel createModel(final HistogramBundle bundle) {
+		return (WidgetModel) Proxy.newProxyInstance(WidgetModel.class
+			.getClassLoader(), new Class<?>[] { WidgetModel.class },
+			new InvocationHandler() {
+
+				@Override
+				public Object invoke(final Object proxy, final Method method,
+					final Object[] args)
+				{
+					if (method.getName().equals("getValue")) return bundle;
+					final Class<?> type = method.getReturnType();
+					if (type == boolean.class) {
+						return method.getName().equals("isType");
+					}
+					if (type == int.class) return 0;
+					if (type == long.class) return 0L;
+					if (type == double.class) return 0.0;
+					return null;
+				}
+			});
+	}
+
+}
@@ -0,0 +1,266 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.ui.swing.overlay;
+
+import java.awt.Color;
+import java.awt.Cursor;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+
+import org.jhotdraw.draw.BezierFigure;
+import org.jhotdraw.draw.DrawingView;
+import org.jhotdraw.draw.event.FigureEvent;
+import org.jhotdraw.draw.event.HandleListener;
+import org.jhotdraw.draw.handle.AbstractHandle;
+import org.jhotdraw.draw.handle.BezierOutlineHandle;
+import org.jhotdraw.draw.handle.Handle;
+import org.jhotdraw.draw.handle.HandleAttributeKeys;
+import org.jhotdraw.geom.BezierPath;
+
+/**
+ * A single handle standing in for the node handles of a {@link BezierFigure}
+ * with many nodes.
+ * <p>
+ * Only nodes within the visible part of the view are shown, and at most one
+ * per screen cell of twice the handle size, so that a zoomed out outline
+ * with thousands of vertices shows a manageable number of handles. As the
+ * user zooms in, the cells contain fewer nodes, until all of them are shown.
+ * The actual {@link PolygonNodeHandle} is only created once the user drags
+ * one of the shown nodes.
+ * </p>
+ */
+public class DecimatedNodeHandle extends AbstractHandle {
+
+	/** Figures with more nodes than this get a decimated node handle. */
+	public static final int MAX_NODE_HANDLES = 500;
+
+	private final BezierFigure owner;
+
+	/** Nodes of the owner, fetched once per change of its geometry. */
+	private BezierPath path;
+
+	/** Cells of the visible rectangle which already show a node. */
+	private final BitSet occupied = new BitSet();
+
+	/** Indices and view positions of the nodes shown by the last draw. */
+	private int[] shown = new int[64];
+	private int[] shownX = new int[64];
+	private int[] shownY = new int[64];
+	private int shownCount;
+
+	/** Node under the mouse, as found by {@link #contains}. */
+	private int target = -1;
+
+	/** Handle of the node being dragged, if any. */
+	private PolygonNodeHandle delegate;
+
+	public DecimatedNodeHandle(final BezierFigure owner) {
+		super(owner);
+		this.owner = owner;
+	}
+
+	// -- DecimatedNodeHandle methods --
+
+	/**
+	 * Creates the handles of the given polygon or polyline at detail level 0:
+	 * an outline handle, plus a {@link PolygonNodeHandle} per node, or a single
+	 * {@link DecimatedNodeHandle} if the figure has too many nodes.
+	 */
+	public static Collection<Handle> createHandles(final BezierFigure figure) {
+		final int nodeCount = figure.getNodeCount();
+		final List<Handle> handles = new ArrayList<>(
+			nodeCount > MAX_NODE_HANDLES ? 2 : nodeCount + 1);
+		handles.add(new BezierOutlineHandle(figure));
+		if (nodeCount > MAX_NODE_HANDLES) {
+			handles.add(new DecimatedNodeHandle(figure));
+		}
+		else {
+			for (int i = 0; i < nodeCount; i++) {
+				handles.add(new PolygonNodeHandle(figure, i));
+			}
+		}
+		return handles;
+	}
+
+	// -- Handle methods --
+
+	@Override
+	public void draw(final Graphics2D g) {
+		final DrawingView view = getView();
+		if (view == null) return;
+		decimate(view);
+		final int size = getHandlesize();
+		final Color fill = getEditor().getHandleAttribute(
+			HandleAttributeKeys.BEZIER_NODE_HANDLE_FILL_COLOR);
+		final Color stroke = getEditor().getHandleAttribute(
+			HandleAttributeKeys.BEZIER_NODE_HANDLE_STROKE_COLOR);
+		for (int i = 0; i < shownCount; i++) {
+			final int x = shownX[i] - size / 2, y = shownY[i] - size / 2;
+			if (fill != null) {
+				g.setColor(fill);
+				g.fillRect(x, y, size, size);
+			}
+			if (stroke != null) {
+				g.setColor(stroke);
+				g.drawRect(x, y, size - 1, size - 1);
+			}
+		}
+	}
+
+	@Override
+	public boolean contains(final Point p) {
+		if (delegate != null) return true;
+		final int half = getHandlesize() / 2;
+		target = -1;
+		for (int i = 0; i < shownCount; i++) {
+			if (Math.abs(shownX[i] - p.x) <= half &&
+				Math.abs(shownY[i] - p.y) <= half)
+			{
+				target = shown[i];
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public Cursor getCursor() {
+		return delegate == null ? super.getCursor() : delegate.getCursor();
+	}
+
+	@Override
+	public void trackStart(final Point anchor, final int modifiersEx) {
+		if (target < 0 || target >= owner.getNodeCount()) return;
+		delegate = new PolygonNodeHandle(owner, target);
+		delegate.setView(getView());
+		for (final HandleListener l : listenerList.getListeners(
+			HandleListener.class))
+		{
+			delegate.addHandleListener(l);
+		}
+		delegate.trackStart(anchor, modifiersEx);
+	}
+
+	@Override
+	public void trackStep(final Point anchor, final Point lead,
+		final int modifiersEx)
+	{
+		if (delegate != null) delegate.trackStep(anchor, lead, modifiersEx);
+	}
+
+	@Override
+	public void trackEnd(final Point anchor, final Point lead,
+		final int modifiersEx)
+	{
+		if (delegate == null) return;
+		delegate.trackEnd(anchor, lead, modifiersEx);
+		delegate.dispose();
+		delegate = null;
+		target = -1;
+	}
+
+	@Override
+	public void dispose() {
+		if (delegate != null) delegate.dispose();
+		super.dispose();
+	}
+
+	// -- FigureListener methods --
+
+	@Override
+	public void areaInvalidated(final FigureEvent evt) {
+		path = null;
+		super.areaInvalidated(evt);
+	}
+
+	// -- AbstractHandle methods --
+
+	@Override
+	protected Rectangle basicGetBounds() {
+		final Rectangle r = getView().drawingToView(owner.getDrawingArea());
+		final int size = getHandlesize();
+		r.grow(size, size);
+		return r;
+	}
+
+	// -- Helper methods --
+
+	/** Finds the nodes to show in the visible part of the given view. */
+	private void decimate(final DrawingView view) {
+		shownCount = 0;
+		occupied.clear();
+		final Rectangle visible = view.getComponent().getVisibleRect();
+		if (visible.isEmpty()) return;
+		final Rectangle2D.Double area = view.viewToDrawing(visible);
+		final double scale = view.getScaleFactor();
+		final int cell = 2 * getHandlesize();
+		final int columns = visible.width / cell + 1;
+
+		if (path == null) path = owner.getBezierPath();
+		final Point2D.Double node = new Point2D.Double();
+		for (int i = 0, n = path.size(); i < n; i++) {
+			final BezierPath.Node p = path.get(i);
+			if (!area.contains(p.x[0], p.y[0])) continue;
+			final int vx = (int) ((p.x[0] - area.x) * scale);
+			final int vy = (int) ((p.y[0] - area.y) * scale);
+			final int index = (vy / cell) * columns + vx / cell;
+			if (occupied.get(index)) continue;
+			occupied.set(index);
+			node.setLocation(p.x[0], p.y[0]);
+			final Point v = view.drawingToView(node);
+			add(i, v.x, v.y);
+		}
+	}
+
+	/** Records a shown node. */
+	private void add(final int index, final int x, final int y) {
+		if (shownCount == shown.length) {
+			final int capacity = 2 * shown.length;
+			shown = Arrays.copyOf(shown, capacity);
+			shownX = Arrays.copyOf(shownX, capacity);
+			shownY = Arrays.copyOf(shownY, capacity);
+		}
+		shown[shownCount] = index;
+		shownX[shownCount] = x;
+		shownY[shownCount] = y;
+		shownCount++;
+	}
+
+}
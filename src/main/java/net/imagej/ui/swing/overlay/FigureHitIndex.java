@@ -0,0 +1,395 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.ui.swing.overlay;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jhotdraw.draw.Drawing;
+import org.jhotdraw.draw.Figure;
+import org.jhotdraw.draw.event.CompositeFigureEvent;
+import org.jhotdraw.draw.event.CompositeFigureListener;
+import org.jhotdraw.draw.event.FigureAdapter;
+import org.jhotdraw.draw.event.FigureEvent;
+import org.jhotdraw.draw.event.FigureListener;
+
+/**
+ * A uniform grid over the drawing areas of a {@link Drawing}'s figures, used to
+ * answer "which figure is under this point?" without scanning every figure.
+ * <p>
+ * The grid is maintained incrementally: a changed figure is only re-filed into
+ * the cells of its new drawing area, and figures appended to the drawing are
+ * filed on the next query. Inserting a figure below others, or reordering
+ * figures (e.g. bring to front) without removing them, requires a call to
+ * {@link #invalidate()}. The last hit is remembered, so that consecutive
+ * queries inside the same figure's drawing area only need to test that figure
+ * and the few figures in front of it.
+ * </p>
+ * <p>
+ * The index listens to the drawing and to its figures until {@link #dispose()}
+ * is called.
+ * </p>
+ */
+public class FigureHitIndex {
+
+	/** Edge length of a grid cell, in drawing coordinates. */
+	private static final double CELL_SIZE = 64;
+
+	/**
+	 * Figures covering more cells than this (e.g. the image figure) are kept in
+	 * a separate list which is consulted for every query.
+	 */
+	private static final int MAX_CELLS_PER_FIGURE = 256;
+
+	private final Drawing drawing;
+
+	/** Candidates of each cell, in drawing order. */
+	private final Map<Long, List<Figure>> cells = new HashMap<>();
+
+	/** Figures too large for the grid, in drawing order. */
+	private final List<Figure> largeFigures = new ArrayList<>();
+
+	private final Map<Figure, Entry> entries = new IdentityHashMap<>();
+
+	/** Figures whose drawing area changed since they were last filed. */
+	private final Map<Figure, Boolean> pending = new IdentityHashMap<>();
+
+	/** Number of leading children of the drawing which are filed. */
+	private int knownCount;
+
+	private int nextZ;
+
+	private boolean dirty = true;
+
+	private final FigureListener drawingListener;
+	private final CompositeFigureListener childrenListener;
+	private final FigureListener figureListener;
+
+	// -- memoized last hit --
+
+	private Figure lastHit;
+	private Rectangle2D.Double lastHitArea;
+	private final List<Figure> inFrontOfLastHit = new ArrayList<>();
+
+	public FigureHitIndex(final Drawing drawing) {
+		this.drawing = drawing;
+		drawingListener = new FigureAdapter() {
+
+			@Override
+			public void areaInvalidated(final FigureEvent e) {
+				// NB: Changes of the children are handled by figureListener.
+				forget();
+			}
+		};
+		childrenListener = new CompositeFigureListener() {
+
+			@Override
+			public void figureAdded(final CompositeFigureEvent e) {
+				// NB: Appended figures are filed on the next query.
+				if (e.getIndex() < knownCount) invalidate();
+				else forget();
+			}
+
+			@Override
+			public void figureRemoved(final CompositeFigureEvent e) {
+				remove(e.getChildFigure());
+			}
+		};
+		figureListener = new FigureAdapter() {
+
+			@Override
+			public void areaInvalidated(final FigureEvent e) {
+				changed(e.getFigure());
+			}
+
+			@Override
+			public void figureChanged(final FigureEvent e) {
+				changed(e.getFigure());
+			}
+		};
+		drawing.addFigureListener(drawingListener);
+		drawing.addCompositeFigureListener(childrenListener);
+	}
+
+	// -- FigureHitIndex methods --
+
+	/** Gets the drawing indexed by this object. */
+	public Drawing getDrawing() {
+		return drawing;
+	}
+
+	/** Discards the index; it is rebuilt on the next query. */
+	public void invalidate() {
+		dirty = true;
+		forget();
+	}
+
+	/** Stops listening to the drawing and its figures, and discards the index. */
+	public void dispose() {
+		drawing.removeFigureListener(drawingListener);
+		drawing.removeCompositeFigureListener(childrenListener);
+		clear();
+		dirty = true;
+	}
+
+	/**
+	 * Finds the front-most visible figure containing the given point, as
+	 * {@link Drawing#findFigure(Point2D.Double)} would.
+	 *
+	 * @param p point in drawing coordinates
+	 * @return the figure under the point, or null if there is none
+	 */
+	public Figure findFigure(final Point2D.Double p) {
+		update();
+
+		if (lastHit != null && lastHitArea.contains(p) && lastHit.contains(p)) {
+			boolean occluded = false;
+			for (final Figure f : inFrontOfLastHit) {
+				if (f.isVisible() && f.contains(p)) {
+					occluded = true;
+					break;
+				}
+			}
+			if (!occluded) return lastHit;
+		}
+
+		final Figure hit = findFigureInGrid(p);
+		remember(hit);
+		return hit;
+	}
+
+	// -- Helper methods --
+
+	/** Brings the grid up to date with the drawing. */
+	private void update() {
+		final int count = drawing.getChildCount();
+		if (dirty || count < knownCount) {
+			clear();
+			dirty = false;
+		}
+		// NB: Figures may be appended without notification; see
+		// CullingDrawing#addFigures.
+		if (count > knownCount) forget();
+		for (int i = knownCount; i < count; i++) {
+			final Figure figure = drawing.getChild(i);
+			final Entry entry = new Entry(nextZ++);
+			entries.put(figure, entry);
+			file(figure, entry);
+			figure.addFigureListener(figureListener);
+		}
+		knownCount = count;
+		if (pending.isEmpty()) return;
+		for (final Figure figure : pending.keySet()) {
+			final Entry entry = entries.get(figure);
+			if (entry == null) continue;
+			unfile(figure, entry);
+			file(figure, entry);
+		}
+		pending.clear();
+	}
+
+	private void changed(final Figure figure) {
+		pending.put(figure, Boolean.TRUE);
+		forget();
+	}
+
+	private void remove(final Figure figure) {
+		forget();
+		final Entry entry = entries.remove(figure);
+		if (entry == null) return; // not filed yet
+		figure.removeFigureListener(figureListener);
+		pending.remove(figure);
+		unfile(figure, entry);
+		knownCount--;
+	}
+
+	private void clear() {
+		for (final Figure figure : entries.keySet()) {
+			figure.removeFigureListener(figureListener);
+		}
+		entries.clear();
+		cells.clear();
+		largeFigures.clear();
+		pending.clear();
+		knownCount = 0;
+		nextZ = 0;
+		forget();
+	}
+
+	/** Adds the figure to the cells covered by its current drawing area. */
+	private void file(final Figure figure, final Entry entry) {
+		final Rectangle2D.Double area = figure.getDrawingArea();
+		entry.x0 = cell(area.x);
+		entry.x1 = cell(area.x + area.width);
+		entry.y0 = cell(area.y);
+		entry.y1 = cell(area.y + area.height);
+		final long cellCount =
+			(long) (entry.x1 - entry.x0 + 1) * (entry.y1 - entry.y0 + 1);
+		entry.large = cellCount > MAX_CELLS_PER_FIGURE;
+		if (entry.large) {
+			insert(largeFigures, figure, entry.z);
+			return;
+		}
+		for (int cy = entry.y0; cy <= entry.y1; cy++) {
+			for (int cx = entry.x0; cx <= entry.x1; cx++) {
+				final Long key = key(cx, cy);
+				List<Figure> list = cells.get(key);
+				if (list == null) {
+					list = new ArrayList<>(2);
+					cells.put(key, list);
+				}
+				insert(list, figure, entry.z);
+			}
+		}
+	}
+
+	/** Removes the figure from the cells it was filed into. */
+	private void unfile(final Figure figure, final Entry entry) {
+		if (entry.large) {
+			removeIdentical(largeFigures, figure);
+			return;
+		}
+		for (int cy = entry.y0; cy <= entry.y1; cy++) {
+			for (int cx = entry.x0; cx <= entry.x1; cx++) {
+				final Long key = key(cx, cy);
+				final List<Figure> list = cells.get(key);
+				if (list == null) continue;
+				removeIdentical(list, figure);
+				if (list.isEmpty()) cells.remove(key);
+			}
+		}
+	}
+
+	/** Inserts the figure into a list kept in drawing order. */
+	private void insert(final List<Figure> list, final Figure figure,
+		final int z)
+	{
+		int i = list.size();
+		// NB: Figures are usually filed in drawing order, so search backwards.
+		while (i > 0 && z(list.get(i - 1)) > z) i--;
+		list.add(i, figure);
+	}
+
+	private static void removeIdentical(final List<Figure> list,
+		final Figure figure)
+	{
+		for (int i = list.size() - 1; i >= 0; i--) {
+			if (list.get(i) == figure) {
+				list.remove(i);
+				return;
+			}
+		}
+	}
+
+	/** Tests the candidates of the point's cell, front to back. */
+	private Figure findFigureInGrid(final Point2D.Double p) {
+		final List<Figure> cell = cells.get(key(cell(p.x), cell(p.y)));
+		// NB: Both lists are in drawing order; merge them back to front.
+		int i = cell == null ? -1 : cell.size() - 1;
+		int j = largeFigures.size() - 1;
+		while (i >= 0 || j >= 0) {
+			final Figure f;
+			if (j < 0 || i >= 0 && z(cell.get(i)) > z(largeFigures.get(j))) {
+				f = cell.get(i--);
+			}
+			else f = largeFigures.get(j--);
+			if (f.isVisible() && f.contains(p)) return f;
+		}
+		return null;
+	}
+
+	private void forget() {
+		lastHit = null;
+		lastHitArea = null;
+		inFrontOfLastHit.clear();
+	}
+
+	private void remember(final Figure hit) {
+		forget();
+		// NB: Hits on large figures (e.g. the image) are cheap to recompute, and
+		// nearly every other figure would be in front of them.
+		if (hit == null || entries.get(hit).large) return;
+
+		final Rectangle2D.Double area = hit.getDrawingArea();
+		final int hitZ = z(hit);
+		final Map<Figure, Boolean> seen = new IdentityHashMap<>();
+		for (int cy = cell(area.y); cy <= cell(area.y + area.height); cy++) {
+			for (int cx = cell(area.x); cx <= cell(area.x + area.width); cx++) {
+				final List<Figure> list = cells.get(key(cx, cy));
+				if (list == null) continue;
+				for (final Figure f : list) {
+					if (z(f) > hitZ && seen.put(f, Boolean.TRUE) == null) {
+						inFrontOfLastHit.add(f);
+					}
+				}
+			}
+		}
+		for (final Figure f : largeFigures) {
+			if (z(f) > hitZ) inFrontOfLastHit.add(f);
+		}
+		lastHit = hit;
+		lastHitArea = area;
+	}
+
+	private int z(final Figure figure) {
+		final Entry entry = entries.get(figure);
+		return entry == null ? -1 : entry.z;
+	}
+
+	private static int cell(final double coord) {
+		return (int) Math.floor(coord / CELL_SIZE);
+	}
+
+	private static Long key(final int cx, final int cy) {
+		return ((long) cx << 32) | (cy & 0xffffffffL);
+	}
+
+	// -- Helper classes --
+
+	/** Where a figure is filed in the grid. */
+	private static class Entry {
+
+		private final int z;
+		private boolean large;
+		private int x0, y0, x1, y1;
+
+		private Entry(final int z) {
+			this.z = z;
+		}
+	}
+
+}
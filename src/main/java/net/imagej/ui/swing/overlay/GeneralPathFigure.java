@@ -66,6 +66,7 @@ public class GeneralPathFigure extends AbstractAttributedFigure {
 
 	private List<BezierFigure> figures;
 	private transient GeneralPath path;
+	private transient SegmentIndex segmentIndex;
 
 	public GeneralPathFigure(final BezierFigure... list) {
 		figures = new ArrayList<BezierFigure>() {
@@ -137,8 +138,7 @@ public class GeneralPathFigure extends AbstractAttributedFigure {
 
 	@Override
 	public boolean contains(Double point) {
-		final GeneralPath path = getGeneralPath();
-		return path.contains(point);
+		return getSegmentIndex().contains(point.x, point.y);
 	}
 
 	@Override
@@ -192,7 +192,14 @@ public class GeneralPathFigure extends AbstractAttributedFigure {
 	public Collection<Handle> createHandles(final int detailLevel) {
 		final LinkedList<Handle> handles = new LinkedList<>();
 		for (final BezierFigure figure : figures) {
-			handles.addAll(figure.createHandles(detailLevel));
+			// NB: setGeneralPath() makes plain BezierFigures, which would create a
+			// handle per node.
+			if (detailLevel == 0 &&
+				figure.getNodeCount() > DecimatedNodeHandle.MAX_NODE_HANDLES)
+			{
+				handles.addAll(DecimatedNodeHandle.createHandles(figure));
+			}
+			else handles.addAll(figure.createHandles(detailLevel));
 		}
 		return handles;
 	}
@@ -200,6 +207,7 @@ public class GeneralPathFigure extends AbstractAttributedFigure {
 	@Override
 	public synchronized void invalidate() {
 		path = null;
+		segmentIndex = null;
 		super.invalidate();
 	}
 
@@ -247,6 +255,7 @@ public class GeneralPathFigure extends AbstractAttributedFigure {
 	@SuppressWarnings("null")
 	public synchronized void setGeneralPath(final GeneralPath path) {
 		this.path = path;
+		segmentIndex = null;
 		figures.clear();
 		BezierPath bezierPath = null;
 		final PathIterator iterator = path.getPathIterator(null);
@@ -287,6 +296,12 @@ public class GeneralPathFigure extends AbstractAttributedFigure {
 		return path;
 	}
 
+	/** Gets the index of the path's edges, building it if needed. */
+	public synchronized SegmentIndex getSegmentIndex() {
+		if (segmentIndex == null) segmentIndex = new SegmentIndex(getGeneralPath());
+		return segmentIndex;
+	}
+
 	/* -- helper methods -- */
 
 	private boolean add(final BezierPath bezierPath, boolean isClosed) {
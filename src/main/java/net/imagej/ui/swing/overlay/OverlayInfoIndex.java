@@ -0,0 +1,231 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.ui.swing.overlay;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.imagej.display.OverlayInfo;
+import net.imagej.display.OverlayInfoList;
+import net.imagej.overlay.Overlay;
+
+/**
+ * An index over an {@link OverlayInfoList}, mapping each {@link Overlay} to
+ * its row by identity, and tracking the selected rows in a {@link BitSet}.
+ * <p>
+ * The list itself answers these questions by scanning all of its rows. With
+ * the index, looking up an overlay is O(1), and listing the k selected rows is
+ * O(k). Rows appended to the list are indexed on the next query. A lookup
+ * whose row no longer holds the overlay, or a last row holding another overlay
+ * than when indexed, means that rows were removed or reordered behind the
+ * index's back; the index is then rebuilt, once, reading the selection anew.
+ * {@link #invalidate()} forces a rebuild, e.g. after sorting the list, and
+ * {@link #removed} reindexes only the rows after a removed one.
+ * </p>
+ * <p>
+ * Selection changes must go through {@link #setSelected} or {@link #select},
+ * which update both the {@link OverlayInfo}s and the index; changes made to the
+ * infos directly are only picked up when the index is rebuilt.
+ * </p>
+ */
+public class OverlayInfoIndex {
+
+	private final OverlayInfoList list;
+
+	private final Map<Overlay, Integer> rows = new IdentityHashMap<>();
+
+	/** Selected rows among the indexed ones. */
+	private final BitSet selected = new BitSet();
+
+	/** Number of rows indexed so far, or -1 if the index must be rebuilt. */
+	private int indexed = -1;
+
+	/** Overlay of the last indexed row, or null if none. */
+	private Overlay last;
+
+	public OverlayInfoIndex(final OverlayInfoList list) {
+		this.list = list;
+	}
+
+	// -- OverlayInfoIndex methods --
+
+	/** Gets the row of the given overlay, or -1 if the list does not have it. */
+	public synchronized int indexOf(final Overlay overlay) {
+		update();
+		Integer row = rows.get(overlay);
+		if (row != null && list.getOverlayInfo(row).getOverlay() == overlay) {
+			return row;
+		}
+		if (row == null) return -1;
+		// NB: Rows moved behind the index's back.
+		indexed = -1;
+		update();
+		row = rows.get(overlay);
+		return row == null ? -1 : row;
+	}
+
+	/** Gets whether the list has the given overlay. */
+	public boolean contains(final Overlay overlay) {
+		return indexOf(overlay) >= 0;
+	}
+
+	/** Gets the info of the given overlay, or null if the list does not have it. */
+	public synchronized OverlayInfo getInfo(final Overlay overlay) {
+		final int row = indexOf(overlay);
+		return row < 0 ? null : list.getOverlayInfo(row);
+	}
+
+	/**
+	 * Selects or deselects the given row. Rows beyond the end of the list, e.g.
+	 * ones a view has not caught up with removing yet, are ignored.
+	 */
+	public synchronized void setSelected(final int row, final boolean select) {
+		update();
+		if (row >= indexed) return;
+		list.getOverlayInfo(row).setSelected(select);
+		selected.set(row, select);
+	}
+
+	/**
+	 * Selects exactly the given rows, touching only those whose state changes.
+	 * Rows beyond the end of the list are ignored.
+	 */
+	public synchronized void select(final int[] selectedRows) {
+		update();
+		final BitSet chosen = new BitSet(indexed);
+		for (final int row : selectedRows) {
+			if (row < indexed) chosen.set(row);
+		}
+		for (int row = selected.nextSetBit(0); row >= 0; row =
+			selected.nextSetBit(row + 1))
+		{
+			if (!chosen.get(row)) list.getOverlayInfo(row).setSelected(false);
+		}
+		for (int row = chosen.nextSetBit(0); row >= 0; row =
+			chosen.nextSetBit(row + 1))
+		{
+			if (!selected.get(row)) list.getOverlayInfo(row).setSelected(true);
+		}
+		selected.clear();
+		selected.or(chosen);
+	}
+
+	/** Deselects all rows. */
+	public synchronized void deselectAll() {
+		update();
+		for (int row = selected.nextSetBit(0); row >= 0; row =
+			selected.nextSetBit(row + 1))
+		{
+			list.getOverlayInfo(row).setSelected(false);
+		}
+		selected.clear();
+	}
+
+	/** Gets the number of selected rows. */
+	public synchronized int getSelectedCount() {
+		update();
+		return selected.cardinality();
+	}
+
+	/** Gets the selected rows, in ascending order. */
+	public synchronized int[] selectedIndices() {
+		update();
+		final int[] indices = new int[selected.cardinality()];
+		int i = 0;
+		for (int row = selected.nextSetBit(0); row >= 0; row =
+			selected.nextSetBit(row + 1))
+		{
+			indices[i++] = row;
+		}
+		return indices;
+	}
+
+	/** Gets the overlays of the selected rows, in row order. */
+	public synchronized List<Overlay> selectedOverlays() {
+		update();
+		final List<Overlay> overlays = new ArrayList<>(selected.cardinality());
+		for (int row = selected.nextSetBit(0); row >= 0; row =
+			selected.nextSetBit(row + 1))
+		{
+			overlays.add(list.getOverlayInfo(row).getOverlay());
+		}
+		return overlays;
+	}
+
+	/**
+	 * Records that the given overlay was removed from the list, so that only the
+	 * rows after its own are indexed again.
+	 */
+	public synchronized void removed(final Overlay overlay) {
+		final Integer row = rows.remove(overlay);
+		if (row == null || indexed < 0 || row >= indexed) {
+			indexed = -1;
+			return;
+		}
+		// NB: The rows after the removed one are reindexed by the next query.
+		indexed = row;
+		last = row > 0 ? list.getOverlayInfo(row - 1).getOverlay() : null;
+	}
+
+	/**
+	 * Marks the index as stale, e.g. after rows were removed from or reordered
+	 * within the list.
+	 */
+	public synchronized void invalidate() {
+		indexed = -1;
+	}
+
+	// -- Helper methods --
+
+	/** Indexes the rows appended since the last query, or all if stale. */
+	private void update() {
+		final int count = list.getOverlayInfoCount();
+		if (indexed < 0 || indexed > count || indexed > 0 && list.getOverlayInfo(
+			indexed - 1).getOverlay() != last)
+		{
+			rows.clear();
+			indexed = 0;
+			last = null;
+		}
+		selected.clear(indexed, Math.max(indexed, selected.length()));
+		for (; indexed < count; indexed++) {
+			final OverlayInfo info = list.getOverlayInfo(indexed);
+			last = info.getOverlay();
+			rows.put(last, indexed);
+			if (info.isSelected()) selected.set(indexed);
+		}
+	}
+
+}
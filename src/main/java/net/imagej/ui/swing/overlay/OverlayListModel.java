@@ -0,0 +1,187 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.ui.swing.overlay;
+
+import javax.swing.AbstractListModel;
+import javax.swing.JList;
+import javax.swing.SwingUtilities;
+
+import net.imagej.display.OverlayInfo;
+import net.imagej.display.OverlayInfoList;
+
+/**
+ * Exposes an {@link OverlayInfoList} to the overlay manager's {@link JList}.
+ * <p>
+ * Changes are reported with {@link #added}, {@link #removed},
+ * {@link #changed} and {@link #restructured}, possibly off the event
+ * dispatch thread. They are coalesced until the next cycle of the event
+ * dispatch thread, which fires as few list data events as possible: a burst
+ * of appended overlays becomes a single {@code intervalAdded}, and a burst
+ * of updates a single {@code contentsChanged}. The size reported to the list
+ * only changes together with those events, so the list never sees rows it
+ * has not been told about.
+ * </p>
+ */
+class OverlayListModel extends AbstractListModel<OverlayInfo> {
+
+	private final OverlayInfoList overlayInfoList;
+
+	/** Number of rows the list has been told about. */
+	private int size;
+
+	// -- pending changes, guarded by this model --
+
+	/** Range of rows whose contents changed, empty if from > to. */
+	private int changedFrom = Integer.MAX_VALUE, changedTo = -1;
+
+	/** First row shifted by removals or reordering; MAX_VALUE if none. */
+	private int shiftedFrom = Integer.MAX_VALUE;
+
+	/** Row of the only pending removal, or -1 if there are none or more. */
+	private int removedIndex = -1;
+	private int removedCount;
+
+	private boolean flushQueued;
+
+	public OverlayListModel(OverlayInfoList list) {
+		overlayInfoList = list;
+		size = list.getOverlayInfoCount();
+	}
+
+	/** Reports that overlays were appended to the list. */
+	public synchronized void added() {
+		queueFlush();
+	}
+
+	/** Reports that the overlay at the given row was removed. */
+	public synchronized void removed(final int index) {
+		removedIndex = removedCount++ == 0 ? index : -1;
+		shiftedFrom = Math.min(shiftedFrom, index);
+		queueFlush();
+	}
+
+	/** Reports that the overlay at the given row changed. */
+	public synchronized void changed(final int index) {
+		changedFrom = Math.min(changedFrom, index);
+		changedTo = Math.max(changedTo, index);
+		queueFlush();
+	}
+
+	/** Reports that any row may have changed, moved, appeared or vanished. */
+	public synchronized void restructured() {
+		shiftedFrom = 0;
+		queueFlush();
+	}
+
+	/**
+	 * Fires the events for all pending changes right away. Must be called on
+	 * the event dispatch thread, before touching rows the list may not know
+	 * about yet, e.g. when selecting them.
+	 */
+	public void flush() {
+		final int from, to, shifted, removed;
+		synchronized (this) {
+			from = changedFrom;
+			to = changedTo;
+			shifted = shiftedFrom;
+			removed = removedCount == 1 ? removedIndex : -1;
+			changedFrom = Integer.MAX_VALUE;
+			changedTo = -1;
+			shiftedFrom = Integer.MAX_VALUE;
+			removedIndex = -1;
+			removedCount = 0;
+		}
+		final int oldSize = size;
+		final int newSize = overlayInfoList.getOverlayInfoCount();
+		size = newSize;
+
+		if (shifted == Integer.MAX_VALUE) {
+			// appends and updates only
+			if (newSize > oldSize) fireIntervalAdded(this, oldSize, newSize - 1);
+			else if (newSize < oldSize) {
+				fireIntervalRemoved(this, newSize, oldSize - 1);
+			}
+			fireChanged(from, to, Math.min(oldSize, newSize));
+			return;
+		}
+		if (removed >= 0 && removed < oldSize && newSize == oldSize - 1) {
+			// a single removal, nothing else moved
+			fireIntervalRemoved(this, removed, removed);
+			fireChanged(from, to, newSize);
+			return;
+		}
+		// removals or reordering: rows from the first shifted one changed, and
+		// the size difference is made up at the end of the list
+		if (newSize > oldSize) fireIntervalAdded(this, oldSize, newSize - 1);
+		else if (newSize < oldSize) {
+			fireIntervalRemoved(this, newSize, oldSize - 1);
+		}
+		fireChanged(Math.min(from, shifted), newSize - 1, Math.min(oldSize,
+			newSize));
+	}
+
+	@Override
+	public OverlayInfo getElementAt(final int index) {
+		// rows removed since the last flush render as empty until it happens
+		if (index >= overlayInfoList.getOverlayInfoCount()) return null;
+		return overlayInfoList.getOverlayInfo(index);
+	}
+
+	@Override
+	public int getSize() {
+		return size;
+	}
+
+	// -- Helper methods --
+
+	private void queueFlush() {
+		if (flushQueued) return;
+		flushQueued = true;
+		SwingUtilities.invokeLater(new Runnable() {
+
+			@Override
+			public void run() {
+				synchronized (OverlayListModel.this) {
+					flushQueued = false;
+				}
+				flush();
+			}
+		});
+	}
+
+	/** Fires contentsChanged for the given rows below the given limit. */
+	private void fireChanged(final int from, final int to, final int limit) {
+		final int last = Math.min(to, limit - 1);
+		if (from <= last) fireContentsChanged(this, from, last);
+	}
+
+}
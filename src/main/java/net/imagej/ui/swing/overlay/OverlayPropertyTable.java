@@ -0,0 +1,491 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.ui.swing.overlay;
+
+import java.awt.Shape;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.geom.PathIterator;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import javax.swing.ListModel;
+import javax.swing.Timer;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+import javax.swing.table.AbstractTableModel;
+
+import net.imagej.display.OverlayInfo;
+import net.imagej.overlay.AngleOverlay;
+import net.imagej.overlay.GeneralPathOverlay;
+import net.imagej.overlay.LineOverlay;
+import net.imagej.overlay.Overlay;
+import net.imagej.overlay.PointOverlay;
+import net.imagej.overlay.PolygonOverlay;
+import net.imagej.overlay.RectangleOverlay;
+import net.imglib2.roi.RegionOfInterest;
+
+import org.scijava.thread.ThreadService;
+import org.scijava.util.ColorRGB;
+
+/**
+ * A table of the properties of all overlays, one row per row of a list of
+ * {@link OverlayInfo}s, such as the overlay manager's.
+ * <p>
+ * The table follows the list model's events, so it only holds a reference per
+ * row. The properties of an overlay are computed the first time a row is
+ * shown or sorted, and kept until the list reports that the overlay changed.
+ * The area and vertex count, which may take a while to compute, are computed
+ * in the background instead; until then, the last known values are shown, and
+ * the table reports all rows updated at most every {@link #UPDATE_DELAY}
+ * milliseconds while the background computation goes on, and once more when
+ * it is done, after which its {@link ChangeListener}s are notified.
+ * </p>
+ */
+public class OverlayPropertyTable extends AbstractTableModel implements
+	ListDataListener
+{
+
+	private static final String[] COLUMNS = { "Name", "Type", "Position", "X",
+		"Y", "Width", "Height", "Style", "Area", "Vertices" };
+
+	private static final int NAME = 0, TYPE = 1, POSITION = 2, X = 3, Y = 4,
+			WIDTH = 5, HEIGHT = 6, STYLE = 7, AREA = 8, VERTICES = 9;
+
+	/** Delay between updates while computing in the background, in ms. */
+	private static final int UPDATE_DELAY = 250;
+
+	private final ThreadService threadService;
+	private final ListModel<OverlayInfo> list;
+
+	/** The row of each row of the list; null for rows that vanished. */
+	private Row[] rows;
+	private int rowCount;
+
+	/** The rows of the overlays seen so far, by identity. */
+	private final Map<Overlay, Row> cache = new IdentityHashMap<>();
+
+	/** Rows waiting for their area and vertex count, guarded by itself. */
+	private final ArrayDeque<Job> pending = new ArrayDeque<>();
+	private boolean working;
+
+	/** Whether values were computed since the last update. */
+	private volatile boolean computed;
+
+	private final Timer timer;
+
+	/**
+	 * Creates a table following the given list, until {@link #dispose()}d.
+	 * Must be called on the event dispatch thread.
+	 */
+	public OverlayPropertyTable(final ThreadService threadService,
+		final ListModel<OverlayInfo> list)
+	{
+		this.threadService = threadService;
+		this.list = list;
+		rows = new Row[Math.max(16, list.getSize())];
+		rowCount = list.getSize();
+		for (int r = 0; r < rowCount; r++) {
+			rows[r] = row(list.getElementAt(r));
+		}
+		timer = new Timer(UPDATE_DELAY, new ActionListener() {
+
+			@Override
+			public void actionPerformed(final ActionEvent e) {
+				update();
+			}
+		});
+		list.addListDataListener(this);
+	}
+
+	// -- OverlayPropertyTable methods --
+
+	/** Gets whether area and vertex counts are being computed. */
+	public boolean isComputing() {
+		synchronized (pending) {
+			return working;
+		}
+	}
+
+	/** Gets whether the given column is computed in the background. */
+	public boolean isBackgroundColumn(final int column) {
+		return column == AREA || column == VERTICES;
+	}
+
+	/**
+	 * Adds a listener notified on the event dispatch thread each time the
+	 * background computation is done, e.g. to sort by its values.
+	 */
+	public void addChangeListener(final ChangeListener listener) {
+		listenerList.add(ChangeListener.class, listener);
+	}
+
+	public void removeChangeListener(final ChangeListener listener) {
+		listenerList.remove(ChangeListener.class, listener);
+	}
+
+	/** Stops following the list and computing values. */
+	public void dispose() {
+		list.removeListDataListener(this);
+		synchronized (pending) {
+			pending.clear();
+		}
+		timer.stop();
+	}
+
+	// -- TableModel methods --
+
+	@Override
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	@Override
+	public int getColumnCount() {
+		return COLUMNS.length;
+	}
+
+	@Override
+	public String getColumnName(final int column) {
+		return COLUMNS[column];
+	}
+
+	@Override
+	public Class<?> getColumnClass(final int column) {
+		switch (column) {
+			case X:
+			case Y:
+			case WIDTH:
+			case HEIGHT:
+				return Double.class;
+			case AREA:
+				return Long.class;
+			case VERTICES:
+				return Integer.class;
+			default:
+				return String.class;
+		}
+	}
+
+	@Override
+	public Object getValueAt(final int row, final int column) {
+		final Row r = rows[row];
+		if (r == null) return null;
+		if (isBackgroundColumn(column)) {
+			final Stats stats = r.stats;
+			if (stats == null || stats.version != r.version) queue(r);
+			if (stats == null) return null;
+			return column == AREA ? stats.area : stats.vertices;
+		}
+		if (r.values == null) r.values = properties(r.overlay);
+		return r.values[column];
+	}
+
+	// -- ListDataListener methods --
+
+	@Override
+	public void intervalAdded(final ListDataEvent e) {
+		final int count = e.getIndex1() - e.getIndex0() + 1;
+		if (rowCount + count > rows.length) {
+			rows = Arrays.copyOf(rows, Math.max(2 * rows.length, rowCount + count));
+		}
+		System.arraycopy(rows, e.getIndex0(), rows, e.getIndex0() + count,
+			rowCount - e.getIndex0());
+		rowCount += count;
+		for (int r = e.getIndex0(); r <= e.getIndex1(); r++) {
+			rows[r] = row(list.getElementAt(r));
+		}
+		fireTableRowsInserted(e.getIndex0(), e.getIndex1());
+	}
+
+	@Override
+	public void intervalRemoved(final ListDataEvent e) {
+		final int count = e.getIndex1() - e.getIndex0() + 1;
+		System.arraycopy(rows, e.getIndex1() + 1, rows, e.getIndex0(), rowCount -
+			e.getIndex1() - 1);
+		rowCount -= count;
+		Arrays.fill(rows, rowCount, rowCount + count, null);
+		prune();
+		fireTableRowsDeleted(e.getIndex0(), e.getIndex1());
+	}
+
+	@Override
+	public void contentsChanged(final ListDataEvent e) {
+		final int from = Math.max(0, e.getIndex0());
+		final int to = Math.min(rowCount - 1, e.getIndex1());
+		if (from > to) return;
+		for (int r = from; r <= to; r++) {
+			final Row row = row(list.getElementAt(r));
+			if (row != null && row == rows[r]) {
+				// same overlay as before, so its properties changed
+				row.version++;
+				row.values = null;
+			}
+			rows[r] = row;
+		}
+		prune();
+		fireTableRowsUpdated(from, to);
+	}
+
+	// -- Helper methods --
+
+	private Row row(final OverlayInfo info) {
+		if (info == null) return null;
+		Row row = cache.get(info.getOverlay());
+		if (row == null) {
+			row = new Row(info.getOverlay());
+			cache.put(info.getOverlay(), row);
+		}
+		return row;
+	}
+
+	/**
+	 * Drops the cached rows of overlays no longer in the table, once there are
+	 * enough of them. Rows are not dropped as soon as they leave the table,
+	 * since the list reports overlays moving as removed from the end and
+	 * changed elsewhere.
+	 */
+	private void prune() {
+		if (cache.size() <= 2 * rowCount + 16) return;
+		cache.clear();
+		for (int r = 0; r < rowCount; r++) {
+			if (rows[r] != null) cache.put(rows[r].overlay, rows[r]);
+		}
+	}
+
+	/** Queues a row for computing its area and vertex count. */
+	private void queue(final Row row) {
+		if (row.queued) return;
+		row.queued = true;
+		synchronized (pending) {
+			pending.add(new Job(row, row.version));
+			if (working) return;
+			working = true;
+		}
+		timer.start();
+		threadService.run(new Runnable() {
+
+			@Override
+			public void run() {
+				compute();
+			}
+		});
+	}
+
+	/** Computes the values of the queued rows, until there are none left. */
+	private void compute() {
+		while (true) {
+			final Job job;
+			synchronized (pending) {
+				job = pending.poll();
+				if (job == null) {
+					working = false;
+					break;
+				}
+			}
+			final Row row = job.row;
+			final Stats stats = stats(row.overlay, job.version);
+			threadService.queue(new Runnable() {
+
+				@Override
+				public void run() {
+					row.queued = false;
+					// NB: stale if the overlay changed meanwhile
+					if (row.version == stats.version) row.stats = stats;
+				}
+			});
+			computed = true;
+		}
+		// NB: queued after the values computed, so runs once they are stored
+		threadService.queue(new Runnable() {
+
+			@Override
+			public void run() {
+				finished();
+			}
+		});
+	}
+
+	/** Reports the rows updated, if values were computed since last time. */
+	private void update() {
+		if (!computed) return;
+		computed = false;
+		if (rowCount > 0) fireTableRowsUpdated(0, rowCount - 1);
+	}
+
+	/**
+	 * Reports the rows updated and notifies the change listeners, unless the
+	 * computation was restarted meanwhile.
+	 */
+	private void finished() {
+		if (isComputing()) return;
+		timer.stop();
+		computed = false;
+		if (rowCount > 0) fireTableRowsUpdated(0, rowCount - 1);
+		final ChangeEvent event = new ChangeEvent(this);
+		for (final ChangeListener listener : listenerList.getListeners(
+			ChangeListener.class))
+		{
+			listener.stateChanged(event);
+		}
+	}
+
+	private static Object[] properties(final Overlay overlay) {
+		final Object[] values = new Object[COLUMNS.length];
+		values[NAME] = overlay.getName();
+		String type = overlay.getClass().getSimpleName();
+		if (type.endsWith("Overlay") && type.length() > "Overlay".length()) {
+			type = type.substring(0, type.length() - "Overlay".length());
+		}
+		values[TYPE] = type;
+		final StringBuilder position = new StringBuilder();
+		for (int d = 2; d < overlay.numDimensions(); d++) {
+			if (position.length() > 0) position.append(", ");
+			position.append(overlay.axis(d).type().getLabel()).append('=').append(
+				(long) overlay.realMin(d) + 1);
+		}
+		values[POSITION] = position.toString();
+		values[X] = overlay.realMin(0);
+		values[Y] = overlay.realMin(1);
+		values[WIDTH] = overlay.realMax(0) - overlay.realMin(0);
+		values[HEIGHT] = overlay.realMax(1) - overlay.realMin(1);
+		values[STYLE] = style(overlay);
+		return values;
+	}
+
+	/** Describes the line and fill of an overlay, e.g. "#ffff00 1.0 DASH". */
+	private static String style(final Overlay overlay) {
+		final StringBuilder sb = new StringBuilder();
+		final ColorRGB line = overlay.getLineColor();
+		sb.append(line == null ? "none" : line.toHTMLColor());
+		sb.append(' ').append(overlay.getLineWidth());
+		if (overlay.getLineStyle() != Overlay.LineStyle.SOLID) {
+			sb.append(' ').append(overlay.getLineStyle());
+		}
+		final ColorRGB fill = overlay.getFillColor();
+		if (fill != null && overlay.getAlpha() > 0) {
+			sb.append(", fill ").append(fill.toHTMLColor());
+		}
+		return sb.toString();
+	}
+
+	private static Stats stats(final Overlay overlay, final int version) {
+		Long area = null;
+		final RegionOfInterest roi = overlay.getRegionOfInterest();
+		if (roi != null && roi.numDimensions() >= 2) {
+			area = RoiMask.rasterize(roi, Integer.MAX_VALUE, Integer.MAX_VALUE)
+				.getArea();
+		}
+		Integer vertices = null;
+		if (overlay instanceof PolygonOverlay) {
+			vertices = ((PolygonOverlay) overlay).getRegionOfInterest()
+				.getVertexCount();
+		}
+		else if (overlay instanceof PointOverlay) {
+			vertices = ((PointOverlay) overlay).getPoints().size();
+		}
+		else if (overlay instanceof GeneralPathOverlay) {
+			vertices = vertexCount(((GeneralPathOverlay) overlay)
+				.getRegionOfInterest().getGeneralPath());
+		}
+		else if (overlay instanceof RectangleOverlay) vertices = 4;
+		else if (overlay instanceof AngleOverlay) vertices = 3;
+		else if (overlay instanceof LineOverlay) vertices = 2;
+		return new Stats(version, area, vertices);
+	}
+
+	/** Counts the end points of the segments of a path. */
+	private static int vertexCount(final Shape path) {
+		int count = 0;
+		final double[] segment = new double[6];
+		for (final PathIterator it = path.getPathIterator(null); !it.isDone(); it
+			.next())
+		{
+			if (it.currentSegment(segment) != PathIterator.SEG_CLOSE) count++;
+		}
+		return count;
+	}
+
+	// -- Helper classes --
+
+	/** The cached properties of an overlay. */
+	private static class Row {
+
+		private final Overlay overlay;
+
+		/** Incremented whenever the overlay changes. Event dispatch thread only. */
+		private int version;
+
+		/** The properties computed right away. Event dispatch thread only. */
+		private Object[] values;
+
+		/** Whether the row is queued for computing its stats. */
+		private boolean queued;
+
+		private volatile Stats stats;
+
+		private Row(final Overlay overlay) {
+			this.overlay = overlay;
+		}
+	}
+
+	/** A row queued for computing its stats, at the version it had then. */
+	private static class Job {
+
+		private final Row row;
+		private final int version;
+
+		private Job(final Row row, final int version) {
+			this.row = row;
+			this.version = version;
+		}
+	}
+
+	/** The properties computed in the background, for a version of an overlay. */
+	private static class Stats {
+
+		private final int version;
+		private final Long area;
+		private final Integer vertices;
+
+		private Stats(final int version, final Long area, final Integer vertices) {
+			this.version = version;
+			this.area = area;
+			this.vertices = vertices;
+		}
+	}
+
+}
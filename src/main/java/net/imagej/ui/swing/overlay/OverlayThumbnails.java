@@ -0,0 +1,534 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.ui.swing.overlay;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.Icon;
+import javax.swing.ImageIcon;
+import javax.swing.JList;
+import javax.swing.ListModel;
+import javax.swing.SwingUtilities;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+
+import net.imagej.display.DataView;
+import net.imagej.display.DatasetView;
+import net.imagej.display.ImageDisplay;
+import net.imagej.display.ImageDisplayService;
+import net.imagej.display.OverlayInfo;
+import net.imagej.display.OverlayView;
+import net.imagej.overlay.AngleOverlay;
+import net.imagej.overlay.LineOverlay;
+import net.imagej.overlay.Overlay;
+import net.imagej.overlay.PointOverlay;
+import net.imglib2.roi.RegionOfInterest;
+
+import org.scijava.thread.ThreadService;
+import org.scijava.ui.awt.AWTColors;
+import org.scijava.util.ColorRGB;
+
+/**
+ * Thumbnails of the overlays listed in a {@link JList} of {@link OverlayInfo}s,
+ * such as the overlay manager's, each showing the overlay over a crop of the
+ * image it is displayed on.
+ * <p>
+ * Thumbnails are rendered in the background, one at a time, and only for the
+ * rows the list shows plus {@link #PREFETCH} rows on either side; a row whose
+ * thumbnail is not ready yet shows a placeholder. Rendered thumbnails are kept
+ * in a bounded cache, least recently used first out, keyed by overlay identity
+ * and version. The version is bumped by {@link #invalidate(Overlay)}, so that
+ * a changed overlay is rendered again, while thumbnails still being rendered
+ * for its old shape are dropped.
+ * </p>
+ * <p>
+ * The crop is taken from the plane the display showed when the thumbnail was
+ * rendered.
+ * </p>
+ */
+public class OverlayThumbnails implements ListDataListener {
+
+	/** Number of rows requested above and below the visible ones. */
+	public static final int PREFETCH = 20;
+
+	/** Fraction of the overlay's extent shown around it. */
+	private static final double MARGIN = 0.15;
+
+	private static final Color BACKGROUND = new Color(0x404040);
+	private static final Color PLACEHOLDER = new Color(0xd8d8d8);
+	private static final Color DEFAULT_LINE = Color.YELLOW;
+
+	private final ThreadService threadService;
+	private final ImageDisplayService imageDisplayService;
+	private final JList<OverlayInfo> list;
+	private final int size;
+
+	private final Icon placeholder;
+
+	/** The rendered thumbnails. Event dispatch thread only. */
+	private final Map<Key, Icon> cache;
+
+	/** Version of each overlay that ever changed, guarded by itself. */
+	private final Map<Overlay, Integer> versions = new IdentityHashMap<>();
+
+	/** Thumbnails waiting to be rendered, guarded by itself. */
+	private final ArrayDeque<Job> pending = new ArrayDeque<>();
+	private boolean working;
+
+	/** The display of each displayed overlay. Event dispatch thread only. */
+	private Map<Overlay, ImageDisplay> owners;
+
+	/** Whether the list changed since {@link #owners} was built. */
+	private boolean ownersStale = true;
+
+	private boolean requestQueued;
+
+	/**
+	 * Creates thumbnails of the given size for the rows of the given list,
+	 * keeping at most the given number of them. Must be called on the event
+	 * dispatch thread.
+	 */
+	public OverlayThumbnails(final ThreadService threadService,
+		final ImageDisplayService imageDisplayService,
+		final JList<OverlayInfo> list, final int size, final int capacity)
+	{
+		if (size < 1) {
+			throw new IllegalArgumentException("Invalid size: " + size);
+		}
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Invalid capacity: " + capacity);
+		}
+		this.threadService = threadService;
+		this.imageDisplayService = imageDisplayService;
+		this.list = list;
+		this.size = size;
+		placeholder = placeholder(size);
+		cache = new LinkedHashMap<Key, Icon>(16, 0.75f, true) {
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<Key, Icon> eldest) {
+				return size() > capacity;
+			}
+		};
+		list.getModel().addListDataListener(this);
+	}
+
+	// -- OverlayThumbnails methods --
+
+	/**
+	 * Gets the thumbnail of the given overlay, or a placeholder of the same
+	 * size if it is not rendered yet. Event dispatch thread only.
+	 */
+	public Icon getIcon(final Overlay overlay) {
+		final Icon icon = cache.get(new Key(overlay, version(overlay)));
+		return icon == null ? placeholder : icon;
+	}
+
+	/**
+	 * Marks the thumbnail of the given overlay as outdated. It is rendered
+	 * again when the list next asks for its row. May be called from any thread.
+	 */
+	public void invalidate(final Overlay overlay) {
+		synchronized (versions) {
+			final Integer version = versions.get(overlay);
+			versions.put(overlay, version == null ? 1 : version + 1);
+		}
+	}
+
+	/**
+	 * Queues the missing thumbnails of the rows the list shows, plus those of
+	 * {@link #PREFETCH} rows on either side, dropping any thumbnails still
+	 * queued for other rows. Event dispatch thread only.
+	 */
+	public void requestVisible() {
+		final ListModel<OverlayInfo> model = list.getModel();
+		final int first = list.getFirstVisibleIndex();
+		if (first < 0) return;
+		final int last = Math.max(first, list.getLastVisibleIndex());
+		final int from = Math.max(0, first - PREFETCH);
+		final int to = Math.min(model.getSize() - 1, last + PREFETCH);
+		prune(model);
+
+		final ArrayDeque<Job> jobs = new ArrayDeque<>();
+		final Map<ImageDisplay, Image> sources = new IdentityHashMap<>();
+		// visible rows first, then the rows below, then those above
+		for (int r = first; r <= to; r++) {
+			addJob(jobs, model.getElementAt(r), sources);
+		}
+		for (int r = first - 1; r >= from; r--) {
+			addJob(jobs, model.getElementAt(r), sources);
+		}
+
+		synchronized (pending) {
+			pending.clear();
+			pending.addAll(jobs);
+			if (working || pending.isEmpty()) return;
+			working = true;
+		}
+		threadService.run(new Runnable() {
+
+			@Override
+			public void run() {
+				render();
+			}
+		});
+	}
+
+	// -- ListDataListener methods --
+
+	@Override
+	public void intervalAdded(final ListDataEvent e) {
+		listChanged();
+	}
+
+	@Override
+	public void intervalRemoved(final ListDataEvent e) {
+		listChanged();
+	}
+
+	@Override
+	public void contentsChanged(final ListDataEvent e) {
+		listChanged();
+	}
+
+	// -- Helper methods --
+
+	/**
+	 * Requests the rows shown once the list has caught up with its model's
+	 * changes, once for a whole burst of them.
+	 */
+	private void listChanged() {
+		ownersStale = true;
+		if (requestQueued) return;
+		requestQueued = true;
+		SwingUtilities.invokeLater(new Runnable() {
+
+			@Override
+			public void run() {
+				requestQueued = false;
+				requestVisible();
+			}
+		});
+	}
+
+	private int version(final Overlay overlay) {
+		synchronized (versions) {
+			final Integer version = versions.get(overlay);
+			return version == null ? 0 : version;
+		}
+	}
+
+	/**
+	 * Drops the versions of overlays no longer listed, once there are enough of
+	 * them, along with their thumbnails, which would otherwise be taken for
+	 * those of the first version should the overlays be listed again.
+	 */
+	private void prune(final ListModel<OverlayInfo> model) {
+		synchronized (versions) {
+			if (versions.size() <= 2 * model.getSize() + 16) return;
+			final Map<Overlay, Integer> listed = new IdentityHashMap<>();
+			for (int r = 0; r < model.getSize(); r++) {
+				final OverlayInfo info = model.getElementAt(r);
+				if (info == null) continue;
+				final Integer version = versions.get(info.getOverlay());
+				if (version != null) listed.put(info.getOverlay(), version);
+			}
+			for (final Iterator<Key> it = cache.keySet().iterator(); it.hasNext();) {
+				final Overlay overlay = it.next().overlay;
+				if (versions.containsKey(overlay) && !listed.containsKey(overlay)) {
+					it.remove();
+				}
+			}
+			versions.clear();
+			versions.putAll(listed);
+		}
+	}
+
+	/** Adds a job for the given row, unless its thumbnail is cached. */
+	private void addJob(final ArrayDeque<Job> jobs, final OverlayInfo info,
+		final Map<ImageDisplay, Image> sources)
+	{
+		if (info == null) return;
+		final Overlay overlay = info.getOverlay();
+		final Key key = new Key(overlay, version(overlay));
+		if (cache.containsKey(key)) return;
+		final ImageDisplay display = owner(overlay);
+		Image source = null;
+		if (display != null) {
+			if (sources.containsKey(display)) source = sources.get(display);
+			else {
+				final DatasetView view =
+					imageDisplayService.getActiveDatasetView(display);
+				if (view != null && view.getScreenImage() != null) {
+					source = view.getScreenImage().image();
+				}
+				sources.put(display, source);
+			}
+		}
+		jobs.add(new Job(key, source));
+	}
+
+	/**
+	 * Gets the display showing the given overlay, looking at the displays
+	 * again if the list changed since they were last looked at.
+	 */
+	private ImageDisplay owner(final Overlay overlay) {
+		if (owners == null) owners = owners();
+		final ImageDisplay display = owners.get(overlay);
+		if (display != null || !ownersStale) return display;
+		owners = owners();
+		return owners.get(overlay);
+	}
+
+	private Map<Overlay, ImageDisplay> owners() {
+		ownersStale = false;
+		final Map<Overlay, ImageDisplay> map = new IdentityHashMap<>();
+		for (final ImageDisplay display : imageDisplayService.getImageDisplays()) {
+			for (final DataView view : display) {
+				if (!(view instanceof OverlayView)) continue;
+				final Overlay overlay = ((OverlayView) view).getData();
+				if (!map.containsKey(overlay)) map.put(overlay, display);
+			}
+		}
+		return map;
+	}
+
+	/** Renders the queued thumbnails, until there are none left. */
+	private void render() {
+		while (true) {
+			final Job job;
+			synchronized (pending) {
+				job = pending.poll();
+				if (job == null) {
+					working = false;
+					return;
+				}
+			}
+			// NB: stale if the overlay changed since it was queued
+			if (job.key.version != version(job.key.overlay)) continue;
+			final Icon icon = new ImageIcon(thumbnail(job.key.overlay, job.source));
+			threadService.queue(new Runnable() {
+
+				@Override
+				public void run() {
+					if (job.key.version != version(job.key.overlay)) return;
+					cache.put(job.key, icon);
+					list.repaint();
+				}
+			});
+		}
+	}
+
+	/** Draws the given overlay over a crop of the given image, if any. */
+	private BufferedImage thumbnail(final Overlay overlay, final Image source) {
+		final BufferedImage image =
+			new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+		final Graphics2D g = image.createGraphics();
+		try {
+			// a square around the overlay, with some room on each side
+			final double minX = overlay.realMin(0), maxX = overlay.realMax(0);
+			final double minY = overlay.realMin(1), maxY = overlay.realMax(1);
+			final double extent =
+				Math.max(1, Math.max(maxX - minX, maxY - minY)) * (1 + 2 * MARGIN);
+			final double left = (minX + maxX - extent) / 2;
+			final double top = (minY + maxY - extent) / 2;
+			final double scale = size / extent;
+
+			g.setColor(BACKGROUND);
+			g.fillRect(0, 0, size, size);
+			if (source != null) {
+				// show pixels as blocks when zooming in, smoothed when zooming out
+				g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, scale >= 1
+					? RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR
+					: RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+				g.drawImage(source, new AffineTransform(scale, 0, 0, scale, -left *
+					scale, -top * scale), null);
+			}
+
+			final ColorRGB lineColor = overlay.getLineColor();
+			final Color color =
+				lineColor == null ? DEFAULT_LINE : AWTColors.getColor(lineColor);
+			g.setColor(color);
+			g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+				RenderingHints.VALUE_ANTIALIAS_ON);
+			g.setStroke(new BasicStroke(1.5f));
+			if (overlay instanceof LineOverlay) {
+				final LineOverlay line = (LineOverlay) overlay;
+				g.draw(new Line2D.Double(scaled(line.getLineStart(0), left, scale),
+					scaled(line.getLineStart(1), top, scale), scaled(line.getLineEnd(0),
+						left, scale), scaled(line.getLineEnd(1), top, scale)));
+			}
+			else if (overlay instanceof AngleOverlay) {
+				final AngleOverlay angle = (AngleOverlay) overlay;
+				final Path2D path = new Path2D.Double();
+				path.moveTo(scaled(angle.getPoint1(0), left, scale), scaled(angle
+					.getPoint1(1), top, scale));
+				path.lineTo(scaled(angle.getCenter(0), left, scale), scaled(angle
+					.getCenter(1), top, scale));
+				path.lineTo(scaled(angle.getPoint2(0), left, scale), scaled(angle
+					.getPoint2(1), top, scale));
+				g.draw(path);
+			}
+			else if (overlay instanceof PointOverlay) {
+				final List<double[]> points = ((PointOverlay) overlay).getPoints();
+				for (final double[] point : points) {
+					g.fill(new Ellipse2D.Double(scaled(point[0], left, scale) - 2, scaled(
+						point[1], top, scale) - 2, 4, 4));
+				}
+			}
+			else {
+				final RegionOfInterest roi = overlay.getRegionOfInterest();
+				if (roi != null && roi.numDimensions() >= 2) {
+					drawRegion(image, roi, left, top, scale, color);
+				}
+			}
+		}
+		finally {
+			g.dispose();
+		}
+		return image;
+	}
+
+	/** Converts an image coordinate to a thumbnail coordinate. */
+	private static double scaled(final double value, final double origin,
+		final double scale)
+	{
+		return (value - origin) * scale;
+	}
+
+	/**
+	 * Shades the thumbnail pixels whose centers lie within the given region,
+	 * outlining them in the given color. As for {@link RoiMask}, any dimensions
+	 * beyond the first two are held at 0.
+	 */
+	private void drawRegion(final BufferedImage image,
+		final RegionOfInterest roi, final double left, final double top,
+		final double scale, final Color color)
+	{
+		final boolean[] inside = new boolean[size * size];
+		final double[] position = new double[roi.numDimensions()];
+		for (int j = 0; j < size; j++) {
+			position[1] = top + (j + 0.5) / scale;
+			for (int i = 0; i < size; i++) {
+				position[0] = left + (i + 0.5) / scale;
+				inside[j * size + i] = roi.contains(position);
+			}
+		}
+		final int outline = color.getRGB() | 0xff000000;
+		final int shade = (color.getRGB() & 0xffffff) | 0x60000000;
+		for (int j = 0; j < size; j++) {
+			for (int i = 0; i < size; i++) {
+				if (!inside[j * size + i]) continue;
+				final boolean edge = i == 0 || j == 0 || i == size - 1 ||
+					j == size - 1 || !inside[j * size + i - 1] ||
+					!inside[j * size + i + 1] || !inside[(j - 1) * size + i] ||
+					!inside[(j + 1) * size + i];
+				image.setRGB(i, j, edge ? outline : blend(image.getRGB(i, j), shade));
+			}
+		}
+	}
+
+	/** Composites a translucent color over an opaque one. */
+	private static int blend(final int under, final int over) {
+		final int a = over >>> 24;
+		int rgb = 0xff000000;
+		for (int shift = 0; shift <= 16; shift += 8) {
+			final int u = (under >> shift) & 0xff, o = (over >> shift) & 0xff;
+			rgb |= ((o * a + u * (255 - a)) / 255) << shift;
+		}
+		return rgb;
+	}
+
+	private static Icon placeholder(final int size) {
+		final BufferedImage image =
+			new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+		final Graphics2D g = image.createGraphics();
+		g.setColor(PLACEHOLDER);
+		g.fillRect(0, 0, size, size);
+		g.dispose();
+		return new ImageIcon(image);
+	}
+
+	// -- Helper classes --
+
+	/** Identifies a version of an overlay. */
+	private static class Key {
+
+		private final Overlay overlay;
+		private final int version;
+
+		private Key(final Overlay overlay, final int version) {
+			this.overlay = overlay;
+			this.version = version;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (!(o instanceof Key)) return false;
+			final Key key = (Key) o;
+			return key.overlay == overlay && key.version == version;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * System.identityHashCode(overlay) + version;
+		}
+	}
+
+	/** A thumbnail to render, with the image to crop. */
+	private static class Job {
+
+		private final Key key;
+		private final Image source;
+
+		private Job(final Key key, final Image source) {
+			this.key = key;
+			this.source = source;
+		}
+	}
+
+}
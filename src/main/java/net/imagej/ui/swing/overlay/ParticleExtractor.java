@@ -0,0 +1,466 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.ui.swing.overlay;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.type.numeric.RealType;
+
+import org.scijava.thread.ThreadService;
+
+/**
+ * Finds the particles of a plane: the 8-connected components of the pixels
+ * whose values lie within a range, and traces the outline of each.
+ * <p>
+ * The plane is labeled in two passes with a union-find forest over its pixels.
+ * First, each band of rows is labeled by its own worker, linking every pixel
+ * to its neighbors above and to the left; the trees of adjacent bands are
+ * then joined along the rows where they meet. Roots are always the smallest
+ * pixel index of their tree, so that the root of each particle ends up being
+ * its first pixel in raster order, from which its outline is traced. Second,
+ * the bands are relabeled in parallel, pointing each pixel straight to its
+ * root.
+ * </p>
+ * <p>
+ * Outlines follow the pixel edges, as the ImageJ wand does, and enclose the
+ * holes of their particles. Particles can be filtered by area, in pixels and
+ * not counting holes, and by circularity, computed from the area and the
+ * traced perimeter.
+ * </p>
+ */
+public class ParticleExtractor {
+
+	/** Directions along pixel edges: right, down, left and up. */
+	private static final int[] DX = { 1, 0, -1, 0 }, DY = { 0, 1, 0, -1 };
+
+	private final ThreadService threadService;
+	private final int workers;
+
+	private double minArea = 0;
+	private double maxArea = Double.POSITIVE_INFINITY;
+	private double minCircularity = 0;
+	private double maxCircularity = 1;
+
+	public ParticleExtractor(final ThreadService threadService) {
+		this(threadService, Runtime.getRuntime().availableProcessors());
+	}
+
+	public ParticleExtractor(final ThreadService threadService,
+		final int workers)
+	{
+		if (workers < 1) {
+			throw new IllegalArgumentException("Invalid worker count: " + workers);
+		}
+		this.threadService = threadService;
+		this.workers = workers;
+	}
+
+	// -- ParticleExtractor methods --
+
+	/** Keeps only particles with an area, in pixels, within the given range. */
+	public void setSizeRange(final double min, final double max) {
+		if (min > max) {
+			throw new IllegalArgumentException("Invalid size range: " + min + "-" +
+				max);
+		}
+		minArea = min;
+		maxArea = max;
+	}
+
+	/** Keeps only particles with a circularity within the given range. */
+	public void setCircularityRange(final double min, final double max) {
+		if (min > max) {
+			throw new IllegalArgumentException("Invalid circularity range: " + min +
+				"-" + max);
+		}
+		minCircularity = min;
+		maxCircularity = max;
+	}
+
+	/**
+	 * Finds the particles of one plane of an image.
+	 *
+	 * @param image the image to segment
+	 * @param xAxis the dimension of the image along which X runs
+	 * @param yAxis the dimension of the image along which Y runs
+	 * @param plane position of the plane; the values along the X and Y
+	 *          dimensions are ignored
+	 * @param min smallest value of a particle's pixels
+	 * @param max largest value of a particle's pixels
+	 * @return the particles passing the filters, in raster order of their first
+	 *         pixel
+	 */
+	public <T extends RealType<?>> List<Particle> extract(
+		final RandomAccessibleInterval<T> image, final int xAxis, final int yAxis,
+		final long[] plane, final double min, final double max)
+	{
+		final int width = (int) image.dimension(xAxis);
+		final int height = (int) image.dimension(yAxis);
+		if ((long) width * height > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Plane too large: " + width + " x " +
+				height);
+		}
+		final int[] parent = new int[width * height];
+		final int bandCount = Math.max(1, Math.min(workers, height));
+		final int[] bandStart = new int[bandCount + 1];
+		for (int b = 0; b <= bandCount; b++) {
+			bandStart[b] = (int) ((long) height * b / bandCount);
+		}
+
+		// first pass: label each band on its own
+		forEachBand(bandCount, new Band() {
+
+			@Override
+			public void run(final int b) {
+				final RandomAccess<T> access = image.randomAccess();
+				for (int d = 0; d < plane.length; d++) {
+					if (d == xAxis || d == yAxis) continue;
+					access.setPosition(plane[d], d);
+				}
+				labelBand(access, xAxis, yAxis, min, max, parent, width, bandStart[b],
+					bandStart[b + 1]);
+			}
+		});
+
+		// join the trees of adjacent bands
+		for (int b = 1; b < bandCount; b++) {
+			final int y = bandStart[b];
+			for (int x = 0; x < width; x++) {
+				final int i = y * width + x;
+				if (parent[i] < 0) continue;
+				for (int dx = -1; dx <= 1; dx++) {
+					if (x + dx < 0 || x + dx >= width) continue;
+					final int n = i - width + dx;
+					if (parent[n] >= 0) union(parent, i, n);
+				}
+			}
+		}
+
+		// second pass: point every pixel to its root, and collect the roots
+		final int[][] bandRoots = new int[bandCount][];
+		forEachBand(bandCount, new Band() {
+
+			@Override
+			public void run(final int b) {
+				int[] roots = new int[16];
+				int n = 0;
+				final int end = bandStart[b + 1] * width;
+				for (int i = bandStart[b] * width; i < end; i++) {
+					if (parent[i] < 0) continue;
+					// NB: other bands may see either the old parent or the root here,
+					// both of which lead to the same root
+					final int root = find(parent, i);
+					parent[i] = root;
+					if (root == i) {
+						if (n == roots.length) roots = Arrays.copyOf(roots, 2 * n);
+						roots[n++] = i;
+					}
+				}
+				bandRoots[b] = Arrays.copyOf(roots, n);
+			}
+		});
+		int count = 0;
+		for (final int[] roots : bandRoots) {
+			count += roots.length;
+		}
+		final int[] roots = new int[count];
+		count = 0;
+		for (final int[] r : bandRoots) {
+			System.arraycopy(r, 0, roots, count, r.length);
+			count += r.length;
+		}
+
+		// count the pixels of each particle
+		final int[][] bandAreas = new int[bandCount][];
+		forEachBand(bandCount, new Band() {
+
+			@Override
+			public void run(final int b) {
+				final int[] areas = new int[roots.length];
+				final int end = bandStart[b + 1] * width;
+				for (int i = bandStart[b] * width; i < end; i++) {
+					if (parent[i] >= 0) areas[Arrays.binarySearch(roots, parent[i])]++;
+				}
+				bandAreas[b] = areas;
+			}
+		});
+		final int[] areas = new int[roots.length];
+		for (final int[] a : bandAreas) {
+			for (int k = 0; k < areas.length; k++) {
+				areas[k] += a[k];
+			}
+		}
+
+		// trace the particles of the right size
+		final Particle[] particles = new Particle[roots.length];
+		final AtomicInteger next = new AtomicInteger();
+		final int tracers = Math.min(workers, Math.max(1, roots.length));
+		final List<Future<Void>> futures = new ArrayList<>(tracers);
+		for (int w = 0; w < tracers; w++) {
+			futures.add(threadService.run(new Callable<Void>() {
+
+				@Override
+				public Void call() {
+					int k;
+					while ((k = next.getAndIncrement()) < roots.length) {
+						if (areas[k] < minArea || areas[k] > maxArea) continue;
+						final Particle particle =
+							trace(parent, width, height, roots[k], areas[k]);
+						final double circularity = particle.getCircularity();
+						if (circularity < minCircularity || circularity > maxCircularity) {
+							continue;
+						}
+						particles[k] = particle;
+					}
+					return null;
+				}
+			}));
+		}
+		RoiMeasurer.await(futures);
+
+		final List<Particle> result = new ArrayList<>();
+		for (final Particle particle : particles) {
+			if (particle != null) result.add(particle);
+		}
+		return result;
+	}
+
+	// -- Helper methods --
+
+	/**
+	 * Labels the rows of a band, linking each pixel within the range to its
+	 * neighbors above, within the band, and to the left. Pixels outside the
+	 * range are set to -1.
+	 */
+	private static void labelBand(
+		final RandomAccess<? extends RealType<?>> access, final int xAxis,
+		final int yAxis, final double min, final double max, final int[] parent,
+		final int width, final int startY, final int endY)
+	{
+		for (int y = startY; y < endY; y++) {
+			access.setPosition(y, yAxis);
+			access.setPosition(0, xAxis);
+			for (int x = 0; x < width; x++, access.fwd(xAxis)) {
+				final int i = y * width + x;
+				final double value = access.get().getRealDouble();
+				if (!(value >= min && value <= max)) {
+					parent[i] = -1;
+					continue;
+				}
+				parent[i] = i;
+				if (x > 0 && parent[i - 1] >= 0) union(parent, i, i - 1);
+				if (y == startY) continue;
+				for (int dx = -1; dx <= 1; dx++) {
+					if (x + dx < 0 || x + dx >= width) continue;
+					final int n = i - width + dx;
+					if (parent[n] >= 0) union(parent, i, n);
+				}
+			}
+		}
+	}
+
+	/** Gets the root of a pixel's tree. */
+	private static int find(final int[] parent, int i) {
+		while (parent[i] != i) {
+			i = parent[i];
+		}
+		return i;
+	}
+
+	/** Joins the trees of two pixels, under the smaller root. */
+	private static void union(final int[] parent, final int a, final int b) {
+		int ra = a, rb = b;
+		while (parent[ra] != ra) {
+			parent[ra] = parent[parent[ra]];
+			ra = parent[ra];
+		}
+		while (parent[rb] != rb) {
+			parent[rb] = parent[parent[rb]];
+			rb = parent[rb];
+		}
+		if (ra < rb) parent[rb] = ra;
+		else if (rb < ra) parent[ra] = rb;
+	}
+
+	/**
+	 * Traces the outline of a particle along the pixel edges, clockwise from
+	 * the top left corner of its first pixel, keeping the particle on the
+	 * right.
+	 */
+	private static Particle trace(final int[] parent, final int width,
+		final int height, final int root, final int area)
+	{
+		final int x0 = root % width, y0 = root / width;
+		int[] xs = new int[16], ys = new int[16];
+		int n = 0;
+		xs[n] = x0;
+		ys[n++] = y0;
+		int x = x0 + 1, y = y0, d = 0;
+		while (x != x0 || y != y0) {
+			// the pixels ahead, on the left and right of the current direction
+			final boolean left, right;
+			switch (d) {
+				case 0:
+					left = inside(parent, width, height, root, x, y - 1);
+					right = inside(parent, width, height, root, x, y);
+					break;
+				case 1:
+					left = inside(parent, width, height, root, x, y);
+					right = inside(parent, width, height, root, x - 1, y);
+					break;
+				case 2:
+					left = inside(parent, width, height, root, x - 1, y);
+					right = inside(parent, width, height, root, x - 1, y - 1);
+					break;
+				default:
+					left = inside(parent, width, height, root, x - 1, y - 1);
+					right = inside(parent, width, height, root, x, y - 1);
+			}
+			final int turn = left ? 3 : right ? 0 : 1;
+			if (turn != 0) {
+				if (n == xs.length) {
+					xs = Arrays.copyOf(xs, 2 * n);
+					ys = Arrays.copyOf(ys, 2 * n);
+				}
+				xs[n] = x;
+				ys[n++] = y;
+				d = (d + turn) & 3;
+			}
+			x += DX[d];
+			y += DY[d];
+		}
+		return new Particle(Arrays.copyOf(xs, n), Arrays.copyOf(ys, n), area);
+	}
+
+	private static boolean inside(final int[] parent, final int width,
+		final int height, final int root, final int x, final int y)
+	{
+		return x >= 0 && y >= 0 && x < width && y < height &&
+			parent[y * width + x] == root;
+	}
+
+	private void forEachBand(final int bandCount, final Band band) {
+		final List<Future<Void>> futures = new ArrayList<>(bandCount);
+		for (int b = 0; b < bandCount; b++) {
+			final int index = b;
+			futures.add(threadService.run(new Callable<Void>() {
+
+				@Override
+				public Void call() {
+					band.run(index);
+					return null;
+				}
+			}));
+		}
+		RoiMeasurer.await(futures);
+	}
+
+	// -- Helper classes --
+
+	private interface Band {
+
+		void run(int b);
+	}
+
+	/** The outline of a particle, with corners at pixel corners. */
+	public static class Particle {
+
+		private final int[] xs, ys;
+		private final int area;
+
+		private Particle(final int[] xs, final int[] ys, final int area) {
+			this.xs = xs;
+			this.ys = ys;
+			this.area = area;
+		}
+
+		/** Gets the number of pixels of the particle, not counting holes. */
+		public int getArea() {
+			return area;
+		}
+
+		public int getVertexCount() {
+			return xs.length;
+		}
+
+		public int getX(final int i) {
+			return xs[i];
+		}
+
+		public int getY(final int i) {
+			return ys[i];
+		}
+
+		/**
+		 * Gets the length of the outline, with the corners of staircases cut, as
+		 * ImageJ does for traced outlines.
+		 */
+		public double getPerimeter() {
+			final int n = xs.length;
+			int sumdx = 0, sumdy = 0, corners = 0;
+			int dx1 = xs[0] - xs[n - 1], dy1 = ys[0] - ys[n - 1];
+			int side1 = Math.abs(dx1) + Math.abs(dy1);
+			boolean corner = false;
+			for (int i = 0; i < n; i++) {
+				final int nexti = (i + 1) % n;
+				final int dx2 = xs[nexti] - xs[i], dy2 = ys[nexti] - ys[i];
+				sumdx += Math.abs(dx1);
+				sumdy += Math.abs(dy1);
+				final int side2 = Math.abs(dx2) + Math.abs(dy2);
+				if (side1 > 1 || !corner) {
+					corner = true;
+					corners++;
+				}
+				else corner = false;
+				dx1 = dx2;
+				dy1 = dy2;
+				side1 = side2;
+			}
+			return sumdx + sumdy - corners * (2 - Math.sqrt(2));
+		}
+
+		/** Gets 4&pi; area / perimeter&sup2;, at most 1. */
+		public double getCircularity() {
+			final double perimeter = getPerimeter();
+			if (perimeter == 0) return 0;
+			return Math.min(1, 4 * Math.PI * area / (perimeter * perimeter));
+		}
+	}
+
+}
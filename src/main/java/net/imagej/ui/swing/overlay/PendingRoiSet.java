@@ -0,0 +1,129 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.ui.swing.overlay;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The overlays of an open {@link RoiSetReader} that have not been created
+ * yet, grouped by the plane they are on.
+ * <p>
+ * A plane is given by the positions along the non-XY axes of the display the
+ * set is opened into. The overlays of a plane are handed out once, with
+ * {@link #take}; each caller reports back with {@link #done} when it has
+ * created them, and the reader is closed after the last overlay was created.
+ * </p>
+ */
+class PendingRoiSet {
+
+	private final RoiSetReader reader;
+
+	/** Indices of the pending overlays, by plane; guarded by this set. */
+	private final Map<List<Long>, List<Integer>> planes = new HashMap<>();
+
+	/** Number of planes handed out and not reported back yet. */
+	private int taken;
+
+	private boolean closed;
+
+	public PendingRoiSet(final RoiSetReader reader) {
+		this.reader = reader;
+	}
+
+	/** Gets the reader to create the overlays with. */
+	public RoiSetReader getReader() {
+		return reader;
+	}
+
+	/** Adds the overlay of the given index to the given plane. */
+	public synchronized void add(final List<Long> plane, final int i) {
+		List<Integer> indices = planes.get(plane);
+		if (indices == null) {
+			indices = new ArrayList<>();
+			planes.put(plane, indices);
+		}
+		indices.add(i);
+	}
+
+	/** Gets whether no overlays are left to hand out. */
+	public synchronized boolean isEmpty() {
+		return planes.isEmpty();
+	}
+
+	/**
+	 * Removes the overlays of the given plane from the set.
+	 *
+	 * @return their indices, or null if there are none; when non-null, the
+	 *         caller must call {@link #done} once they are created
+	 */
+	public synchronized List<Integer> take(final List<Long> plane) {
+		if (closed) return null;
+		final List<Integer> indices = planes.remove(plane);
+		if (indices != null) taken++;
+		return indices;
+	}
+
+	/**
+	 * Reports that the overlays of a plane handed out by {@link #take} were
+	 * created, closing the reader if no more overlays are pending.
+	 *
+	 * @return true if the set is now closed
+	 */
+	public boolean done() {
+		synchronized (this) {
+			taken--;
+			if (taken > 0 || !planes.isEmpty()) return false;
+		}
+		close();
+		return true;
+	}
+
+	/** Discards the pending overlays, and closes the reader. */
+	public void close() {
+		synchronized (this) {
+			if (closed) return;
+			closed = true;
+			planes.clear();
+		}
+		try {
+			reader.close();
+		}
+		catch (final IOException exc) {
+			// NB: the file was only read
+		}
+	}
+
+}
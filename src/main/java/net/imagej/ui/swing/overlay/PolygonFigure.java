@@ -31,11 +31,11 @@
 
 package net.imagej.ui.swing.overlay;
 
+import java.awt.geom.Point2D;
 import java.util.Collection;
-import java.util.LinkedList;
 
+import org.jhotdraw.draw.AttributeKeys;
 import org.jhotdraw.draw.BezierFigure;
-import org.jhotdraw.draw.handle.BezierOutlineHandle;
 import org.jhotdraw.draw.handle.Handle;
 
 /**
@@ -45,6 +45,9 @@ import org.jhotdraw.draw.handle.Handle;
  */
 public class PolygonFigure extends BezierFigure {
 
+	/** Index of the polygon's edges, rebuilt when its geometry changes. */
+	private transient SegmentIndex segmentIndex;
+
 	public PolygonFigure() {
 		// The constructor makes the BezierFigure a closed figure.
 		super(true);
@@ -52,15 +55,31 @@ public class PolygonFigure extends BezierFigure {
 
 	@Override
 	public Collection<Handle> createHandles(final int detailLevel) {
-		final LinkedList<Handle> handles = new LinkedList<>();
 		if (detailLevel != 0) {
 			return super.createHandles(detailLevel);
 		}
-		handles.add(new BezierOutlineHandle(this));
-		for (int i = 0, n = path.size(); i < n; i++) {
-			handles.add(new PolygonNodeHandle(this, i));
-		}
-		return handles;
+		// NB: Outlines with many nodes get a single, decimating node handle.
+		return DecimatedNodeHandle.createHandles(this);
+	}
+
+	@Override
+	public boolean contains(final Point2D.Double p) {
+		final double tolerance =
+			Math.max(2f, AttributeKeys.getStrokeTotalWidth(this) / 2d);
+		final SegmentIndex index = getSegmentIndex();
+		return index.contains(p.x, p.y) || index.isNear(p.x, p.y, tolerance);
+	}
+
+	@Override
+	public synchronized void invalidate() {
+		super.invalidate();
+		segmentIndex = null;
+	}
+
+	/** Gets the index of the polygon's edges, building it if needed. */
+	public synchronized SegmentIndex getSegmentIndex() {
+		if (segmentIndex == null) segmentIndex = new SegmentIndex(path);
+		return segmentIndex;
 	}
 
 	private static final long serialVersionUID = 1L;
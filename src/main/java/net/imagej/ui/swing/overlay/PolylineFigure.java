@@ -31,11 +31,11 @@
 
 package net.imagej.ui.swing.overlay;
 
+import java.awt.geom.Point2D;
 import java.util.Collection;
-import java.util.LinkedList;
 
+import org.jhotdraw.draw.AttributeKeys;
 import org.jhotdraw.draw.BezierFigure;
-import org.jhotdraw.draw.handle.BezierOutlineHandle;
 import org.jhotdraw.draw.handle.Handle;
 
 /**
@@ -45,21 +45,51 @@ import org.jhotdraw.draw.handle.Handle;
  */
 public class PolylineFigure extends BezierFigure {
 
+	/** Index of the polyline's segments, rebuilt when its geometry changes. */
+	private transient SegmentIndex segmentIndex;
+
 	public PolylineFigure() {
 		super(false);
 	}
 
 	@Override
 	public Collection<Handle> createHandles(final int detailLevel) {
-		final LinkedList<Handle> handles = new LinkedList<>();
 		if (detailLevel != 0) {
 			return super.createHandles(detailLevel);
 		}
-		handles.add(new BezierOutlineHandle(this));
-		for (int i = 0, n = path.size(); i < n; i++) {
-			handles.add(new PolygonNodeHandle(this, i));
+		// NB: Outlines with many nodes get a single, decimating node handle.
+		return DecimatedNodeHandle.createHandles(this);
+	}
+
+	@Override
+	public boolean contains(final Point2D.Double p) {
+		if (get(AttributeKeys.START_DECORATION) != null ||
+			get(AttributeKeys.END_DECORATION) != null)
+		{
+			// NB: Hit-testing the decorations is left to BezierFigure.
+			return super.contains(p);
+		}
+		final double tolerance =
+			Math.max(2f, AttributeKeys.getStrokeTotalWidth(this) / 2d);
+		final SegmentIndex index = getSegmentIndex();
+		if (get(AttributeKeys.FILL_COLOR) != null &&
+			get(AttributeKeys.UNCLOSED_PATH_FILLED) && index.contains(p.x, p.y))
+		{
+			return true;
 		}
-		return handles;
+		return index.isNear(p.x, p.y, tolerance);
+	}
+
+	@Override
+	public synchronized void invalidate() {
+		super.invalidate();
+		segmentIndex = null;
+	}
+
+	/** Gets the index of the polyline's segments, building it if needed. */
+	public synchronized SegmentIndex getSegmentIndex() {
+		if (segmentIndex == null) segmentIndex = new SegmentIndex(path);
+		return segmentIndex;
 	}
 
 }
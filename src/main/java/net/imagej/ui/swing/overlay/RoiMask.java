@@ -0,0 +1,160 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.ui.swing.overlay;
+
+import java.util.Arrays;
+
+import net.imglib2.roi.RegionOfInterest;
+
+/**
+ * The pixels of an XY plane covered by a {@link RegionOfInterest}, stored as
+ * horizontal runs per row.
+ * <p>
+ * A region is rasterized once, by testing the integer positions inside its
+ * bounding box as imglib2's iterable regions do, and the mask can then be
+ * applied to any number of planes without asking the region again.
+ * </p>
+ */
+public class RoiMask {
+
+	private final int minX, minY, height;
+
+	/** Start of each row's runs in {@link #runs}, plus one final end offset. */
+	private final int[] rowStart;
+
+	/** Runs of covered pixels, as pairs of first and last-plus-one columns. */
+	private final int[] runs;
+
+	private final long area;
+
+	private RoiMask(final int minX, final int minY, final int height,
+		final int[] rowStart, final int[] runs, final long area)
+	{
+		this.minX = minX;
+		this.minY = minY;
+		this.height = height;
+		this.rowStart = rowStart;
+		this.runs = runs;
+		this.area = area;
+	}
+
+	// -- RoiMask methods --
+
+	/**
+	 * Rasterizes the given region within a plane of the given size. The first
+	 * two dimensions of the region are taken as X and Y; any others are held
+	 * at 0.
+	 */
+	public static RoiMask rasterize(final RegionOfInterest roi,
+		final long width, final long height)
+	{
+		if (roi.numDimensions() < 2) {
+			throw new IllegalArgumentException("Region is not planar: " +
+				roi.numDimensions() + " dimensions");
+		}
+		final int x0 = (int) Math.max(0, Math.ceil(roi.realMin(0)));
+		final int y0 = (int) Math.max(0, Math.ceil(roi.realMin(1)));
+		final int x1 = (int) Math.min(width - 1, Math.floor(roi.realMax(0)));
+		final int y1 = (int) Math.min(height - 1, Math.floor(roi.realMax(1)));
+		if (x1 < x0 || y1 < y0) {
+			return new RoiMask(0, 0, 0, new int[1], new int[0], 0);
+		}
+
+		final int rows = y1 - y0 + 1;
+		final int[] rowStart = new int[rows + 1];
+		int[] runs = new int[2 * rows];
+		int count = 0;
+		long area = 0;
+		final double[] position = new double[roi.numDimensions()];
+		for (int y = y0; y <= y1; y++) {
+			rowStart[y - y0] = count;
+			position[1] = y;
+			int runStart = -1;
+			for (int x = x0; x <= x1 + 1; x++) {
+				boolean inside = false;
+				if (x <= x1) {
+					position[0] = x;
+					inside = roi.contains(position);
+				}
+				if (inside && runStart < 0) runStart = x;
+				else if (!inside && runStart >= 0) {
+					if (count + 2 > runs.length) {
+						runs = Arrays.copyOf(runs, 2 * runs.length);
+					}
+					runs[count++] = runStart;
+					runs[count++] = x;
+					area += x - runStart;
+					runStart = -1;
+				}
+			}
+		}
+		rowStart[rows] = count;
+		return new RoiMask(x0, y0, rows, rowStart, Arrays.copyOf(runs, count),
+			area);
+	}
+
+	/** Gets the number of covered pixels. */
+	public long getArea() {
+		return area;
+	}
+
+	/** Gets the leftmost column of the mask's bounding box. */
+	public int getMinX() {
+		return minX;
+	}
+
+	/** Gets the topmost row of the mask's bounding box. */
+	public int getMinY() {
+		return minY;
+	}
+
+	/** Gets the number of rows of the mask's bounding box. */
+	public int getHeight() {
+		return height;
+	}
+
+	/** Gets the number of runs of covered pixels in the given row. */
+	public int getRunCount(final int row) {
+		return (rowStart[row + 1] - rowStart[row]) / 2;
+	}
+
+	/** Gets the first column of the given run of the given row. */
+	public int getRunStart(final int row, final int run) {
+		return runs[rowStart[row] + 2 * run];
+	}
+
+	/** Gets the column after the last one of the given run of the given row. */
+	public int getRunEnd(final int row, final int run) {
+		return runs[rowStart[row] + 2 * run + 1];
+	}
+
+}
@@ -0,0 +1,107 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.ui.swing.overlay;
+
+/**
+ * Statistics of the pixels of one plane covered by a {@link RoiMask}.
+ * Coordinates are in pixels.
+ */
+public class RoiMeasurement {
+
+	private long count;
+	private double sum;
+	/** Running mean and sum of squared deviations from it (Welford). */
+	private double mean, squaredDeviations;
+	private double min = Double.POSITIVE_INFINITY;
+	private double max = Double.NEGATIVE_INFINITY;
+	private double sumX, sumY;
+
+	// -- RoiMeasurement methods --
+
+	/** Adds the value of the pixel at the given position. */
+	public void add(final double value, final long x, final long y) {
+		count++;
+		sum += value;
+		final double delta = value - mean;
+		mean += delta / count;
+		squaredDeviations += delta * (value - mean);
+		if (value < min) min = value;
+		if (value > max) max = value;
+		sumX += x;
+		sumY += y;
+	}
+
+	/** Gets the number of pixels measured. */
+	public long getArea() {
+		return count;
+	}
+
+	/** Gets the mean value, or NaN if no pixels were measured. */
+	public double getMean() {
+		return count == 0 ? Double.NaN : mean;
+	}
+
+	/**
+	 * Gets the sample standard deviation of the values, or NaN if fewer than two
+	 * pixels were measured.
+	 */
+	public double getStdDev() {
+		if (count < 2) return Double.NaN;
+		return Math.sqrt(squaredDeviations / (count - 1));
+	}
+
+	/** Gets the minimum value, or NaN if no pixels were measured. */
+	public double getMin() {
+		return count == 0 ? Double.NaN : min;
+	}
+
+	/** Gets the maximum value, or NaN if no pixels were measured. */
+	public double getMax() {
+		return count == 0 ? Double.NaN : max;
+	}
+
+	/** Gets the X coordinate of the centroid of the pixels measured. */
+	public double getCentroidX() {
+		return count == 0 ? Double.NaN : sumX / count;
+	}
+
+	/** Gets the Y coordinate of the centroid of the pixels measured. */
+	public double getCentroidY() {
+		return count == 0 ? Double.NaN : sumY / count;
+	}
+
+	/** Gets the integrated density, i.e. the sum of the values. */
+	public double getIntegratedDensity() {
+		return sum;
+	}
+
+}
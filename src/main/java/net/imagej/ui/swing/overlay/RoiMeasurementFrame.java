@@ -0,0 +1,113 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.ui.swing.overlay;
+
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import javax.swing.JButton;
+import javax.swing.JFileChooser;
+import javax.swing.JFrame;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.filechooser.FileNameExtensionFilter;
+
+/**
+ * Window showing a {@link RoiMeasurementTable}, from which it can be saved as
+ * a CSV file.
+ */
+public class RoiMeasurementFrame extends JFrame {
+
+	private final RoiMeasurementTable table;
+
+	public RoiMeasurementFrame(final String title,
+		final RoiMeasurementTable table)
+	{
+		super(title);
+		this.table = table;
+		setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+
+		final JTable jtable = new JTable(table);
+		jtable.setAutoCreateRowSorter(true);
+		final JScrollPane scroller = new JScrollPane(jtable);
+		scroller.setPreferredSize(new Dimension(700, 300));
+
+		final JButton saveButton = new JButton("Save As CSV...");
+		saveButton.addActionListener(new ActionListener() {
+
+			@Override
+			public void actionPerformed(final ActionEvent e) {
+				save();
+			}
+		});
+		final JPanel buttonPane = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+		buttonPane.add(saveButton);
+
+		getContentPane().add(scroller, BorderLayout.CENTER);
+		getContentPane().add(buttonPane, BorderLayout.SOUTH);
+		pack();
+	}
+
+	// -- Helper methods --
+
+	private void save() {
+		final JFileChooser chooser = new JFileChooser();
+		chooser.setDialogTitle("Save Measurements as CSV ...");
+		chooser.setFileFilter(new FileNameExtensionFilter(
+			"Comma-separated values (*.csv)", "csv"));
+		if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+		File file = chooser.getSelectedFile();
+		if (!file.getName().toLowerCase().endsWith(".csv")) {
+			file = new File(file.getParentFile(), file.getName() + ".csv");
+		}
+		try (final Writer out =
+			new OutputStreamWriter(new FileOutputStream(file), "UTF-8"))
+		{
+			table.writeCsv(out);
+		}
+		catch (final IOException exc) {
+			JOptionPane.showMessageDialog(this, "Could not save " + file + ": " +
+				exc.getMessage(), "Save Failed", JOptionPane.ERROR_MESSAGE);
+		}
+	}
+
+}
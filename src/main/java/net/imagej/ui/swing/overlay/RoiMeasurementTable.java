@@ -0,0 +1,176 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.ui.swing.overlay;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * A table of {@link RoiMeasurement}s, one row per region and plane, which can
+ * be written as comma-separated values.
+ */
+public class RoiMeasurementTable extends AbstractTableModel {
+
+	private static final String[] COLUMNS = { "Label", "Image", "Position",
+		"Area", "Mean", "StdDev", "Min", "Max", "X", "Y", "IntDen" };
+
+	/** Index of the first numeric column. */
+	private static final int FIRST_VALUE = 3;
+
+	private final List<Row> rows = new ArrayList<>();
+
+	// -- RoiMeasurementTable methods --
+
+	/**
+	 * Adds a row.
+	 *
+	 * @param label name of the measured region
+	 * @param image name of the measured image
+	 * @param position description of the measured plane, e.g. "Z=3, Time=1"
+	 * @param measurement the measurement
+	 */
+	public void addRow(final String label, final String image,
+		final String position, final RoiMeasurement measurement)
+	{
+		rows.add(new Row(label, image, position, measurement));
+		fireTableRowsInserted(rows.size() - 1, rows.size() - 1);
+	}
+
+	/** Writes the table, with a header line, as comma-separated values. */
+	public void writeCsv(final Writer out) throws IOException {
+		for (int c = 0; c < COLUMNS.length; c++) {
+			if (c > 0) out.write(',');
+			out.write(COLUMNS[c]);
+		}
+		out.write('\n');
+		for (int r = 0; r < rows.size(); r++) {
+			for (int c = 0; c < COLUMNS.length; c++) {
+				if (c > 0) out.write(',');
+				final Object value = getValueAt(r, c);
+				if (c < FIRST_VALUE) out.write(quote((String) value));
+				else out.write(String.valueOf(value));
+			}
+			out.write('\n');
+		}
+		out.flush();
+	}
+
+	// -- TableModel methods --
+
+	@Override
+	public int getRowCount() {
+		return rows.size();
+	}
+
+	@Override
+	public int getColumnCount() {
+		return COLUMNS.length;
+	}
+
+	@Override
+	public String getColumnName(final int column) {
+		return COLUMNS[column];
+	}
+
+	@Override
+	public Class<?> getColumnClass(final int column) {
+		if (column < FIRST_VALUE) return String.class;
+		return column == FIRST_VALUE ? Long.class : Double.class;
+	}
+
+	@Override
+	public Object getValueAt(final int row, final int column) {
+		final Row r = rows.get(row);
+		final RoiMeasurement m = r.measurement;
+		switch (column) {
+			case 0:
+				return r.label;
+			case 1:
+				return r.image;
+			case 2:
+				return r.position;
+			case 3:
+				return m.getArea();
+			case 4:
+				return m.getMean();
+			case 5:
+				return m.getStdDev();
+			case 6:
+				return m.getMin();
+			case 7:
+				return m.getMax();
+			case 8:
+				return m.getCentroidX();
+			case 9:
+				return m.getCentroidY();
+			case 10:
+				return m.getIntegratedDensity();
+			default:
+				throw new IllegalArgumentException("No such column: " + column);
+		}
+	}
+
+	// -- Helper methods --
+
+	/** Quotes a value for CSV if it contains a separator or a quote. */
+	private static String quote(final String value) {
+		if (value == null) return "";
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0 &&
+			value.indexOf('\n') < 0)
+		{
+			return value;
+		}
+		return '"' + value.replace("\"", "\"\"") + '"';
+	}
+
+	// -- Helper classes --
+
+	private static class Row {
+
+		private final String label, image, position;
+		private final RoiMeasurement measurement;
+
+		private Row(final String label, final String image, final String position,
+			final RoiMeasurement measurement)
+		{
+			this.label = label;
+			this.image = image;
+			this.position = position;
+			this.measurement = measurement;
+		}
+	}
+
+}
@@ -0,0 +1,251 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.ui.swing.overlay;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.roi.RegionOfInterest;
+import net.imglib2.type.numeric.RealType;
+
+import org.scijava.thread.ThreadService;
+
+/**
+ * Measures many regions of interest over many planes of an image, in
+ * parallel.
+ * <p>
+ * The regions are split into one batch per worker. Each region is rasterized
+ * once into a {@link RoiMask}, and each worker then sweeps the planes in
+ * order, measuring all regions of its batch on a plane before moving on to
+ * the next one. So every plane is visited once per worker, and only at the
+ * pixels of that worker's regions, however many planes and regions there
+ * are.
+ * </p>
+ */
+public class RoiMeasurer {
+
+	private final ThreadService threadService;
+	private final int workers;
+
+	public RoiMeasurer(final ThreadService threadService) {
+		this(threadService, Runtime.getRuntime().availableProcessors());
+	}
+
+	public RoiMeasurer(final ThreadService threadService, final int workers) {
+		if (workers < 1) {
+			throw new IllegalArgumentException("Invalid worker count: " + workers);
+		}
+		this.threadService = threadService;
+		this.workers = workers;
+	}
+
+	// -- RoiMeasurer methods --
+
+	/**
+	 * Rasterizes the given regions within planes of the given size.
+	 *
+	 * @return one mask per region, in the same order
+	 */
+	public List<RoiMask> rasterize(final List<? extends RegionOfInterest> rois,
+		final long width, final long height)
+	{
+		final RoiMask[] masks = new RoiMask[rois.size()];
+		run(rois.size(), new Batch() {
+
+			@Override
+			public void run(final int from, final int to) {
+				for (int i = from; i < to; i++) {
+					masks[i] = RoiMask.rasterize(rois.get(i), width, height);
+				}
+			}
+		});
+		final List<RoiMask> result = new ArrayList<>(masks.length);
+		for (final RoiMask mask : masks) {
+			result.add(mask);
+		}
+		return result;
+	}
+
+	/**
+	 * Measures the given masks on the given planes of an image.
+	 *
+	 * @param image the image to measure
+	 * @param xAxis the dimension of the image along which X runs
+	 * @param yAxis the dimension of the image along which Y runs
+	 * @param masks the regions to measure
+	 * @param planes positions of the planes to measure; the values along the X
+	 *          and Y dimensions are ignored
+	 * @return the measurements, indexed by plane, then by mask
+	 */
+	public <T extends RealType<?>> RoiMeasurement[][] measure(
+		final RandomAccessibleInterval<T> image, final int xAxis, final int yAxis,
+		final List<RoiMask> masks, final List<long[]> planes)
+	{
+		final RoiMeasurement[][] results =
+			new RoiMeasurement[planes.size()][masks.size()];
+		run(masks.size(), new Batch() {
+
+			@Override
+			public void run(final int from, final int to) {
+				final RandomAccess<T> access = image.randomAccess();
+				for (int p = 0; p < planes.size(); p++) {
+					final long[] plane = planes.get(p);
+					for (int d = 0; d < plane.length; d++) {
+						if (d != xAxis && d != yAxis) access.setPosition(plane[d], d);
+					}
+					for (int m = from; m < to; m++) {
+						results[p][m] = measure(access, xAxis, yAxis, masks.get(m));
+					}
+				}
+			}
+		});
+		return results;
+	}
+
+	/**
+	 * Gets the positions of all planes of the given image, in the order in which
+	 * they are laid out, i.e. with the lowest non-XY dimension varying fastest.
+	 */
+	public static List<long[]> planes(final RandomAccessibleInterval<?> image,
+		final int xAxis, final int yAxis)
+	{
+		final int n = image.numDimensions();
+		final List<long[]> planes = new ArrayList<>();
+		final long[] position = new long[n];
+		image.min(position);
+		while (true) {
+			planes.add(position.clone());
+			int d = 0;
+			for (; d < n; d++) {
+				if (d == xAxis || d == yAxis) continue;
+				if (position[d] < image.max(d)) {
+					position[d]++;
+					break;
+				}
+				position[d] = image.min(d);
+			}
+			if (d == n) return planes;
+		}
+	}
+
+	// -- Helper methods --
+
+	/** Measures one mask on the plane the given access is positioned at. */
+	private static RoiMeasurement measure(
+		final RandomAccess<? extends RealType<?>> access, final int xAxis,
+		final int yAxis, final RoiMask mask)
+	{
+		final RoiMeasurement measurement = new RoiMeasurement();
+		for (int row = 0; row < mask.getHeight(); row++) {
+			final long y = mask.getMinY() + row;
+			access.setPosition(y, yAxis);
+			for (int run = 0; run < mask.getRunCount(row); run++) {
+				final int start = mask.getRunStart(row, run);
+				final int end = mask.getRunEnd(row, run);
+				access.setPosition(start, xAxis);
+				for (int x = start; x < end; x++) {
+					measurement.add(access.get().getRealDouble(), x, y);
+					access.fwd(xAxis);
+				}
+			}
+		}
+		return measurement;
+	}
+
+	/** Runs the given batch over the given number of items, in parallel. */
+	private void run(final int count, final Batch batch) {
+		if (count == 0) return;
+		final int batches = Math.min(workers, count);
+		if (batches == 1) {
+			batch.run(0, count);
+			return;
+		}
+		final List<Future<Void>> futures = new ArrayList<>(batches);
+		for (int b = 0; b < batches; b++) {
+			final int from = (int) ((long) count * b / batches);
+			final int to = (int) ((long) count * (b + 1) / batches);
+			futures.add(threadService.run(new Callable<Void>() {
+
+				@Override
+				public Void call() {
+					batch.run(from, to);
+					return null;
+				}
+			}));
+		}
+		await(futures);
+	}
+
+	/**
+	 * Waits for the given tasks to finish, rethrowing the first failure. If one
+	 * fails or the wait is interrupted, the other tasks are cancelled.
+	 */
+	static void await(final List<? extends Future<?>> futures) {
+		try {
+			for (final Future<?> future : futures) {
+				future.get();
+			}
+		}
+		catch (final InterruptedException exc) {
+			cancel(futures);
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Measurement interrupted", exc);
+		}
+		catch (final ExecutionException exc) {
+			cancel(futures);
+			final Throwable cause = exc.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			if (cause instanceof Error) throw (Error) cause;
+			throw new IllegalStateException(cause);
+		}
+	}
+
+	private static void cancel(final List<? extends Future<?>> futures) {
+		for (final Future<?> future : futures) {
+			future.cancel(true);
+		}
+	}
+
+	// -- Helper classes --
+
+	/** A piece of work over a range of items. */
+	private interface Batch {
+
+		void run(int from, int to);
+	}
+
+}
@@ -0,0 +1,248 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.ui.swing.overlay;
+
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.swing.JFrame;
+import javax.swing.Timer;
+
+import org.jfree.chart.ChartFactory;
+import org.jfree.chart.ChartPanel;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.plot.PlotOrientation;
+import org.jfree.chart.plot.XYPlot;
+import org.jfree.chart.renderer.xy.SamplingXYLineRenderer;
+import org.jfree.data.DomainOrder;
+import org.jfree.data.xy.AbstractXYDataset;
+
+/**
+ * Window plotting the mean intensity of many regions along an axis, as the
+ * results of a {@link RoiProfiler} come in.
+ * <p>
+ * Results are queued by the profiler's workers and added to the chart a few
+ * times per second on the event dispatch thread, with a single chart update
+ * per batch. The means are kept in primitive arrays, one value per region and
+ * plane, with NaN for the planes not profiled yet.
+ * </p>
+ */
+public class RoiProfileFrame extends JFrame implements RoiProfiler.Listener {
+
+	/** Delay between updates of the chart, in milliseconds. */
+	private static final int UPDATE_DELAY = 250;
+
+	/** Largest number of regions for which a legend is shown. */
+	private static final int MAX_LEGEND_ENTRIES = 20;
+
+	private final ProfileDataset data;
+	private final ConcurrentLinkedQueue<Result> results =
+		new ConcurrentLinkedQueue<>();
+	private final Timer timer;
+
+	private volatile boolean closed;
+
+	/**
+	 * Creates a window for the given regions.
+	 *
+	 * @param title title of the window and chart
+	 * @param axisLabel label of the axis along which the regions are profiled
+	 * @param regionLabels names of the regions
+	 * @param positions position along the axis of each profiled plane
+	 */
+	public RoiProfileFrame(final String title, final String axisLabel,
+		final List<String> regionLabels, final long[] positions)
+	{
+		super(title);
+		setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+
+		data = new ProfileDataset(regionLabels, positions);
+		final JFreeChart chart = ChartFactory.createXYLineChart(title, axisLabel,
+			"Mean", data, PlotOrientation.VERTICAL, regionLabels
+				.size() <= MAX_LEGEND_ENTRIES, false, false);
+		final XYPlot plot = chart.getXYPlot();
+		plot.setRenderer(new SamplingXYLineRenderer());
+		final ChartPanel chartPanel = new ChartPanel(chart);
+		chartPanel.setPreferredSize(new Dimension(640, 400));
+		getContentPane().add(chartPanel, BorderLayout.CENTER);
+		pack();
+
+		timer = new Timer(UPDATE_DELAY, new ActionListener() {
+
+			@Override
+			public void actionPerformed(final ActionEvent e) {
+				drain();
+			}
+		});
+		timer.start();
+		addWindowListener(new WindowAdapter() {
+
+			@Override
+			public void windowClosed(final WindowEvent e) {
+				closed = true;
+				timer.stop();
+				results.clear();
+			}
+		});
+	}
+
+	// -- RoiProfileFrame methods --
+
+	/**
+	 * Shows the results received so far and stops updating. Must be called on
+	 * the event dispatch thread once the profiler is done.
+	 */
+	public void finished() {
+		timer.stop();
+		drain();
+	}
+
+	// -- RoiProfiler.Listener methods --
+
+	@Override
+	public boolean planeProfiled(final int plane, final double[] means) {
+		if (closed) return false;
+		results.add(new Result(plane, means));
+		return true;
+	}
+
+	// -- Helper methods --
+
+	/** Adds the queued results to the chart, as a single update. */
+	private void drain() {
+		if (results.isEmpty()) return;
+		Result result;
+		while ((result = results.poll()) != null) {
+			data.set(result.plane, result.means);
+		}
+		data.changed();
+	}
+
+	// -- Helper classes --
+
+	/**
+	 * The means of each region along the axis, as one series per region. Each
+	 * series has an item for every plane, in ascending order.
+	 */
+	private static class ProfileDataset extends AbstractXYDataset {
+
+		private final String[] keys;
+		private final long[] positions;
+
+		/** The means, indexed by region and then plane. */
+		private final double[][] means;
+
+		private ProfileDataset(final List<String> labels, final long[] positions) {
+			keys = new String[labels.size()];
+			for (int i = 0; i < keys.length; i++) {
+				// NB: keys must be unique, while labels need not be
+				keys[i] = (i + 1) + ": " + labels.get(i);
+			}
+			this.positions = positions;
+			means = new double[keys.length][positions.length];
+			for (final double[] row : means) {
+				Arrays.fill(row, Double.NaN);
+			}
+		}
+
+		/** Stores the means of all regions on the given plane. */
+		private void set(final int plane, final double[] planeMeans) {
+			for (int i = 0; i < means.length; i++) {
+				means[i][plane] = planeMeans[i];
+			}
+		}
+
+		/** Notifies the chart of the values set since the last call. */
+		private void changed() {
+			fireDatasetChanged();
+		}
+
+		@Override
+		public int getSeriesCount() {
+			return keys.length;
+		}
+
+		@Override
+		public Comparable<?> getSeriesKey(final int series) {
+			return keys[series];
+		}
+
+		@Override
+		public DomainOrder getDomainOrder() {
+			return DomainOrder.ASCENDING;
+		}
+
+		@Override
+		public int getItemCount(final int series) {
+			return positions.length;
+		}
+
+		@Override
+		public Number getX(final int series, final int item) {
+			return positions[item];
+		}
+
+		@Override
+		public double getXValue(final int series, final int item) {
+			return positions[item];
+		}
+
+		@Override
+		public Number getY(final int series, final int item) {
+			return means[series][item];
+		}
+
+		@Override
+		public double getYValue(final int series, final int item) {
+			return means[series][item];
+		}
+	}
+
+	private static class Result {
+
+		private final int plane;
+		private final double[] means;
+
+		private Result(final int plane, final double[] means) {
+			this.plane = plane;
+			this.means = means;
+		}
+	}
+
+}
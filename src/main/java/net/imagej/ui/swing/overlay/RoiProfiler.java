@@ -0,0 +1,256 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.ui.swing.overlay;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.type.numeric.RealType;
+
+import org.scijava.thread.ThreadService;
+
+/**
+ * Computes the mean intensity of many regions on each of many planes, e.g.
+ * the traces of all cells of a calcium imaging movie.
+ * <p>
+ * The masks of all regions are merged once into a label map, listing for each
+ * covered pixel of the plane, in raster order, the regions covering it. Each
+ * plane is then read in a single pass over the covered pixels, adding every
+ * value to the sums of all its regions at once, rather than reading the plane
+ * once per region. Workers take the planes in order, and report each plane to
+ * a {@link Listener} as soon as it is done, so that results can be shown while
+ * the others are still being read.
+ * </p>
+ */
+public class RoiProfiler {
+
+	/** Receives the results of a {@link RoiProfiler}. */
+	public interface Listener {
+
+		/**
+		 * Receives the mean value of each region on one plane. Called from worker
+		 * threads, possibly out of order.
+		 *
+		 * @param plane the index of the plane in the list being profiled
+		 * @param means the mean of each region, NaN for empty regions
+		 * @return whether to go on profiling
+		 */
+		boolean planeProfiled(int plane, double[] means);
+	}
+
+	/** Number of bits of a label map key holding the region index. */
+	private static final int LABEL_BITS = 24;
+
+	private final ThreadService threadService;
+	private final int workers;
+	private final int regionCount;
+
+	/** Distinct covered pixels, as offsets y * width + x, in raster order. */
+	private final long[] pixels;
+
+	/** Start of each covered pixel's regions in {@link #labels}, plus one. */
+	private final int[] labelStart;
+
+	/** Regions covering each pixel. */
+	private final int[] labels;
+
+	/** Number of pixels of each region. */
+	private final long[] areas;
+
+	private final long width;
+
+	/**
+	 * Creates a profiler for the given regions, of planes of the given width.
+	 */
+	public RoiProfiler(final ThreadService threadService,
+		final List<RoiMask> masks, final long width)
+	{
+		this(threadService, masks, width, Runtime.getRuntime()
+			.availableProcessors());
+	}
+
+	public RoiProfiler(final ThreadService threadService,
+		final List<RoiMask> masks, final long width, final int workers)
+	{
+		if (workers < 1) {
+			throw new IllegalArgumentException("Invalid worker count: " + workers);
+		}
+		if (masks.size() >= 1 << LABEL_BITS) {
+			throw new IllegalArgumentException("Too many regions: " + masks.size());
+		}
+		this.threadService = threadService;
+		this.workers = workers;
+		this.width = width;
+		regionCount = masks.size();
+
+		// gather (pixel, region) pairs, sorted by pixel
+		areas = new long[regionCount];
+		long total = 0;
+		for (int m = 0; m < regionCount; m++) {
+			areas[m] = masks.get(m).getArea();
+			total += areas[m];
+		}
+		if (total > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Regions too large: " + total +
+				" pixels");
+		}
+		final long[] keys = new long[(int) total];
+		int k = 0;
+		for (int m = 0; m < regionCount; m++) {
+			final RoiMask mask = masks.get(m);
+			for (int row = 0; row < mask.getHeight(); row++) {
+				final long y = mask.getMinY() + row;
+				for (int run = 0; run < mask.getRunCount(row); run++) {
+					final int end = mask.getRunEnd(row, run);
+					for (int x = mask.getRunStart(row, run); x < end; x++) {
+						keys[k++] = (y * width + x) << LABEL_BITS | m;
+					}
+				}
+			}
+		}
+		Arrays.sort(keys);
+
+		// split them into distinct pixels and their regions
+		int distinct = 0;
+		for (int i = 0; i < keys.length; i++) {
+			if (i == 0 || keys[i] >>> LABEL_BITS != keys[i - 1] >>> LABEL_BITS) {
+				distinct++;
+			}
+		}
+		pixels = new long[distinct];
+		labelStart = new int[distinct + 1];
+		labels = new int[keys.length];
+		int p = -1;
+		for (int i = 0; i < keys.length; i++) {
+			final long pixel = keys[i] >>> LABEL_BITS;
+			if (p < 0 || pixel != pixels[p]) {
+				pixels[++p] = pixel;
+				labelStart[p] = i;
+			}
+			labels[i] = (int) (keys[i] & ((1 << LABEL_BITS) - 1));
+		}
+		labelStart[distinct] = keys.length;
+	}
+
+	// -- RoiProfiler methods --
+
+	/** Gets the number of regions being profiled. */
+	public int getRegionCount() {
+		return regionCount;
+	}
+
+	/**
+	 * Profiles the regions over the given planes of an image, returning once
+	 * all planes were reported or the listener asked to stop.
+	 *
+	 * @param image the image to profile
+	 * @param xAxis the dimension of the image along which X runs
+	 * @param yAxis the dimension of the image along which Y runs
+	 * @param planes positions of the planes to profile; the values along the X
+	 *          and Y dimensions are ignored
+	 * @param listener receives the results of each plane
+	 */
+	public <T extends RealType<?>> void profile(
+		final RandomAccessibleInterval<T> image, final int xAxis, final int yAxis,
+		final List<long[]> planes, final Listener listener)
+	{
+		final AtomicInteger next = new AtomicInteger();
+		final AtomicBoolean stopped = new AtomicBoolean();
+		final int count = Math.min(workers, planes.size());
+		final List<Future<Void>> futures = new ArrayList<>(count);
+		for (int w = 0; w < count; w++) {
+			futures.add(threadService.run(new Callable<Void>() {
+
+				@Override
+				public Void call() {
+					final RandomAccess<T> access = image.randomAccess();
+					final double[] sums = new double[regionCount];
+					while (!stopped.get()) {
+						final int p = next.getAndIncrement();
+						if (p >= planes.size()) break;
+						final long[] plane = planes.get(p);
+						for (int d = 0; d < plane.length; d++) {
+							if (d == xAxis || d == yAxis) continue;
+							access.setPosition(plane[d], d);
+						}
+						Arrays.fill(sums, 0);
+						accumulate(access, xAxis, yAxis, sums);
+						final double[] means = new double[regionCount];
+						for (int m = 0; m < regionCount; m++) {
+							if (areas[m] == 0) means[m] = Double.NaN;
+							else means[m] = sums[m] / areas[m];
+						}
+						if (!listener.planeProfiled(p, means)) stopped.set(true);
+					}
+					return null;
+				}
+			}));
+		}
+		RoiMeasurer.await(futures);
+	}
+
+	// -- Helper methods --
+
+	/**
+	 * Adds the values of the plane the given access is positioned at to the
+	 * sums of the regions covering them.
+	 */
+	private void accumulate(final RandomAccess<? extends RealType<?>> access,
+		final int xAxis, final int yAxis, final double[] sums)
+	{
+		long lastY = -1, lastX = -2;
+		for (int i = 0; i < pixels.length; i++) {
+			final long y = pixels[i] / width;
+			final long x = pixels[i] - y * width;
+			if (y != lastY) {
+				access.setPosition(y, yAxis);
+				access.setPosition(x, xAxis);
+				lastY = y;
+			}
+			else if (x == lastX + 1) access.fwd(xAxis);
+			else access.setPosition(x, xAxis);
+			lastX = x;
+			final double value = access.get().getRealDouble();
+			for (int k = labelStart[i]; k < labelStart[i + 1]; k++) {
+				sums[labels[k]] += value;
+			}
+		}
+	}
+
+}
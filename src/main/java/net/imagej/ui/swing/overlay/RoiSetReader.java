@@ -0,0 +1,383 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.ui.swing.overlay;
+
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.imagej.axis.Axes;
+import net.imagej.axis.AxisType;
+import net.imagej.overlay.AngleOverlay;
+import net.imagej.overlay.EllipseOverlay;
+import net.imagej.overlay.GeneralPathOverlay;
+import net.imagej.overlay.LineOverlay;
+import net.imagej.overlay.Overlay;
+import net.imagej.overlay.PointOverlay;
+import net.imagej.overlay.PolygonOverlay;
+import net.imagej.overlay.RectangleOverlay;
+import net.imglib2.RealPoint;
+import net.imglib2.roi.GeneralPathRegionOfInterest;
+import net.imglib2.roi.PolygonRegionOfInterest;
+
+import org.scijava.Context;
+import org.scijava.util.ColorRGB;
+
+/**
+ * Reads the overlays of an ImageJ ROI set file, as written by a
+ * {@link RoiSetWriter}.
+ * <p>
+ * The file is memory-mapped, and opening it only reads its trailer and style
+ * table. The names and bounding boxes of the overlays are then read from the
+ * index when asked for, as are their positions from the heads of their
+ * records. The geometry of an overlay is only read when the overlay itself is
+ * created with {@link #createOverlay}. Reading is thread
+ * safe, so that overlays may be created from several threads at once.
+ * </p>
+ */
+public class RoiSetReader implements Closeable {
+
+	private final RandomAccessFile file;
+	private final ByteBuffer buffer;
+	private final int version;
+	private final int count;
+	private final int namesOffset;
+	private final int indexOffset;
+	private final Style[] styles;
+
+	public RoiSetReader(final File file) throws IOException {
+		this.file = new RandomAccessFile(file, "r");
+		try {
+			final long length = this.file.length();
+			if (length > Integer.MAX_VALUE) {
+				throw new IOException("ROI set too large: " + file);
+			}
+			if (length < RoiSetWriter.HEADER_SIZE + RoiSetWriter.TRAILER_SIZE) {
+				throw new IOException("Not a ROI set: " + file);
+			}
+			buffer = this.file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0,
+				length);
+			final int trailer = (int) length - RoiSetWriter.TRAILER_SIZE;
+			if (buffer.getInt(0) != RoiSetWriter.MAGIC ||
+				buffer.getInt(trailer + 28) != RoiSetWriter.MAGIC)
+			{
+				throw new IOException("Not a ROI set: " + file);
+			}
+			version = buffer.getInt(4);
+			if (version < 1 || version > RoiSetWriter.VERSION) {
+				throw new IOException("Unsupported ROI set version: " + version);
+			}
+			final long styleOffset = buffer.getLong(trailer);
+			namesOffset = (int) buffer.getLong(trailer + 8);
+			indexOffset = (int) buffer.getLong(trailer + 16);
+			count = buffer.getInt(trailer + 24);
+			if (styleOffset < RoiSetWriter.HEADER_SIZE || count < 0 ||
+				namesOffset < styleOffset || indexOffset < namesOffset ||
+				indexOffset + (long) count * RoiSetWriter.INDEX_ENTRY_SIZE != trailer)
+			{
+				throw new IOException("Corrupt ROI set: " + file);
+			}
+			styles = new Style[buffer.getInt((int) styleOffset)];
+			for (int s = 0; s < styles.length; s++) {
+				styles[s] = new Style(buffer, (int) styleOffset + 4 + s *
+					RoiSetWriter.STYLE_SIZE);
+			}
+		}
+		catch (final IOException | RuntimeException exc) {
+			this.file.close();
+			throw exc;
+		}
+	}
+
+	// -- RoiSetReader methods --
+
+	/** Gets the number of overlays in the set. */
+	public int getCount() {
+		return count;
+	}
+
+	/** Gets the name of the given overlay, or null if it has none. */
+	public String getName(final int i) {
+		final int entry = entry(i);
+		final int length = buffer.getInt(entry + 44);
+		if (length < 0) return null;
+		final ByteBuffer bytes = buffer.duplicate();
+		bytes.position(namesOffset + buffer.getInt(entry + 40));
+		bytes.limit(bytes.position() + length);
+		return StandardCharsets.UTF_8.decode(bytes).toString();
+	}
+
+	/**
+	 * Gets the bounding box of the given overlay in the XY plane. It is empty,
+	 * with NaN coordinates, for overlays without any points.
+	 */
+	public Rectangle2D getBounds(final int i) {
+		final int entry = entry(i);
+		final double minX = buffer.getDouble(entry + 8);
+		final double minY = buffer.getDouble(entry + 16);
+		final double maxX = buffer.getDouble(entry + 24);
+		final double maxY = buffer.getDouble(entry + 32);
+		return new Rectangle2D.Double(minX, minY, maxX - minX, maxY - minY);
+	}
+
+	/**
+	 * Gets the position of the given overlay along the axes other than X and
+	 * Y, in plane indices. It is empty for overlays in the XY plane only, and
+	 * for sets written before positions were stored.
+	 */
+	public Map<AxisType, Long> getPosition(final int i) {
+		final Map<AxisType, Long> position = new LinkedHashMap<>();
+		if (version < 2) return position;
+		int pos = record(i) + 5;
+		final int axes = buffer.get(pos++) & 0xff;
+		for (int a = 0; a < axes; a++) {
+			final int length = buffer.getShort(pos) & 0xffff;
+			final ByteBuffer label = buffer.duplicate();
+			label.position(pos + 2);
+			label.limit(pos + 2 + length);
+			pos += 2 + length;
+			position.put(Axes.get(StandardCharsets.UTF_8.decode(label).toString()),
+				buffer.getLong(pos));
+			pos += 8;
+		}
+		return position;
+	}
+
+	/**
+	 * Reads the given overlay of the set. Its position along the axes other
+	 * than X and Y, as given by {@link #getPosition}, is up to the caller.
+	 */
+	public Overlay createOverlay(final int i, final Context context) {
+		int pos = record(i);
+		final byte type = buffer.get(pos);
+		final int styleIndex = buffer.getInt(pos + 1);
+		pos += 5;
+		if (version >= 2) {
+			// NB: skip the position
+			final int axes = buffer.get(pos++) & 0xff;
+			for (int a = 0; a < axes; a++) {
+				pos += 2 + (buffer.getShort(pos) & 0xffff) + 8;
+			}
+		}
+		final Overlay overlay;
+		switch (type) {
+			case RoiSetWriter.RECTANGLE: {
+				final RectangleOverlay r = new RectangleOverlay(context);
+				r.setOrigin(buffer.getDouble(pos), 0);
+				r.setOrigin(buffer.getDouble(pos + 8), 1);
+				r.setExtent(buffer.getDouble(pos + 16), 0);
+				r.setExtent(buffer.getDouble(pos + 24), 1);
+				overlay = r;
+				break;
+			}
+			case RoiSetWriter.ELLIPSE: {
+				final EllipseOverlay e = new EllipseOverlay(context);
+				e.setOrigin(buffer.getDouble(pos), 0);
+				e.setOrigin(buffer.getDouble(pos + 8), 1);
+				e.setRadius(buffer.getDouble(pos + 16), 0);
+				e.setRadius(buffer.getDouble(pos + 24), 1);
+				overlay = e;
+				break;
+			}
+			case RoiSetWriter.LINE: {
+				final LineOverlay l = new LineOverlay(context);
+				l.setLineStart(buffer.getDouble(pos), 0);
+				l.setLineStart(buffer.getDouble(pos + 8), 1);
+				l.setLineEnd(buffer.getDouble(pos + 16), 0);
+				l.setLineEnd(buffer.getDouble(pos + 24), 1);
+				overlay = l;
+				break;
+			}
+			case RoiSetWriter.ANGLE: {
+				final AngleOverlay a = new AngleOverlay(context);
+				a.setPoint1(buffer.getDouble(pos), 0);
+				a.setPoint1(buffer.getDouble(pos + 8), 1);
+				a.setCenter(buffer.getDouble(pos + 16), 0);
+				a.setCenter(buffer.getDouble(pos + 24), 1);
+				a.setPoint2(buffer.getDouble(pos + 32), 0);
+				a.setPoint2(buffer.getDouble(pos + 40), 1);
+				overlay = a;
+				break;
+			}
+			case RoiSetWriter.POLYGON: {
+				final PolygonOverlay p = new PolygonOverlay(context);
+				final PolygonRegionOfInterest roi = p.getRegionOfInterest();
+				final double[] coords = readCoords(pos);
+				for (int v = 0; v < coords.length / 2; v++) {
+					roi.addVertex(v, new RealPoint(coords[2 * v], coords[2 * v + 1]));
+				}
+				overlay = p;
+				break;
+			}
+			case RoiSetWriter.POINTS: {
+				final double[] coords = readCoords(pos);
+				final List<double[]> points = new ArrayList<>(coords.length / 2);
+				for (int v = 0; v < coords.length / 2; v++) {
+					points.add(new double[] { coords[2 * v], coords[2 * v + 1] });
+				}
+				final PointOverlay p = new PointOverlay(context);
+				p.setPoints(points);
+				overlay = p;
+				break;
+			}
+			case RoiSetWriter.PATH: {
+				final GeneralPathOverlay g = new GeneralPathOverlay(context);
+				final GeneralPathRegionOfInterest roi = g.getRegionOfInterest();
+				if (version >= 3) {
+					roi.getGeneralPath().setWindingRule(buffer.get(pos++));
+				}
+				final int segmentCount = buffer.getInt(pos);
+				final double[] c = readCoords(pos + 4 + segmentCount);
+				int n = 0;
+				for (int s = 0; s < segmentCount; s++) {
+					final int segmentType = buffer.get(pos + 4 + s);
+					switch (segmentType) {
+						case PathIterator.SEG_MOVETO:
+							roi.moveTo(c[n], c[n + 1]);
+							break;
+						case PathIterator.SEG_LINETO:
+							roi.lineTo(c[n], c[n + 1]);
+							break;
+						case PathIterator.SEG_QUADTO:
+							roi.quadTo(c[n], c[n + 1], c[n + 2], c[n + 3]);
+							break;
+						case PathIterator.SEG_CUBICTO:
+							roi.cubicTo(c[n], c[n + 1], c[n + 2], c[n + 3], c[n + 4],
+								c[n + 5]);
+							break;
+						default:
+							roi.close();
+					}
+					n += 2 * RoiSetWriter.pointCount(segmentType);
+				}
+				overlay = g;
+				break;
+			}
+			default:
+				throw new IllegalStateException("Unknown overlay type: " + type);
+		}
+		if (styleIndex >= 0 && styleIndex < styles.length) {
+			styles[styleIndex].apply(overlay);
+		}
+		overlay.setName(getName(i));
+		return overlay;
+	}
+
+	@Override
+	public void close() throws IOException {
+		file.close();
+	}
+
+	// -- Helper methods --
+
+	private int entry(final int i) {
+		if (i < 0 || i >= count) {
+			throw new IllegalArgumentException("Invalid overlay index: " + i);
+		}
+		return indexOffset + i * RoiSetWriter.INDEX_ENTRY_SIZE;
+	}
+
+	/** Gets the offset of the record of the given overlay. */
+	private int record(final int i) {
+		return (int) buffer.getLong(entry(i));
+	}
+
+	/** Reads a packed array of doubles, preceded by its length. */
+	private double[] readCoords(final int pos) {
+		final double[] coords = new double[buffer.getInt(pos)];
+		final ByteBuffer values = buffer.duplicate();
+		values.position(pos + 4);
+		values.asDoubleBuffer().get(coords);
+		return coords;
+	}
+
+	private static ColorRGB unpackColor(final int color) {
+		if (color == RoiSetWriter.NO_COLOR) return null;
+		return new ColorRGB(color >> 16 & 0xff, color >> 8 & 0xff, color & 0xff);
+	}
+
+	private static <E extends Enum<E>> E valueOf(final E[] values,
+		final int ordinal, final E fallback)
+	{
+		return ordinal >= 0 && ordinal < values.length ? values[ordinal]
+			: fallback;
+	}
+
+	// -- Helper classes --
+
+	/** The drawing attributes of an overlay. */
+	private static class Style {
+
+		private final ColorRGB lineColor;
+		private final double lineWidth;
+		private final Overlay.LineStyle lineStyle;
+		private final ColorRGB fillColor;
+		private final int alpha;
+		private final Overlay.ArrowStyle startArrow;
+		private final Overlay.ArrowStyle endArrow;
+
+		private Style(final ByteBuffer buffer, final int pos) {
+			lineColor = unpackColor(buffer.getInt(pos));
+			lineWidth = buffer.getDouble(pos + 4);
+			lineStyle = valueOf(Overlay.LineStyle.values(), buffer.get(pos + 12),
+				Overlay.LineStyle.SOLID);
+			fillColor = unpackColor(buffer.getInt(pos + 13));
+			alpha = buffer.getInt(pos + 17);
+			startArrow = valueOf(Overlay.ArrowStyle.values(), buffer.get(pos + 21),
+				Overlay.ArrowStyle.NONE);
+			endArrow = valueOf(Overlay.ArrowStyle.values(), buffer.get(pos + 22),
+				Overlay.ArrowStyle.NONE);
+		}
+
+		private void apply(final Overlay overlay) {
+			if (lineColor != null) overlay.setLineColor(lineColor);
+			overlay.setLineWidth(lineWidth);
+			overlay.setLineStyle(lineStyle);
+			// NB: a missing fill must not fall back to the default fill
+			overlay.setFillColor(fillColor);
+			overlay.setAlpha(alpha);
+			overlay.setLineStartArrowStyle(startArrow);
+			overlay.setLineEndArrowStyle(endArrow);
+		}
+	}
+
+}
@@ -0,0 +1,468 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.ui.swing.overlay;
+
+import java.awt.geom.GeneralPath;
+import java.awt.geom.PathIterator;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.imagej.axis.AxisType;
+import net.imagej.overlay.AngleOverlay;
+import net.imagej.overlay.EllipseOverlay;
+import net.imagej.overlay.GeneralPathOverlay;
+import net.imagej.overlay.LineOverlay;
+import net.imagej.overlay.Overlay;
+import net.imagej.overlay.PointOverlay;
+import net.imagej.overlay.PolygonOverlay;
+import net.imagej.overlay.RectangleOverlay;
+import net.imglib2.RealLocalizable;
+import net.imglib2.roi.PolygonRegionOfInterest;
+
+import org.scijava.util.ColorRGB;
+
+/**
+ * Writes overlays to an ImageJ ROI set file, one after the other, as they are
+ * given.
+ * <p>
+ * A ROI set is laid out as follows, with all numbers big-endian:
+ * </p>
+ * <ol>
+ * <li>a header: the {@link #MAGIC} number and the format {@link #VERSION};</li>
+ * <li>one record per overlay: its type, the index of its style, its position
+ * along the axes other than X and Y, and its geometry as a packed array of
+ * doubles, preceded by its length for the types of variable size; paths store
+ * their winding rule and segment types before their coordinates;</li>
+ * <li>the style table, holding each distinct combination of line and fill
+ * attributes once;</li>
+ * <li>the names of the overlays, as UTF-8 bytes laid end to end;</li>
+ * <li>the index, with one entry of {@link #INDEX_ENTRY_SIZE} bytes per overlay:
+ * the offset of its record, its bounding box, and the offset and length of its
+ * name;</li>
+ * <li>a trailer of {@link #TRAILER_SIZE} bytes: the offsets of the style table,
+ * names and index, the number of overlays, and the magic number again.</li>
+ * </ol>
+ * <p>
+ * Records are streamed out as soon as they are written, so only the style
+ * table, names and index are kept in memory until the writer is closed. Since
+ * the trailer sits at a fixed place from the end of the file, a
+ * {@link RoiSetReader} finds everything it needs to list the overlays without
+ * reading their records.
+ * </p>
+ * <p>
+ * Rectangles, ellipses, lines, angles, polygons, points and general paths are
+ * supported, in the XY plane. Other overlays, such as composites, are skipped.
+ * The position of an overlay along each further axis is stored as the axis
+ * label and a plane index.
+ * </p>
+ */
+public class RoiSetWriter implements Closeable {
+
+	/** Marks the start and the end of a ROI set: "IJRS". */
+	public static final int MAGIC = 0x494a5253;
+
+	public static final int VERSION = 3;
+
+	public static final int HEADER_SIZE = 8;
+	public static final int TRAILER_SIZE = 32;
+	public static final int INDEX_ENTRY_SIZE = 48;
+	public static final int STYLE_SIZE = 23;
+
+	/** Record types. */
+	static final byte RECTANGLE = 1, ELLIPSE = 2, LINE = 3, ANGLE = 4,
+			POLYGON = 5, POINTS = 6, PATH = 7;
+
+	/** Color value of a missing color. */
+	static final int NO_COLOR = -1;
+
+	private final DataOutputStream out;
+	private final Map<Style, Integer> styleIndex = new HashMap<>();
+	private final List<Style> styles = new ArrayList<>();
+	private final ByteArrayOutputStream names = new ByteArrayOutputStream();
+	private final ByteArrayOutputStream index = new ByteArrayOutputStream();
+	private final DataOutputStream indexOut = new DataOutputStream(index);
+
+	private int count;
+	private boolean closed;
+
+	public RoiSetWriter(final File file) throws IOException {
+		this(new FileOutputStream(file));
+	}
+
+	public RoiSetWriter(final OutputStream stream) throws IOException {
+		out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+	}
+
+	// -- RoiSetWriter methods --
+
+	/** Gets whether overlays like the given one can be written. */
+	public static boolean supports(final Overlay overlay) {
+		return overlay instanceof RectangleOverlay ||
+			overlay instanceof EllipseOverlay || overlay instanceof LineOverlay ||
+			overlay instanceof AngleOverlay || overlay instanceof PolygonOverlay ||
+			overlay instanceof PointOverlay || overlay instanceof GeneralPathOverlay;
+	}
+
+	/** Gets the number of overlays written so far. */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * Appends the given overlay to the set, at its own position along its axes
+	 * other than X and Y.
+	 *
+	 * @return false if the overlay is of an unsupported type, and was skipped
+	 */
+	public boolean write(final Overlay overlay) throws IOException {
+		return write(overlay, Collections.<AxisType, Long> emptyMap());
+	}
+
+	/**
+	 * Appends the given overlay to the set, at its own position along its axes
+	 * other than X and Y, and at the given position along the others, e.g. the
+	 * position of the view showing the overlay.
+	 *
+	 * @return false if the overlay is of an unsupported type, and was skipped
+	 */
+	public boolean write(final Overlay overlay,
+		final Map<AxisType, Long> position) throws IOException
+	{
+		if (closed) throw new IllegalStateException("Writer is closed");
+		if (!supports(overlay)) return false;
+
+		final byte type;
+		final double[] coords;
+		byte[] segments = null;
+		int windingRule = 0;
+		if (overlay instanceof RectangleOverlay) {
+			final RectangleOverlay r = (RectangleOverlay) overlay;
+			type = RECTANGLE;
+			coords = new double[] { r.getOrigin(0), r.getOrigin(1),
+				r.getExtent(0), r.getExtent(1) };
+		}
+		else if (overlay instanceof EllipseOverlay) {
+			final EllipseOverlay e = (EllipseOverlay) overlay;
+			type = ELLIPSE;
+			coords = new double[] { e.getOrigin(0), e.getOrigin(1),
+				e.getRadius(0), e.getRadius(1) };
+		}
+		else if (overlay instanceof LineOverlay) {
+			final LineOverlay l = (LineOverlay) overlay;
+			type = LINE;
+			coords = new double[] { l.getLineStart(0), l.getLineStart(1),
+				l.getLineEnd(0), l.getLineEnd(1) };
+		}
+		else if (overlay instanceof AngleOverlay) {
+			final AngleOverlay a = (AngleOverlay) overlay;
+			type = ANGLE;
+			coords = new double[] { a.getPoint1(0), a.getPoint1(1),
+				a.getCenter(0), a.getCenter(1), a.getPoint2(0), a.getPoint2(1) };
+		}
+		else if (overlay instanceof PolygonOverlay) {
+			final PolygonRegionOfInterest roi =
+				((PolygonOverlay) overlay).getRegionOfInterest();
+			type = POLYGON;
+			coords = new double[2 * roi.getVertexCount()];
+			for (int i = 0; i < roi.getVertexCount(); i++) {
+				final RealLocalizable vertex = roi.getVertex(i);
+				coords[2 * i] = vertex.getDoublePosition(0);
+				coords[2 * i + 1] = vertex.getDoublePosition(1);
+			}
+		}
+		else if (overlay instanceof PointOverlay) {
+			final List<double[]> points = ((PointOverlay) overlay).getPoints();
+			type = POINTS;
+			coords = new double[2 * points.size()];
+			for (int i = 0; i < points.size(); i++) {
+				coords[2 * i] = points.get(i)[0];
+				coords[2 * i + 1] = points.get(i)[1];
+			}
+		}
+		else {
+			final GeneralPath path =
+				((GeneralPathOverlay) overlay).getRegionOfInterest().getGeneralPath();
+			type = PATH;
+			windingRule = path.getWindingRule();
+			final ByteArrayOutputStream segmentBytes = new ByteArrayOutputStream();
+			double[] pathCoords = new double[64];
+			int n = 0;
+			final double[] segment = new double[6];
+			for (final PathIterator it = path.getPathIterator(null); !it.isDone(); it
+				.next())
+			{
+				final int segmentType = it.currentSegment(segment);
+				final int points = pointCount(segmentType);
+				segmentBytes.write(segmentType);
+				if (n + 2 * points > pathCoords.length) {
+					pathCoords = Arrays.copyOf(pathCoords, 2 * pathCoords.length);
+				}
+				System.arraycopy(segment, 0, pathCoords, n, 2 * points);
+				n += 2 * points;
+			}
+			segments = segmentBytes.toByteArray();
+			coords = Arrays.copyOf(pathCoords, n);
+		}
+
+		// index entry: record offset, bounds, name
+		indexOut.writeLong(out.size());
+		writeBounds(type, coords);
+		final String name = overlay.getName();
+		if (name == null) {
+			indexOut.writeInt(0);
+			indexOut.writeInt(-1);
+		}
+		else {
+			final byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+			indexOut.writeInt(names.size());
+			indexOut.writeInt(bytes.length);
+			names.write(bytes);
+		}
+
+		// record: type, style, position, geometry
+		out.writeByte(type);
+		out.writeInt(style(overlay));
+		writePosition(overlay, position);
+		if (segments != null) {
+			out.writeByte(windingRule);
+			out.writeInt(segments.length);
+			out.write(segments);
+		}
+		if (segments != null || type == POLYGON || type == POINTS) {
+			out.writeInt(coords.length);
+		}
+		for (final double c : coords) {
+			out.writeDouble(c);
+		}
+		count++;
+		return true;
+	}
+
+	/**
+	 * Writes the style table, names, index and trailer, and closes the stream.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) return;
+		closed = true;
+		try {
+			final long styleOffset = out.size();
+			out.writeInt(styles.size());
+			for (final Style style : styles) {
+				style.write(out);
+			}
+			final long namesOffset = out.size();
+			names.writeTo(out);
+			final long indexOffset = out.size();
+			index.writeTo(out);
+			if (out.size() == Integer.MAX_VALUE) {
+				// NB: DataOutputStream#size() saturates at 2 GiB
+				throw new IOException("ROI set too large");
+			}
+			out.writeLong(styleOffset);
+			out.writeLong(namesOffset);
+			out.writeLong(indexOffset);
+			out.writeInt(count);
+			out.writeInt(MAGIC);
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	// -- Helper methods --
+
+	/** Gets the number of points of a path segment of the given type. */
+	static int pointCount(final int segmentType) {
+		switch (segmentType) {
+			case PathIterator.SEG_MOVETO:
+			case PathIterator.SEG_LINETO:
+				return 1;
+			case PathIterator.SEG_QUADTO:
+				return 2;
+			case PathIterator.SEG_CUBICTO:
+				return 3;
+			case PathIterator.SEG_CLOSE:
+				return 0;
+			default:
+				throw new IllegalArgumentException("Invalid segment type: " +
+					segmentType);
+		}
+	}
+
+	/**
+	 * Writes the number of non-XY axes, then the label and position of each.
+	 */
+	private void writePosition(final Overlay overlay,
+		final Map<AxisType, Long> position) throws IOException
+	{
+		final Map<AxisType, Long> all = new LinkedHashMap<>();
+		for (int d = 0; d < overlay.numDimensions(); d++) {
+			final AxisType axisType = overlay.axis(d).type();
+			if (!axisType.isXY()) all.put(axisType, (long) overlay.realMin(d));
+		}
+		for (final Map.Entry<AxisType, Long> entry : position.entrySet()) {
+			final AxisType axisType = entry.getKey();
+			if (!axisType.isXY() && !all.containsKey(axisType)) {
+				all.put(axisType, entry.getValue());
+			}
+		}
+		out.writeByte(all.size());
+		for (final Map.Entry<AxisType, Long> entry : all.entrySet()) {
+			final byte[] label =
+				entry.getKey().getLabel().getBytes(StandardCharsets.UTF_8);
+			out.writeShort(label.length);
+			out.write(label);
+			out.writeLong(entry.getValue());
+		}
+	}
+
+	private void writeBounds(final byte type, final double[] coords)
+		throws IOException
+	{
+		double minX, minY, maxX, maxY;
+		if (type == RECTANGLE || type == ELLIPSE) {
+			final double w = type == RECTANGLE ? coords[2] : 2 * coords[2];
+			final double h = type == RECTANGLE ? coords[3] : 2 * coords[3];
+			minX = type == RECTANGLE ? coords[0] : coords[0] - coords[2];
+			minY = type == RECTANGLE ? coords[1] : coords[1] - coords[3];
+			maxX = minX + w;
+			maxY = minY + h;
+		}
+		else if (coords.length == 0) {
+			minX = minY = maxX = maxY = Double.NaN;
+		}
+		else {
+			// NB: for paths, the bounds of the control points
+			minX = maxX = coords[0];
+			minY = maxY = coords[1];
+			for (int i = 2; i < coords.length; i += 2) {
+				minX = Math.min(minX, coords[i]);
+				maxX = Math.max(maxX, coords[i]);
+				minY = Math.min(minY, coords[i + 1]);
+				maxY = Math.max(maxY, coords[i + 1]);
+			}
+		}
+		indexOut.writeDouble(minX);
+		indexOut.writeDouble(minY);
+		indexOut.writeDouble(maxX);
+		indexOut.writeDouble(maxY);
+	}
+
+	/** Gets the index of the overlay's style, adding it to the table if new. */
+	private int style(final Overlay overlay) {
+		final Style style = new Style(overlay);
+		final Integer i = styleIndex.get(style);
+		if (i != null) return i;
+		styleIndex.put(style, styles.size());
+		styles.add(style);
+		return styles.size() - 1;
+	}
+
+	static int packColor(final ColorRGB color) {
+		if (color == null) return NO_COLOR;
+		return color.getRed() << 16 | color.getGreen() << 8 | color.getBlue();
+	}
+
+	// -- Helper classes --
+
+	/** The drawing attributes of an overlay. */
+	private static class Style {
+
+		private final int lineColor;
+		private final double lineWidth;
+		private final byte lineStyle;
+		private final int fillColor;
+		private final int alpha;
+		private final byte startArrow;
+		private final byte endArrow;
+
+		private Style(final Overlay overlay) {
+			lineColor = packColor(overlay.getLineColor());
+			lineWidth = overlay.getLineWidth();
+			lineStyle = (byte) overlay.getLineStyle().ordinal();
+			fillColor = packColor(overlay.getFillColor());
+			alpha = overlay.getAlpha();
+			startArrow = (byte) overlay.getLineStartArrowStyle().ordinal();
+			endArrow = (byte) overlay.getLineEndArrowStyle().ordinal();
+		}
+
+		private void write(final DataOutputStream stream) throws IOException {
+			stream.writeInt(lineColor);
+			stream.writeDouble(lineWidth);
+			stream.writeByte(lineStyle);
+			stream.writeInt(fillColor);
+			stream.writeInt(alpha);
+			stream.writeByte(startArrow);
+			stream.writeByte(endArrow);
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (!(o instanceof Style)) return false;
+			final Style s = (Style) o;
+			return lineColor == s.lineColor &&
+				Double.compare(lineWidth, s.lineWidth) == 0 &&
+				lineStyle == s.lineStyle && fillColor == s.fillColor &&
+				alpha == s.alpha && startArrow == s.startArrow &&
+				endArrow == s.endArrow;
+		}
+
+		@Override
+		public int hashCode() {
+			int h = lineColor;
+			h = 31 * h + Double.valueOf(lineWidth).hashCode();
+			h = 31 * h + lineStyle;
+			h = 31 * h + fillColor;
+			h = 31 * h + alpha;
+			h = 31 * h + startArrow;
+			return 31 * h + endArrow;
+		}
+	}
+
+}
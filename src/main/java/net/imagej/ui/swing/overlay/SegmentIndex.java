@@ -0,0 +1,303 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.ui.swing.overlay;
+
+import java.awt.Shape;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+
+/**
+ * An index of the flattened edges of a {@link Shape}, for containment and
+ * proximity tests which do not need to visit every edge.
+ * <p>
+ * Edges are bucketed into a uniform grid over the shape's bounds. Containment
+ * casts a horizontal ray through the single row of the grid containing the
+ * point, and proximity only examines the cells near the point, so both take
+ * time proportional to the number of edges near the point rather than to the
+ * total number of edges.
+ * </p>
+ * <p>
+ * The index is immutable; owners rebuild it when their geometry changes.
+ * </p>
+ */
+public class SegmentIndex {
+
+	/** Maximum distance between a curve and its flattened edges. */
+	private static final double FLATNESS = 0.1;
+
+	/** Maximum number of grid rows and columns. */
+	private static final int MAX_CELLS = 256;
+
+	private final boolean evenOdd;
+	private final Rectangle2D.Double bounds;
+
+	/** Edge end points: x0, y0, x1, y1 per edge. */
+	private final double[] edges;
+	private final int edgeCount;
+
+	/**
+	 * Number of edges which are part of the outline. Implicit edges closing
+	 * unclosed subpaths, which only count for containment, follow those.
+	 */
+	private final int outlineCount;
+
+	private final int columns, rows;
+	private final double cellWidth, cellHeight;
+
+	/** Edges overlapping each row, for ray casting. */
+	private final int[] rowStart, rowEdges;
+
+	/** Outline edges overlapping each cell, for proximity tests. */
+	private final int[] cellStart, cellEdges;
+
+	public SegmentIndex(final Shape shape) {
+		final PathIterator iter = shape.getPathIterator(null, FLATNESS);
+		evenOdd = iter.getWindingRule() == PathIterator.WIND_EVEN_ODD;
+
+		// flatten the shape, collecting the implicit closing edges separately
+		double[] outline = new double[64];
+		int outlines = 0;
+		double[] closers = new double[16];
+		int closerCount = 0;
+		final double[] c = new double[6];
+		double startX = 0, startY = 0, lastX = 0, lastY = 0;
+		boolean open = false;
+		while (!iter.isDone()) {
+			switch (iter.currentSegment(c)) {
+				case PathIterator.SEG_MOVETO:
+					if (open && (lastX != startX || lastY != startY)) {
+						closers = add(closers, closerCount++, lastX, lastY, startX, startY);
+					}
+					startX = lastX = c[0];
+					startY = lastY = c[1];
+					open = true;
+					break;
+				case PathIterator.SEG_LINETO:
+					outline = add(outline, outlines++, lastX, lastY, c[0], c[1]);
+					lastX = c[0];
+					lastY = c[1];
+					break;
+				case PathIterator.SEG_CLOSE:
+					if (lastX != startX || lastY != startY) {
+						outline = add(outline, outlines++, lastX, lastY, startX, startY);
+					}
+					lastX = startX;
+					lastY = startY;
+					open = false;
+					break;
+				default:
+					// NB: The flattening iterator only returns lines.
+					break;
+			}
+			iter.next();
+		}
+		if (open && (lastX != startX || lastY != startY)) {
+			closers = add(closers, closerCount++, lastX, lastY, startX, startY);
+		}
+		outlineCount = outlines;
+		edgeCount = outlines + closerCount;
+		edges = Arrays.copyOf(outline, 4 * edgeCount);
+		System.arraycopy(closers, 0, edges, 4 * outlines, 4 * closerCount);
+
+		// size the grid such that each cell holds a few edges on average
+		bounds = edgeBounds();
+		final int cells = Math.max(1, Math.min(MAX_CELLS, (int) Math.ceil(Math
+			.sqrt(edgeCount))));
+		columns = bounds.width > 0 ? cells : 1;
+		rows = bounds.height > 0 ? cells : 1;
+		cellWidth = bounds.width > 0 ? bounds.width / columns : 1;
+		cellHeight = bounds.height > 0 ? bounds.height / rows : 1;
+
+		// bucket the edges: count, then fill
+		rowStart = new int[rows + 1];
+		cellStart = new int[rows * columns + 1];
+		for (int e = 0; e < edgeCount; e++) {
+			final int r0 = row(minY(e)), r1 = row(maxY(e));
+			for (int r = r0; r <= r1; r++) rowStart[r + 1]++;
+			if (e >= outlineCount) continue;
+			final int c0 = column(minX(e)), c1 = column(maxX(e));
+			for (int r = r0; r <= r1; r++) {
+				for (int col = c0; col <= c1; col++) cellStart[r * columns + col + 1]++;
+			}
+		}
+		for (int r = 0; r < rows; r++) rowStart[r + 1] += rowStart[r];
+		for (int i = 0; i < rows * columns; i++) cellStart[i + 1] += cellStart[i];
+		rowEdges = new int[rowStart[rows]];
+		cellEdges = new int[cellStart[rows * columns]];
+		final int[] rowFill = Arrays.copyOf(rowStart, rows);
+		final int[] cellFill = Arrays.copyOf(cellStart, rows * columns);
+		for (int e = 0; e < edgeCount; e++) {
+			final int r0 = row(minY(e)), r1 = row(maxY(e));
+			for (int r = r0; r <= r1; r++) rowEdges[rowFill[r]++] = e;
+			if (e >= outlineCount) continue;
+			final int c0 = column(minX(e)), c1 = column(maxX(e));
+			for (int r = r0; r <= r1; r++) {
+				for (int col = c0; col <= c1; col++) {
+					cellEdges[cellFill[r * columns + col]++] = e;
+				}
+			}
+		}
+	}
+
+	// -- SegmentIndex methods --
+
+	/** Gets the bounds of the indexed edges. */
+	public Rectangle2D.Double getBounds() {
+		return (Rectangle2D.Double) bounds.clone();
+	}
+
+	/** Gets the number of flattened edges of the outline. */
+	public int getEdgeCount() {
+		return outlineCount;
+	}
+
+	/**
+	 * Tests whether the given point is inside the shape, according to its
+	 * winding rule. Unclosed subpaths are implicitly closed, as by
+	 * {@link java.awt.geom.Path2D#contains(double, double)}.
+	 */
+	public boolean contains(final double x, final double y) {
+		if (edgeCount == 0 || x < bounds.x || y < bounds.y ||
+			x >= bounds.x + bounds.width || y >= bounds.y + bounds.height)
+		{
+			return false;
+		}
+		final int r = row(y);
+		int winding = 0;
+		for (int i = rowStart[r]; i < rowStart[r + 1]; i++) {
+			final int o = 4 * rowEdges[i];
+			final double x0 = edges[o], y0 = edges[o + 1];
+			final double x1 = edges[o + 2], y1 = edges[o + 3];
+			if (y0 == y1) continue;
+			final boolean up = y0 < y1;
+			if (up ? y < y0 || y >= y1 : y < y1 || y >= y0) continue;
+			final double xi = x0 + (y - y0) * (x1 - x0) / (y1 - y0);
+			if (xi > x) winding += up ? 1 : -1;
+		}
+		return evenOdd ? (winding & 1) != 0 : winding != 0;
+	}
+
+	/**
+	 * Tests whether the given point lies within the given distance of the
+	 * outline of the shape.
+	 */
+	public boolean isNear(final double x, final double y,
+		final double tolerance)
+	{
+		if (outlineCount == 0 || x < bounds.x - tolerance ||
+			y < bounds.y - tolerance || x > bounds.x + bounds.width + tolerance ||
+			y > bounds.y + bounds.height + tolerance)
+		{
+			return false;
+		}
+		final double t2 = tolerance * tolerance;
+		final int r0 = row(y - tolerance), r1 = row(y + tolerance);
+		final int c0 = column(x - tolerance), c1 = column(x + tolerance);
+		for (int r = r0; r <= r1; r++) {
+			for (int col = c0; col <= c1; col++) {
+				final int cell = r * columns + col;
+				for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+					if (distanceSq(cellEdges[i], x, y) <= t2) return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	// -- Helper methods --
+
+	private int row(final double y) {
+		final int r = (int) ((y - bounds.y) / cellHeight);
+		return r < 0 ? 0 : r >= rows ? rows - 1 : r;
+	}
+
+	private int column(final double x) {
+		final int col = (int) ((x - bounds.x) / cellWidth);
+		return col < 0 ? 0 : col >= columns ? columns - 1 : col;
+	}
+
+	private double minX(final int e) {
+		return Math.min(edges[4 * e], edges[4 * e + 2]);
+	}
+
+	private double maxX(final int e) {
+		return Math.max(edges[4 * e], edges[4 * e + 2]);
+	}
+
+	private double minY(final int e) {
+		return Math.min(edges[4 * e + 1], edges[4 * e + 3]);
+	}
+
+	private double maxY(final int e) {
+		return Math.max(edges[4 * e + 1], edges[4 * e + 3]);
+	}
+
+	private Rectangle2D.Double edgeBounds() {
+		if (edgeCount == 0) return new Rectangle2D.Double();
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		for (int e = 0; e < edgeCount; e++) {
+			minX = Math.min(minX, minX(e));
+			minY = Math.min(minY, minY(e));
+			maxX = Math.max(maxX, maxX(e));
+			maxY = Math.max(maxY, maxY(e));
+		}
+		return new Rectangle2D.Double(minX, minY, maxX - minX, maxY - minY);
+	}
+
+	/** Gets the squared distance from a point to an edge. */
+	private double distanceSq(final int e, final double x, final double y) {
+		final int o = 4 * e;
+		final double x0 = edges[o], y0 = edges[o + 1];
+		final double dx = edges[o + 2] - x0, dy = edges[o + 3] - y0;
+		final double length2 = dx * dx + dy * dy;
+		double t = length2 == 0 ? 0 : ((x - x0) * dx + (y - y0) * dy) / length2;
+		t = t < 0 ? 0 : t > 1 ? 1 : t;
+		final double px = x0 + t * dx - x, py = y0 + t * dy - y;
+		return px * px + py * py;
+	}
+
+	/** Appends an edge, growing the array as needed. */
+	private static double[] add(final double[] array, final int index,
+		final double x0, final double y0, final double x1, final double y1)
+	{
+		final double[] a = 4 * index + 4 > array.length ? Arrays.copyOf(array,
+			2 * array.length) : array;
+		a[4 * index] = x0;
+		a[4 * index + 1] = y0;
+		a[4 * index + 2] = x1;
+		a[4 * index + 3] = y1;
+		return a;
+	}
+
+}
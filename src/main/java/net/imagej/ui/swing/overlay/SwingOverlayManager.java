@@ -46,30 +46,46 @@ import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.awt.geom.Rectangle2D;
+import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Stack;
 
-import javax.swing.AbstractListModel;
 import javax.swing.BorderFactory;
 import javax.swing.BoxLayout;
+import javax.swing.DefaultListCellRenderer;
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
+import javax.swing.JFileChooser;
 import javax.swing.JFrame;
+import javax.swing.JLabel;
 import javax.swing.JList;
 import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JPopupMenu;
 import javax.swing.JScrollPane;
+import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
+import javax.swing.filechooser.FileNameExtensionFilter;
 
 import net.imagej.ChannelCollection;
+import net.imagej.Dataset;
+import net.imagej.axis.Axes;
+import net.imagej.axis.AxisType;
 import net.imagej.display.DataView;
 import net.imagej.display.ImageDisplay;
 import net.imagej.display.ImageDisplayService;
@@ -77,6 +93,7 @@ import net.imagej.display.OverlayInfo;
 import net.imagej.display.OverlayInfoList;
 import net.imagej.display.OverlayService;
 import net.imagej.display.OverlayView;
+import net.imagej.display.event.AxisPositionEvent;
 import net.imagej.display.event.DataViewSelectionEvent;
 import net.imagej.event.OverlayCreatedEvent;
 import net.imagej.event.OverlayDeletedEvent;
@@ -85,14 +102,25 @@ import net.imagej.event.OverlayUpdatedEvent;
 import net.imagej.options.OptionsChannels;
 import net.imagej.overlay.CompositeOverlay;
 import net.imagej.overlay.Overlay;
+import net.imagej.overlay.PolygonOverlay;
+import net.imagej.overlay.ThresholdOverlay;
+import net.imagej.threshold.ThresholdService;
+import net.imagej.ui.swing.viewer.image.SwingImageDisplayViewer;
+import net.imglib2.RealPoint;
+import net.imglib2.roi.PolygonRegionOfInterest;
+import net.imglib2.roi.RegionOfInterest;
 
 import org.scijava.Context;
 import org.scijava.command.CommandService;
+import org.scijava.display.event.DisplayDeletedEvent;
 import org.scijava.event.EventHandler;
 import org.scijava.event.EventService;
 import org.scijava.options.OptionsService;
 import org.scijava.platform.PlatformService;
 import org.scijava.plugin.Parameter;
+import org.scijava.thread.ThreadService;
+import org.scijava.ui.UIService;
+import org.scijava.ui.viewer.DisplayViewer;
 import org.scijava.util.Prefs;
 
 // TODO
@@ -147,6 +175,21 @@ public class SwingOverlayManager
 	//private static final String ACTION_UPDATE = "update";
 	private static final String ACTION_XOR = "xor";
 	
+	/** File extension of ROI sets. */
+	private static final String ROI_SET_EXTENSION = "roiset";
+
+	/** Vertical space a cell needs around its text (the renderer's border). */
+	private static final int CELL_INSETS = 2;
+
+	/** Width of the list cells; longer names are truncated. */
+	private static final int CELL_WIDTH = 230;
+
+	/** Width and height of the overlay thumbnails, in pixels. */
+	private static final int THUMBNAIL_SIZE = 24;
+
+	/** Number of thumbnails kept once rendered. */
+	private static final int THUMBNAIL_CAPACITY = 2000;
+
 	private static final String LAST_X = "lastXLocation";
 	private static final String LAST_Y = "lastYLocation";
 
@@ -154,6 +197,9 @@ public class SwingOverlayManager
 	
 	private final Context context;
 	private final JList<OverlayInfo> jlist;
+	private final OverlayListModel listModel;
+	private final OverlayInfoIndex infoIndex;
+	private final OverlayThumbnails thumbnails;
 	private final JCheckBox showAllCheckBox;
 	private final JCheckBox editModeCheckBox;
 
@@ -175,7 +221,32 @@ public class SwingOverlayManager
 	@Parameter
 	private OptionsService optionsService;
 
+	@Parameter
+	private UIService uiService;
+
+	@Parameter
+	private ThreadService threadService;
+
+	@Parameter
+	private ThresholdService thresholdService;
+
 	private boolean selecting = false; // flag to prevent event feedback loops
+
+	/**
+	 * Overlays deleted during a bulk deletion, or null if none is running. This
+	 * relies on {@link OverlayDeletedEvent}s being published synchronously, on
+	 * the thread removing the overlays. Should one arrive after the bulk
+	 * deletion is over, it simply takes the per-overlay path.
+	 */
+	private Set<Overlay> bulkDeleted = null;
+
+	/** ROI sets with overlays yet to be created, by display. */
+	private final Map<ImageDisplay, PendingRoiSet> pendingSets =
+		new IdentityHashMap<>();
+
+	/** The window of the List command, if it was opened. */
+	private OverlayPropertyFrame propertyFrame;
+
 	private JPopupMenu popupMenu = null;
 	private boolean shiftDown = false;
 	private boolean altDown = false;
@@ -189,10 +260,25 @@ public class SwingOverlayManager
 		this.context = context;
 		context.inject(this);
 
-		jlist = new JList<>(new OverlayListModel(overlayService.getOverlayInfo()));
-		//jlist.setCellRenderer(new OverlayRenderer());
+		infoIndex = new OverlayInfoIndex(overlayService.getOverlayInfo());
+		listModel = new OverlayListModel(overlayService.getOverlayInfo());
+		jlist = new JList<>(listModel);
+		thumbnails = new OverlayThumbnails(threadService, imageDisplayService,
+			jlist, THUMBNAIL_SIZE, THUMBNAIL_CAPACITY);
+		jlist.setCellRenderer(new OverlayRenderer());
+		// with fixed cell dimensions, the list never measures all of its rows
+		jlist.setFixedCellHeight(Math.max(jlist.getFontMetrics(jlist.getFont())
+			.getHeight(), THUMBNAIL_SIZE) + CELL_INSETS);
+		jlist.setFixedCellWidth(CELL_WIDTH);
 
 		final JScrollPane listScroller = new JScrollPane(jlist);
+		listScroller.getViewport().addChangeListener(new ChangeListener() {
+
+			@Override
+			public void stateChanged(final ChangeEvent e) {
+				thumbnails.requestVisible();
+			}
+		});
 		listScroller.setPreferredSize(new Dimension(250, 80));
 		listScroller.setAlignmentX(LEFT_ALIGNMENT);
 		final JPanel listPanel = new JPanel();
@@ -311,102 +397,92 @@ public class SwingOverlayManager
 	// -- private helpers for overlay list maintenance --
 
 	
-	private class OverlayListModel extends AbstractListModel<OverlayInfo> {
-
-		//private static final long serialVersionUID = 7941252533859436640L;
-
-		private OverlayInfoList overlayInfoList;
-		
-		public OverlayListModel(OverlayInfoList list) {
-			overlayInfoList = list;
-		}
-		
-		@Override
-		public OverlayInfo getElementAt(final int index) {
-			return overlayInfoList.getOverlayInfo(index);
-		}
-
-		@Override
-		public int getSize() {
-			return overlayInfoList.getOverlayInfoCount();
-		}
-
-	}
-
 	/*
 	*/
 	private void populateOverlayList() {
 		// Populate the list with all overlays
 		for (final Overlay overlay : overlayService.getOverlays()) {
-			boolean found = false;
-			int totOverlays = overlayService.getOverlayInfo().getOverlayInfoCount();
-			for (int i = 0; i < totOverlays; i++) {
-				OverlayInfo info = overlayService.getOverlayInfo().getOverlayInfo(i);
-				if (overlay == info.getOverlay()) {
-					found = true;
-					break;
-				}
-			}
-			if (!found) {
+			if (!infoIndex.contains(overlay)) {
 				OverlayInfo info = new OverlayInfo(overlay);
 				overlayService.getOverlayInfo().addOverlayInfo(info);
 			}
 		}
-		jlist.updateUI();
+		listModel.restructured();
 	}
 	
-	/*
+	/**
+	 * Shows each overlay's name next to its thumbnail, or a placeholder until
+	 * the thumbnail is rendered.
+	 */
 	private class OverlayRenderer extends DefaultListCellRenderer {
 
 		//private static final long serialVersionUID = 2468086636364454253L;
-		private final Hashtable<Overlay, ImageIcon> iconTable =
-			new Hashtable<Overlay, ImageIcon>();
 
 		@Override
-		public Component getListCellRendererComponent(final JList list,
+		public Component getListCellRendererComponent(final JList<?> list,
 			final Object value, final int index, final boolean isSelected,
 			final boolean hasFocus)
 		{
 			final JLabel label =
 				(JLabel) super.getListCellRendererComponent(list, value, index,
 					isSelected, hasFocus);
-			if (value instanceof Overlay) {
-				final Overlay overlay = (Overlay) value;
-				// TODO: create overlay thumbnail from overlay
-				final ImageIcon icon = iconTable.get(overlay);
-//				if (icon == null) {
-//					icon = new ImageIcon(...);
-//					iconTable.put(overlay, ImageIcon);
-//				}
-				label.setIcon(icon);
+			if (value instanceof OverlayInfo) {
+				label.setIcon(thumbnails.getIcon(((OverlayInfo) value).getOverlay()));
 			}
 			else {
-				// Clear old icon; needed in 1st release of JDK 1.2
+				// rows removed since the last flush
 				label.setIcon(null);
 			}
 			return label;
 		}
 
 	}
-	*/
 
 	// -- event handlers --
 
 	@EventHandler
 	protected void onEvent(final OverlayCreatedEvent event) {
 		//System.out.println("\tCREATED: " + event.toString());
-		overlayService.getOverlayInfo().addOverlay(event.getObject());
-		jlist.updateUI();
+		final Overlay overlay = event.getObject();
+		if (infoIndex.contains(overlay)) return;
+		overlayService.getOverlayInfo().addOverlayInfo(new OverlayInfo(overlay));
+		listModel.added();
+	}
+
+	@EventHandler
+	protected void onEvent(final AxisPositionEvent event) {
+		final ImageDisplay display = event.getDisplay();
+		synchronized (pendingSets) {
+			if (!pendingSets.containsKey(display)) return;
+		}
+		queueOpenPlane(display);
+	}
+
+	@EventHandler
+	protected void onEvent(final DisplayDeletedEvent event) {
+		final PendingRoiSet pending;
+		synchronized (pendingSets) {
+			pending = pendingSets.remove(event.getObject());
+		}
+		if (pending != null) pending.close();
 	}
 
 	@EventHandler
 	protected void onEvent(final OverlayDeletedEvent event) {
 		//System.out.println("\tDELETED: " + event.toString());
 		Overlay overlay = event.getObject();
+		if (bulkDeleted != null) {
+			// the rows are dropped all at once when the deletion is over
+			bulkDeleted.add(overlay);
+			return;
+		}
+		final int index = infoIndex.indexOf(overlay);
+		if (index < 0) return;
 		overlayService.getOverlayInfo().deleteOverlay(overlay);
-		int[] newSelectedIndices = overlayService.getOverlayInfo().selectedIndices();
-		jlist.setSelectedIndices(newSelectedIndices);
-		jlist.updateUI();
+		infoIndex.removed(overlay);
+		listModel.removed(index);
+		int[] newSelectedIndices = infoIndex.selectedIndices();
+		setSelectedIndices(newSelectedIndices);
 	}
 	
 	/*
@@ -425,9 +501,12 @@ public class SwingOverlayManager
 		selecting = true;
 		// Select or deselect the corresponding overlay in the list
 		final Overlay overlay = (Overlay) event.getView().getData();
-		final int overlayIndex = overlayService.getOverlayInfo().findIndex(overlay);
-		final OverlayInfo overlayInfo = overlayService.getOverlayInfo().getOverlayInfo(overlayIndex);
-		overlayInfo.setSelected(event.isSelected());
+		final int overlayIndex = infoIndex.indexOf(overlay);
+		if (overlayIndex < 0) {
+			selecting = false;
+			return;
+		}
+		infoIndex.setSelected(overlayIndex, event.isSelected());
 		/* old way
 		if (event.isSelected()) {
 			final int[] current_sel = jlist.getSelectedIndices();
@@ -446,8 +525,8 @@ public class SwingOverlayManager
 			}
 		}
 		*/
-		int[] selections = overlayService.getOverlayInfo().selectedIndices();
-		jlist.setSelectedIndices(selections);
+		// only touch the affected row, rather than resetting the whole selection
+		setRowSelected(overlayIndex, event.isSelected());
 		selecting = false;
 	}
 
@@ -467,18 +546,40 @@ public class SwingOverlayManager
 	}
 	*/
 	
-	@SuppressWarnings("unused")
 	@EventHandler
 	protected void onEvent(OverlayRestructuredEvent event) {
 		//System.out.println("restructured");
-		jlist.updateUI();
+		changed(event.getObject());
 	}
 
-	@SuppressWarnings("unused")
 	@EventHandler
 	protected void onEvent(OverlayUpdatedEvent event) {
 		//System.out.println("updated");
-		jlist.updateUI();
+		changed(event.getObject());
+	}
+
+	/** Refreshes the row and thumbnail of the given overlay, if listed. */
+	private void changed(final Overlay overlay) {
+		thumbnails.invalidate(overlay);
+		final int index = infoIndex.indexOf(overlay);
+		if (index >= 0) listModel.changed(index);
+	}
+
+	/**
+	 * Selects the given rows, after telling the list about any rows added since
+	 * the last cycle of the event dispatch thread.
+	 */
+	private void setSelectedIndices(final int[] indices) {
+		if (SwingUtilities.isEventDispatchThread()) listModel.flush();
+		jlist.setSelectedIndices(indices);
+	}
+
+	/** Selects or deselects a single row of the list. */
+	private void setRowSelected(final int row, final boolean select) {
+		if (SwingUtilities.isEventDispatchThread()) listModel.flush();
+		if (row >= listModel.getSize()) return;
+		if (select) jlist.addSelectionInterval(row, row);
+		else jlist.removeSelectionInterval(row, row);
 	}
 
 	// -- private helpers that implement overlay interaction commands --
@@ -495,12 +596,125 @@ public class SwingOverlayManager
 				additions |= infoList.addOverlay((Overlay)view.getData());
 		}
 		if (additions)
-			jlist.updateUI();
+			listModel.added();
 	}
 	*/
 	
+	/**
+	 * Outlines the particles of the active image's current plane: the pixels
+	 * within its threshold, or the positive pixels if it has none. The
+	 * particles are found in the background, and attached to the display all
+	 * at once.
+	 */
 	private void addParticles() {
-		JOptionPane.showMessageDialog(this, "unimplemented");
+		final ImageDisplay display = imageDisplayService.getActiveImageDisplay();
+		if (display == null) return;
+		final Dataset dataset = imageDisplayService.getActiveDataset(display);
+		if (dataset == null) return;
+		final int xAxis = dataset.dimensionIndex(Axes.X);
+		final int yAxis = dataset.dimensionIndex(Axes.Y);
+		if (xAxis < 0 || yAxis < 0) return;
+
+		final double min, max;
+		if (thresholdService.hasThreshold(display)) {
+			final ThresholdOverlay threshold = thresholdService.getThreshold(display);
+			min = threshold.getRangeMin();
+			max = threshold.getRangeMax();
+		}
+		else {
+			// NB: treat the plane as a binary mask
+			min = Double.MIN_VALUE;
+			max = Double.POSITIVE_INFINITY;
+		}
+
+		final JTextField sizeField = new JTextField("0-Infinity", 10);
+		final JTextField circularityField = new JTextField("0.00-1.00", 10);
+		final JPanel panel = new JPanel(new GridLayout(2, 2, 5, 5));
+		panel.add(new JLabel("Size (pixels):"));
+		panel.add(sizeField);
+		panel.add(new JLabel("Circularity:"));
+		panel.add(circularityField);
+		if (JOptionPane.showConfirmDialog(this, panel, "Add Particles",
+			JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION) return;
+		final double[] size = parseRange(sizeField.getText());
+		final double[] circularity = parseRange(circularityField.getText());
+		if (size == null || circularity == null) {
+			JOptionPane.showMessageDialog(this,
+				"Ranges must be given as min-max, e.g. 50-Infinity");
+			return;
+		}
+		final ParticleExtractor extractor = new ParticleExtractor(threadService);
+		try {
+			extractor.setSizeRange(size[0], size[1]);
+			extractor.setCircularityRange(circularity[0], circularity[1]);
+		}
+		catch (final IllegalArgumentException exc) {
+			JOptionPane.showMessageDialog(this, exc.getMessage());
+			return;
+		}
+
+		final long[] plane = new long[dataset.numDimensions()];
+		for (int d = 0; d < plane.length; d++) {
+			if (d == xAxis || d == yAxis) continue;
+			plane[d] = display.getLongPosition(dataset.axis(d).type());
+		}
+		threadService.run(new Runnable() {
+
+			@Override
+			public void run() {
+				final List<ParticleExtractor.Particle> particles;
+				try {
+					particles = extractor.extract(dataset.getImgPlus(), xAxis, yAxis,
+						plane, min, max);
+				}
+				catch (final RuntimeException exc) {
+					showError("Could not analyze particles: " + exc.getMessage());
+					return;
+				}
+				final List<Overlay> overlays = new ArrayList<>(particles.size());
+				for (final ParticleExtractor.Particle particle : particles) {
+					final PolygonOverlay overlay = new PolygonOverlay(context);
+					final PolygonRegionOfInterest roi = overlay.getRegionOfInterest();
+					for (int v = 0; v < particle.getVertexCount(); v++) {
+						roi.addVertex(v, new RealPoint(particle.getX(v), particle.getY(v)));
+					}
+					overlays.add(overlay);
+				}
+				if (overlays.isEmpty()) showError("No particles were found");
+				else attach(display, overlays);
+			}
+		});
+	}
+
+	/** Parses a range such as "50-Infinity", returning null if invalid. */
+	private static double[] parseRange(final String text) {
+		final String[] bounds = text.trim().split("\\s*-\\s*");
+		try {
+			final double min = Double.parseDouble(bounds[0]);
+			final double max =
+				bounds.length > 1 ? Double.parseDouble(bounds[1]) : min;
+			if (bounds.length > 2 || Double.isNaN(min) || Double.isNaN(max)) {
+				return null;
+			}
+			return new double[] { min, max };
+		}
+		catch (final NumberFormatException exc) {
+			return null;
+		}
+	}
+
+	/**
+	 * Attaches newly created overlays to a display, as one change. May be
+	 * called from any thread.
+	 */
+	private void attach(final ImageDisplay display,
+		final List<Overlay> overlays)
+	{
+		final DisplayViewer<?> viewer = uiService.getDisplayViewer(display);
+		if (viewer instanceof SwingImageDisplayViewer) {
+			((SwingImageDisplayViewer) viewer).getCanvas().addOverlays(overlays);
+		}
+		else overlayService.addOverlays(display, overlays);
 	}
 	
 	private void and() {
@@ -509,8 +723,8 @@ public class SwingOverlayManager
 	
 	private void delete() {
 		if (overlayService.getOverlayInfo().getOverlayInfoCount() == 0) return;
-		List<Overlay> overlaysToDelete = new LinkedList<>();
-		final int[] selectedIndices = overlayService.getOverlayInfo().selectedIndices();
+		List<Overlay> overlaysToDelete = new ArrayList<>();
+		final int[] selectedIndices = infoIndex.selectedIndices();
 		if (selectedIndices.length == 0) {
 			final int result =
 				JOptionPane.showConfirmDialog(
@@ -526,16 +740,57 @@ public class SwingOverlayManager
 				overlaysToDelete.add(overlayService.getOverlayInfo().getOverlayInfo(index).getOverlay());
 			}
 		}
-		for (Overlay overlay : overlaysToDelete) {
-			// NB - removeOverlay() can indirectly change our infoList contents.
-			// Thus we first collect overlays from the infoList and then delete
-			// them all afterwards to avoid interactions.
-			overlayService.removeOverlay(overlay);
+		// NB - removing overlays can indirectly change our infoList contents.
+		// Thus we first collect overlays from the infoList and then delete
+		// them all afterwards to avoid interactions.
+		removeOverlays(overlaysToDelete);
+	}
+
+	/**
+	 * Removes the given overlays from all displays, as one change per display,
+	 * and then drops the rows of the deleted overlays from the list.
+	 */
+	private void removeOverlays(final List<Overlay> overlays) {
+		final Set<Overlay> deleted =
+			Collections.newSetFromMap(new IdentityHashMap<Overlay, Boolean>());
+		bulkDeleted = deleted;
+		try {
+			for (final ImageDisplay display : imageDisplayService.getImageDisplays()) {
+				final DisplayViewer<?> viewer = uiService.getDisplayViewer(display);
+				if (viewer instanceof SwingImageDisplayViewer) {
+					((SwingImageDisplayViewer) viewer).getCanvas().removeOverlays(
+						overlays);
+				}
+				else {
+					for (final Overlay overlay : overlays) {
+						overlayService.removeOverlay(display, overlay);
+					}
+				}
+			}
+		}
+		finally {
+			bulkDeleted = null;
 		}
+		if (deleted.isEmpty()) return;
+		// NB: Rebuild the list in one pass, rather than scanning it per overlay.
+		final OverlayInfoList infoList = overlayService.getOverlayInfo();
+		final int count = infoList.getOverlayInfoCount();
+		final List<OverlayInfo> kept = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			final OverlayInfo info = infoList.getOverlayInfo(i);
+			if (!deleted.contains(info.getOverlay())) kept.add(info);
+		}
+		infoList.deleteAll();
+		for (final OverlayInfo info : kept) {
+			infoList.addOverlayInfo(info);
+		}
+		infoIndex.invalidate();
+		listModel.restructured();
+		setSelectedIndices(infoIndex.selectedIndices());
 	}
 	
 	private void deselect() {
-		overlayService.getOverlayInfo().deselectAll();
+		infoIndex.deselectAll();
 		jlist.clearSelection();
 	}
 	
@@ -545,7 +800,7 @@ public class SwingOverlayManager
 	 * of division (it is not a deep division).
 	 */
 	private void divide() {
-		List<Overlay> overlays = overlayService.getOverlayInfo().selectedOverlays();
+		List<Overlay> overlays = infoIndex.selectedOverlays();
 		int i = 0;
 		while (i < overlays.size()) {
 			Overlay o = overlays.get(i);
@@ -566,7 +821,7 @@ public class SwingOverlayManager
 	
 	private void draw() {
 		ChannelCollection channels = getChannels();
-		List<Overlay> selected = overlayService.getOverlayInfo().selectedOverlays();
+		List<Overlay> selected = infoIndex.selectedOverlays();
 		for (Overlay o : selected) {
 			ImageDisplay disp = overlayService.getFirstDisplay(o);
 			overlayService.drawOverlay(o, disp, channels);
@@ -575,7 +830,7 @@ public class SwingOverlayManager
 
 	private void fill() {
 		ChannelCollection channels = getChannels();
-		List<Overlay> selected = overlayService.getOverlayInfo().selectedOverlays();
+		List<Overlay> selected = infoIndex.selectedOverlays();
 		for (Overlay o : selected) {
 			ImageDisplay disp = overlayService.getFirstDisplay(o);
 			overlayService.fillOverlay(o, disp, channels);
@@ -602,26 +857,437 @@ public class SwingOverlayManager
 		}
 	}
 	
+	/**
+	 * Shows a table of the properties of all overlays, which follows the list
+	 * until it is closed.
+	 */
 	private void getList() {
-		JOptionPane.showMessageDialog(this, "unimplemented");
+		if (propertyFrame != null && propertyFrame.isDisplayable()) {
+			propertyFrame.toFront();
+			return;
+		}
+		listModel.flush();
+		propertyFrame = new OverlayPropertyFrame("Overlay List",
+			new OverlayPropertyTable(threadService, listModel));
+		propertyFrame.setVisible(true);
 	}
 	
 	private void measure() {
-		JOptionPane.showMessageDialog(this, "unimplemented");
+		measure(false);
 	}
 	
 	private void multiMeasure() {
-		JOptionPane.showMessageDialog(this, "unimplemented");
+		measure(true);
+	}
+
+	/**
+	 * Measures the selected overlays, or all of them if none is selected, in
+	 * the background, and shows the results in a table. Each overlay is
+	 * measured on the active dataset of the first display showing it, either
+	 * at the display's current position or on every plane.
+	 */
+	private void measure(final boolean allPlanes) {
+		List<Overlay> overlays = infoIndex.selectedOverlays();
+		if (overlays.isEmpty()) {
+			final OverlayInfoList infoList = overlayService.getOverlayInfo();
+			overlays = new ArrayList<>(infoList.getOverlayInfoCount());
+			for (int i = 0; i < infoList.getOverlayInfoCount(); i++) {
+				overlays.add(infoList.getOverlayInfo(i).getOverlay());
+			}
+		}
+		if (overlays.isEmpty()) {
+			JOptionPane.showMessageDialog(this, "There are no overlays to measure");
+			return;
+		}
+		final List<Overlay> toMeasure = overlays;
+		// NB: The list may change on the EDT while the overlays are measured.
+		final Map<Overlay, String> labels = new IdentityHashMap<>();
+		for (final Overlay overlay : toMeasure) {
+			labels.put(overlay, getLabel(overlay));
+		}
+		threadService.run(new Runnable() {
+
+			@Override
+			public void run() {
+				final RoiMeasurementTable table;
+				try {
+					table = measure(toMeasure, labels, allPlanes);
+				}
+				catch (final RuntimeException exc) {
+					showError("Could not measure the overlays: " + exc.getMessage());
+					return;
+				}
+				threadService.queue(new Runnable() {
+
+					@Override
+					public void run() {
+						new RoiMeasurementFrame(allPlanes ? "Multi Measure" :
+							"Measurements", table).setVisible(true);
+					}
+				});
+			}
+		});
+	}
+
+	private RoiMeasurementTable measure(final List<Overlay> overlays,
+		final Map<Overlay, String> labels, final boolean allPlanes)
+	{
+		// group the overlays by display, to measure each image in one sweep
+		final Map<ImageDisplay, List<Overlay>> byDisplay = new LinkedHashMap<>();
+		for (final Overlay overlay : overlays) {
+			final ImageDisplay display = overlayService.getFirstDisplay(overlay);
+			if (display == null) continue;
+			List<Overlay> group = byDisplay.get(display);
+			if (group == null) {
+				group = new ArrayList<>();
+				byDisplay.put(display, group);
+			}
+			group.add(overlay);
+		}
+
+		final RoiMeasurer measurer = new RoiMeasurer(threadService);
+		final RoiMeasurementTable table = new RoiMeasurementTable();
+		for (final Map.Entry<ImageDisplay, List<Overlay>> entry : byDisplay
+			.entrySet())
+		{
+			final ImageDisplay display = entry.getKey();
+			final Dataset dataset = imageDisplayService.getActiveDataset(display);
+			if (dataset == null) continue;
+			final int xAxis = dataset.dimensionIndex(Axes.X);
+			final int yAxis = dataset.dimensionIndex(Axes.Y);
+			if (xAxis < 0 || yAxis < 0) continue;
+
+			final List<Overlay> group = entry.getValue();
+			final List<RegionOfInterest> rois = new ArrayList<>(group.size());
+			for (final Overlay overlay : group) {
+				rois.add(overlay.getRegionOfInterest());
+			}
+			final List<RoiMask> masks = measurer.rasterize(rois, dataset.dimension(
+				xAxis), dataset.dimension(yAxis));
+
+			final List<long[]> planes;
+			if (allPlanes) {
+				planes = RoiMeasurer.planes(dataset.getImgPlus(), xAxis, yAxis);
+			}
+			else {
+				final long[] position = new long[dataset.numDimensions()];
+				for (int d = 0; d < position.length; d++) {
+					if (d == xAxis || d == yAxis) continue;
+					position[d] = display.getLongPosition(dataset.axis(d).type());
+				}
+				planes = Collections.singletonList(position);
+			}
+
+			final RoiMeasurement[][] results =
+				measurer.measure(dataset.getImgPlus(), xAxis, yAxis, masks, planes);
+			for (int p = 0; p < planes.size(); p++) {
+				final String position =
+					describePosition(dataset, planes.get(p), xAxis, yAxis);
+				for (int m = 0; m < group.size(); m++) {
+					table.addRow(labels.get(group.get(m)), dataset.getName(), position,
+						results[p][m]);
+				}
+			}
+		}
+		return table;
+	}
+
+	/** Gets the name of the given overlay as shown in the list. */
+	private String getLabel(final Overlay overlay) {
+		final OverlayInfo info = infoIndex.getInfo(overlay);
+		return info == null ? overlay.toString() : info.toString();
+	}
+
+	/** Describes a plane position, e.g. "Z=3, Time=1", counting from 1. */
+	private static String describePosition(final Dataset dataset,
+		final long[] position, final int xAxis, final int yAxis)
+	{
+		final StringBuilder sb = new StringBuilder();
+		for (int d = 0; d < position.length; d++) {
+			if (d == xAxis || d == yAxis) continue;
+			if (sb.length() > 0) sb.append(", ");
+			sb.append(dataset.axis(d).type().getLabel());
+			sb.append('=');
+			sb.append(position[d] + 1);
+		}
+		return sb.toString();
 	}
 	
+	/**
+	 * Plots the mean intensity of the selected overlays, or of all overlays of
+	 * the active display if none is selected, along one of its non-XY axes.
+	 * The other axes stay at the display's current position.
+	 */
 	private void multiPlot() {
-		JOptionPane.showMessageDialog(this, "unimplemented");
+		final ImageDisplay display = imageDisplayService.getActiveImageDisplay();
+		if (display == null) return;
+		final Dataset dataset = imageDisplayService.getActiveDataset(display);
+		if (dataset == null) return;
+		final int xAxis = dataset.dimensionIndex(Axes.X);
+		final int yAxis = dataset.dimensionIndex(Axes.Y);
+		if (xAxis < 0 || yAxis < 0) return;
+
+		final List<Overlay> displayed = overlayService.getOverlays(display);
+		List<Overlay> overlays = infoIndex.selectedOverlays();
+		if (overlays.isEmpty()) overlays = displayed;
+		else {
+			final Set<Overlay> shown =
+				Collections.newSetFromMap(new IdentityHashMap<Overlay, Boolean>());
+			shown.addAll(displayed);
+			overlays.retainAll(shown);
+		}
+		if (overlays.isEmpty()) {
+			JOptionPane.showMessageDialog(this,
+				"There are no overlays to plot in the active image");
+			return;
+		}
+
+		// choose the axis to plot along, preferring time
+		final List<String> choices = new ArrayList<>();
+		final List<Integer> dims = new ArrayList<>();
+		int preferred = 0;
+		for (int d = 0; d < dataset.numDimensions(); d++) {
+			if (d == xAxis || d == yAxis || dataset.dimension(d) < 2) continue;
+			if (dataset.axis(d).type() == Axes.TIME) preferred = choices.size();
+			choices.add(dataset.axis(d).type().getLabel());
+			dims.add(d);
+		}
+		if (choices.isEmpty()) {
+			JOptionPane.showMessageDialog(this,
+				"Multi Plot needs an image with more than one plane");
+			return;
+		}
+		int choice = preferred;
+		if (choices.size() > 1) {
+			final Object selected = JOptionPane.showInputDialog(this,
+				"Plot along:", "Multi Plot", JOptionPane.QUESTION_MESSAGE, null,
+				choices.toArray(), choices.get(preferred));
+			if (selected == null) return;
+			choice = choices.indexOf(selected);
+		}
+		final int axis = dims.get(choice);
+
+		final long[] position = new long[dataset.numDimensions()];
+		for (int d = 0; d < position.length; d++) {
+			if (d == xAxis || d == yAxis) continue;
+			position[d] = display.getLongPosition(dataset.axis(d).type());
+		}
+		final List<long[]> planes = new ArrayList<>();
+		final long[] positions = new long[(int) dataset.dimension(axis)];
+		for (int i = 0; i < positions.length; i++) {
+			final long[] plane = position.clone();
+			plane[axis] = dataset.min(axis) + i;
+			planes.add(plane);
+			positions[i] = plane[axis];
+		}
+
+		final List<Overlay> toPlot = overlays;
+		final List<String> labels = new ArrayList<>(toPlot.size());
+		for (final Overlay overlay : toPlot) {
+			labels.add(getLabel(overlay));
+		}
+		final RoiProfileFrame frame = new RoiProfileFrame("Multi Plot - " +
+			dataset.getName(), choices.get(choice), labels, positions);
+		frame.setVisible(true);
+		threadService.run(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					final List<RegionOfInterest> rois = new ArrayList<>(toPlot.size());
+					for (final Overlay overlay : toPlot) {
+						rois.add(overlay.getRegionOfInterest());
+					}
+					final RoiMeasurer measurer = new RoiMeasurer(threadService);
+					final List<RoiMask> masks = measurer.rasterize(rois, dataset
+						.dimension(xAxis), dataset.dimension(yAxis));
+					new RoiProfiler(threadService, masks, dataset.dimension(xAxis))
+						.profile(dataset.getImgPlus(), xAxis, yAxis, planes, frame);
+				}
+				catch (final RuntimeException exc) {
+					showError("Could not plot the overlays: " + exc.getMessage());
+				}
+				finally {
+					threadService.queue(new Runnable() {
+
+						@Override
+						public void run() {
+							frame.finished();
+						}
+					});
+				}
+			}
+		});
 	}
 	
+	/**
+	 * Reads a ROI set into the active image display. Only the index of the set
+	 * is read up front, in the background, to find the overlays whose bounds
+	 * and position meet the image. Those on the display's current plane are
+	 * then created and attached all at once; those on the other planes are
+	 * created the same way when the display first shows their plane.
+	 */
 	private void open() {
-		JOptionPane.showMessageDialog(this, "unimplemented");
+		final ImageDisplay display = imageDisplayService.getActiveImageDisplay();
+		if (display == null) {
+			JOptionPane.showMessageDialog(this, "An image must be open to add overlays to");
+			return;
+		}
+		final JFileChooser chooser = new JFileChooser();
+		chooser.setDialogTitle("Open Overlays from file ...");
+		chooser.setFileFilter(new FileNameExtensionFilter(
+			"ImageJ ROI sets (*." + ROI_SET_EXTENSION + ")", ROI_SET_EXTENSION));
+		if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+		final File file = chooser.getSelectedFile();
+		final Dataset dataset = imageDisplayService.getActiveDataset(display);
+		final Rectangle2D imageBounds;
+		if (dataset != null && dataset.dimensionIndex(Axes.X) >= 0 &&
+			dataset.dimensionIndex(Axes.Y) >= 0)
+		{
+			imageBounds = new Rectangle2D.Double(0, 0, dataset.dimension(dataset
+				.dimensionIndex(Axes.X)), dataset.dimension(dataset.dimensionIndex(
+					Axes.Y)));
+		}
+		else {
+			imageBounds = new Rectangle2D.Double(-Double.MAX_VALUE / 2,
+				-Double.MAX_VALUE / 2, Double.MAX_VALUE, Double.MAX_VALUE);
+		}
+		final List<AxisType> axes = new ArrayList<>();
+		final List<Long> min = new ArrayList<>();
+		final List<Long> max = new ArrayList<>();
+		final List<Long> current = new ArrayList<>();
+		for (int d = 0; d < display.numDimensions(); d++) {
+			final AxisType axisType = display.axis(d).type();
+			if (axisType.isXY()) continue;
+			axes.add(axisType);
+			min.add(display.min(d));
+			max.add(display.max(d));
+			current.add(display.getLongPosition(axisType));
+		}
+		threadService.run(new Runnable() {
+
+			@Override
+			public void run() {
+				final PendingRoiSet pending;
+				try {
+					pending = new PendingRoiSet(new RoiSetReader(file));
+				}
+				catch (final IOException | RuntimeException exc) {
+					showError("Could not open " + file + ": " + exc.getMessage());
+					return;
+				}
+				final RoiSetReader reader = pending.getReader();
+				try {
+					for (int i = 0; i < reader.getCount(); i++) {
+						final Rectangle2D bounds = reader.getBounds(i);
+						// NB: lines and points have empty bounds
+						if (bounds.getMaxX() < imageBounds.getMinX() ||
+							bounds.getMinX() > imageBounds.getMaxX() ||
+							bounds.getMaxY() < imageBounds.getMinY() ||
+							bounds.getMinY() > imageBounds.getMaxY())
+						{
+							continue;
+						}
+						final List<Long> plane =
+							plane(reader.getPosition(i), axes, min, max, current);
+						if (plane != null) pending.add(plane, i);
+					}
+				}
+				catch (final RuntimeException exc) {
+					pending.close();
+					showError("Could not open " + file + ": " + exc.getMessage());
+					return;
+				}
+				if (pending.isEmpty()) {
+					pending.close();
+					return;
+				}
+				final PendingRoiSet old;
+				synchronized (pendingSets) {
+					old = pendingSets.put(display, pending);
+				}
+				if (old != null) old.close();
+				queueOpenPlane(display);
+			}
+		});
 	}
-	
+
+	/**
+	 * Queues the creation of the pending overlays on the current plane of the
+	 * given display, on the event dispatch thread.
+	 */
+	private void queueOpenPlane(final ImageDisplay display) {
+		threadService.queue(new Runnable() {
+
+			@Override
+			public void run() {
+				openPlane(display);
+			}
+		});
+	}
+
+	/**
+	 * Creates the pending overlays of the ROI set opened into the given
+	 * display that are on its current plane, and attaches them all at once.
+	 * Runs on the event dispatch thread, so that the display stays on that
+	 * plane, where the overlays are pinned.
+	 */
+	private void openPlane(final ImageDisplay display) {
+		final PendingRoiSet pending;
+		synchronized (pendingSets) {
+			pending = pendingSets.get(display);
+		}
+		if (pending == null) return;
+		final List<Long> plane = new ArrayList<>();
+		for (int d = 0; d < display.numDimensions(); d++) {
+			final AxisType axisType = display.axis(d).type();
+			if (!axisType.isXY()) plane.add(display.getLongPosition(axisType));
+		}
+		final List<Integer> indices = pending.take(plane);
+		if (indices == null) return;
+		final List<Overlay> overlays = new ArrayList<>(indices.size());
+		try {
+			for (final int i : indices) {
+				overlays.add(pending.getReader().createOverlay(i, context));
+			}
+		}
+		catch (final RuntimeException exc) {
+			showError("Could not open the overlays: " + exc.getMessage());
+		}
+		finally {
+			if (pending.done()) {
+				synchronized (pendingSets) {
+					if (pendingSets.get(display) == pending) {
+						pendingSets.remove(display);
+					}
+				}
+			}
+		}
+		if (!overlays.isEmpty()) attach(display, overlays);
+	}
+
+	/**
+	 * Gets the plane of an overlay of a ROI set, given its position, along the
+	 * given non-XY axes of a display. Along axes the overlay has no position
+	 * for, it is on the current plane; its positions along axes the display
+	 * lacks are ignored.
+	 *
+	 * @return the plane, or null if the overlay lies beyond the display
+	 */
+	private static List<Long> plane(final Map<AxisType, Long> position,
+		final List<AxisType> axes, final List<Long> min, final List<Long> max,
+		final List<Long> current)
+	{
+		final List<Long> plane = new ArrayList<>(axes.size());
+		for (int a = 0; a < axes.size(); a++) {
+			final Long pos = position.get(axes.get(a));
+			if (pos == null) plane.add(current.get(a));
+			else if (pos < min.get(a) || pos > max.get(a)) return null;
+			else plane.add(pos);
+		}
+		return plane;
+	}
+
 	private void options() {
 		JOptionPane.showMessageDialog(this, "unimplemented");
 	}
@@ -631,8 +1297,7 @@ public class SwingOverlayManager
 	}
 	
 	private void properties() {
-		int[] selected = overlayService.getOverlayInfo().selectedIndices();
-		if (selected.length == 0) {
+		if (infoIndex.getSelectedCount() == 0) {
 			JOptionPane.showMessageDialog(this, "This command requires one or more selections");
 			return;
 		}
@@ -645,7 +1310,7 @@ public class SwingOverlayManager
 	}
 	
 	private void rename() {
-		final int[] selectedIndices = overlayService.getOverlayInfo().selectedIndices();
+		final int[] selectedIndices = infoIndex.selectedIndices();
 		if (selectedIndices.length < 1) {
 			JOptionPane.showMessageDialog(this, "Must select an overlay to rename");
 			return;
@@ -662,56 +1327,113 @@ public class SwingOverlayManager
 			info.getOverlay().setName(null);
 		else
 			info.getOverlay().setName(name);
-		jlist.updateUI();
+		listModel.changed(selectedIndices[0]);
 	}
 	
+	/**
+	 * Writes the selected overlays, or all of them if none is selected, to a
+	 * ROI set, in the background, each at the position of a view showing it.
+	 */
 	private void save() {
-		JOptionPane.showMessageDialog(this, "unimplemented");
-		/*
-		final int[] selectedIndices = jlist.getSelectedIndices();
-		// nothing selected
-		if (selectedIndices.length == 0) {
-			JOptionPane.showMessageDialog(this, "Cannot save - one or more overlays must be selected first");
+		List<Overlay> overlays = infoIndex.selectedOverlays();
+		if (overlays.isEmpty()) {
+			final OverlayInfoList infoList = overlayService.getOverlayInfo();
+			overlays = new ArrayList<>(infoList.getOverlayInfoCount());
+			for (int i = 0; i < infoList.getOverlayInfoCount(); i++) {
+				overlays.add(infoList.getOverlayInfo(i).getOverlay());
+			}
+		}
+		if (overlays.isEmpty()) {
+			JOptionPane.showMessageDialog(this, "There are no overlays to save");
 			return;
 		}
-		
 		final JFileChooser chooser = new JFileChooser();
-		chooser.setDialogTitle("Save Overlay to file ...");
-		chooser.setAcceptAllFileFilterUsed(false);
-		FileNameExtensionFilter filter1, filter2;
-		filter1 = new FileNameExtensionFilter("ImageJ overlay containers (*.zip)", "zip");
-		chooser.addChoosableFileFilter(filter1);
-		filter2 = new FileNameExtensionFilter("ImageJ overlay files (*.ovl)", "ovl");
-		chooser.addChoosableFileFilter(filter2);
-		chooser.setFileFilter(filter2);
-		int result = chooser.showSaveDialog(this);
-		if (result != JFileChooser.APPROVE_OPTION) return;
-		String basename = chooser.getSelectedFile().getAbsolutePath();
-		if (basename.toLowerCase().endsWith(".ovl") ||
-				basename.toLowerCase().endsWith(".zip")) {
-			basename = basename.substring(0,basename.length()-4);
+		chooser.setDialogTitle("Save Overlays to file ...");
+		chooser.setFileFilter(new FileNameExtensionFilter(
+			"ImageJ ROI sets (*." + ROI_SET_EXTENSION + ")", ROI_SET_EXTENSION));
+		if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+		File file = chooser.getSelectedFile();
+		if (!file.getName().toLowerCase().endsWith("." + ROI_SET_EXTENSION)) {
+			file = new File(file.getParentFile(), file.getName() + "." +
+				ROI_SET_EXTENSION);
 		}
-		
-		// one roi selected
-		if (selectedIndices.length == 1) {
-			// save overlay in its own user named .ovl file
-			String filename = basename + ".ovl";
-			final OverlayInfo info = (OverlayInfo) jlist.getSelectedValue();
-			//info.overlay.save(filename);
-		}
-		else { // more than one roi selected
-			// save each overlay in its own .ovl file in a user named .zip container
-			String filename = basename + ".zip";
-			JOptionPane.showMessageDialog(this, "save multiple overlays to zip is unimplemented");
+		final File target = file;
+		final List<Overlay> toSave = overlays;
+		final Map<Overlay, Map<AxisType, Long>> positions = viewPositions(toSave);
+		threadService.run(new Runnable() {
+
+			@Override
+			public void run() {
+				final int written;
+				try (final RoiSetWriter writer = new RoiSetWriter(target)) {
+					for (final Overlay overlay : toSave) {
+						final Map<AxisType, Long> position = positions.get(overlay);
+						if (position == null) writer.write(overlay);
+						else writer.write(overlay, position);
+					}
+					written = writer.getCount();
+				}
+				catch (final IOException exc) {
+					showError("Could not save " + target + ": " + exc.getMessage());
+					return;
+				}
+				if (written < toSave.size()) {
+					showError((toSave.size() - written) +
+						" overlays of unsupported types were not saved");
+				}
+			}
+		});
+	}
+
+	/**
+	 * Gets the position along the non-XY axes of the first view showing each of
+	 * the given overlays, walking each display once. Overlays shown nowhere are
+	 * mapped to null.
+	 */
+	private Map<Overlay, Map<AxisType, Long>> viewPositions(
+		final List<Overlay> overlays)
+	{
+		final Map<Overlay, Map<AxisType, Long>> positions =
+			new IdentityHashMap<>();
+		for (final Overlay overlay : overlays) {
+			positions.put(overlay, null);
 		}
-		*/
+		for (final ImageDisplay display : imageDisplayService.getImageDisplays()) {
+			for (final DataView view : display) {
+				final Object data = view.getData();
+				if (!positions.containsKey(data) || positions.get(data) != null) {
+					continue;
+				}
+				final Map<AxisType, Long> position = new HashMap<>();
+				for (int d = 0; d < display.numDimensions(); d++) {
+					final AxisType axisType = display.axis(d).type();
+					if (!axisType.isXY()) {
+						position.put(axisType, view.getLongPosition(axisType));
+					}
+				}
+				positions.put((Overlay) data, position);
+			}
+		}
+		return positions;
+	}
+
+	/** Reports an error from a background task. */
+	private void showError(final String message) {
+		threadService.queue(new Runnable() {
+
+			@Override
+			public void run() {
+				JOptionPane.showMessageDialog(SwingOverlayManager.this, message);
+			}
+		});
 	}
 	
 	private void sort() {
 		overlayService.getOverlayInfo().sort();
-		int[] newSelections = overlayService.getOverlayInfo().selectedIndices();
-		jlist.setSelectedIndices(newSelections);
-		jlist.updateUI();
+		infoIndex.invalidate();
+		listModel.restructured();
+		int[] newSelections = infoIndex.selectedIndices();
+		setSelectedIndices(newSelections);
 	}
 	
 	private void specify() {
@@ -755,7 +1477,7 @@ public class SwingOverlayManager
 		}
 
 		infoList.replaceOverlay(selectedIndices[0], overlay);
-		jlist.updateUI();
+		listModel.changed(selectedIndices[0]);
 	}
 	 */
 	
@@ -833,26 +1555,40 @@ public class SwingOverlayManager
 				@Override
 				public void valueChanged(final ListSelectionEvent listSelectionEvent) {
 					if (selecting) return;
-					selecting = true;
 					final ImageDisplay display =
 						imageDisplayService.getActiveImageDisplay();
 					if (display == null) return;
+					selecting = true;
 					final JList<?> list = (JList<?>) listSelectionEvent.getSource();
-					final List<?> selectionValues = list.getSelectedValuesList();
-					overlayService.getOverlayInfo().deselectAll();
-					for (final Object overlayInfoObj : selectionValues) {
-						final OverlayInfo overlayInfo = (OverlayInfo) overlayInfoObj;
-						overlayInfo.setSelected(true);
+					final int[] rows = list.getSelectedIndices();
+					infoIndex.select(rows);
+					final Set<Object> chosen =
+						Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+					for (final int row : rows) {
+						final OverlayInfo info = listModel.getElementAt(row);
+						if (info != null) chosen.add(info.getOverlay());
 					}
+					// find the views whose state changes, then change only those,
+					// so that unchanged views publish no events
+					final List<DataView> toDeselect = new ArrayList<>();
+					final List<DataView> toSelect = new ArrayList<>();
 					for (final DataView overlayView : display) {
-						overlayView.setSelected(false);
-						for (final Object overlayInfoObj : selectionValues) {
-							final OverlayInfo overlayInfo = (OverlayInfo) overlayInfoObj;
-							if (overlayInfo.getOverlay() == overlayView.getData()) {
-								overlayInfo.setSelected(true);
-								overlayView.setSelected(true);
-								break;
-							}
+						final boolean select = chosen.contains(overlayView.getData());
+						if (select == overlayView.isSelected()) continue;
+						(select ? toSelect : toDeselect).add(overlayView);
+					}
+					final DisplayViewer<?> viewer = uiService.getDisplayViewer(display);
+					if (viewer instanceof SwingImageDisplayViewer) {
+						// one batched update of the canvas's selection
+						((SwingImageDisplayViewer) viewer).getCanvas().setSelected(toSelect,
+							toDeselect);
+					}
+					else {
+						for (final DataView overlayView : toDeselect) {
+							overlayView.setSelected(false);
+						}
+						for (final DataView overlayView : toSelect) {
+							overlayView.setSelected(true);
 						}
 					}
 					selecting = false;
@@ -1141,7 +1877,7 @@ public class SwingOverlayManager
 	
 	private void runPropertiesPlugin() {
 		final Map<String, Object> inputMap = new HashMap<>();
-		inputMap.put("overlays", overlayService.getOverlayInfo().selectedOverlays());
+		inputMap.put("overlays", infoIndex.selectedOverlays());
 		// FIXME: Migrate OverlayProperties functionality into OverlayService API.
 		commandService.run(
 			"net.imagej.plugins.commands.overlay.SelectedManagerOverlayProperties",
@@ -1157,7 +1893,7 @@ public class SwingOverlayManager
 	private void makeCompositeOverlay(CompositeOverlay.Operation op) {
 		ImageDisplay imageDisplay = imageDisplayService.getActiveImageDisplay();
 		if (imageDisplay == null) return;
-		List<Overlay> overlays = overlayService.getOverlayInfo().selectedOverlays();
+		List<Overlay> overlays = infoIndex.selectedOverlays();
 		if (overlays.size() == 0) overlays = overlayService.getOverlays(imageDisplay);
 		if (overlays.size() < 2) {
 			JOptionPane.showMessageDialog(this,
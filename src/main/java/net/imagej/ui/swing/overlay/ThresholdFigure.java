@@ -42,6 +42,7 @@ import net.imagej.Dataset;
 import net.imagej.axis.AxisType;
 import net.imagej.display.ImageDisplay;
 import net.imagej.overlay.ThresholdOverlay;
+import net.imagej.ui.swing.viewer.image.PlaneDependentFigure;
 import net.imglib2.Cursor;
 import net.imglib2.ops.pointset.HyperVolumePointSet;
 import net.imglib2.ops.pointset.PointSet;
@@ -57,7 +58,7 @@ import org.scijava.ui.awt.AWTColors;
  * @author Barry DeZonia
  */
 public class ThresholdFigure extends AbstractAttributedFigure implements
-	Displayable
+	Displayable, PlaneDependentFigure
 {
 
 	private static final long serialVersionUID = 1L;
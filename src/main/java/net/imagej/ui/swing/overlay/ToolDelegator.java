@@ -34,13 +34,16 @@ package net.imagej.ui.swing.overlay;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.event.MouseEvent;
+import java.awt.geom.Point2D;
 
 import javax.swing.ActionMap;
 import javax.swing.InputMap;
 import javax.swing.event.UndoableEditListener;
 
+import org.jhotdraw.draw.Drawing;
 import org.jhotdraw.draw.DrawingEditor;
 import org.jhotdraw.draw.DrawingView;
+import org.jhotdraw.draw.Figure;
 import org.jhotdraw.draw.event.ToolListener;
 import org.jhotdraw.draw.tool.AbstractTool;
 
@@ -57,6 +60,9 @@ public class ToolDelegator extends AbstractTool {
 
 	private boolean selection;
 
+	/** Spatial index used to hit-test figures on mouse motion. */
+	private FigureHitIndex hitIndex;
+
 	public ToolDelegator() {
 		selectionTool = new IJDelegationSelectionTool();
 		for (final Object listener : listenerList.getListenerList()) {
@@ -165,6 +171,10 @@ public class ToolDelegator extends AbstractTool {
 		if (activeTool != null) {
 			activeTool.deactivate(editer);
 		}
+		if (hitIndex != null) {
+			hitIndex.dispose();
+			hitIndex = null;
+		}
 		super.deactivate(editer);
 	}
 
@@ -233,17 +243,13 @@ public class ToolDelegator extends AbstractTool {
 
 	protected boolean maybeSwitchTool(final MouseEvent event) {
 		if (activeTool != null && activeTool.isConstructing()) return false;
-		anchor = new Point(event.getX(), event.getY());
+		if (anchor == null) anchor = new Point();
+		anchor.setLocation(event.getX(), event.getY());
 		JHotDrawTool tool = creationTool;
 		final DrawingView view = getView();
-		if (view != null && view.isEnabled()) {
-			if (view.findHandle(anchor) != null ||
-				(view.findFigure(anchor) != null && view.findFigure(anchor)
-					.isSelectable()))
-			{
-				if (selection) tool = selectionTool;
-				else tool = null;
-			}
+		if (view != null && view.isEnabled() && isOverSelectable(view, anchor)) {
+			if (selection) tool = selectionTool;
+			else tool = null;
 		}
 
 		if (activeTool != tool) {
@@ -261,4 +267,23 @@ public class ToolDelegator extends AbstractTool {
 		}
 		return false;
 	}
+
+	// -- Helper methods --
+
+	/**
+	 * Checks whether the given view point lies on a handle or a selectable
+	 * figure. Figures are hit-tested once, through the {@link FigureHitIndex}.
+	 */
+	private boolean isOverSelectable(final DrawingView view, final Point p) {
+		if (view.findHandle(p) != null) return true;
+		final Drawing drawing = view.getDrawing();
+		if (drawing == null) return false;
+		if (hitIndex == null || hitIndex.getDrawing() != drawing) {
+			if (hitIndex != null) hitIndex.dispose();
+			hitIndex = new FigureHitIndex(drawing);
+		}
+		final Point2D.Double drawingPoint = view.viewToDrawing(p);
+		final Figure figure = hitIndex.findFigure(drawingPoint);
+		return figure != null && figure.isSelectable();
+	}
 }
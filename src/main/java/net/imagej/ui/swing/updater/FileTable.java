@@ -88,8 +88,16 @@ public class FileTable extends JTable {
 	final static int SITE_COLUMN = 2;
 
 	public FileTable(final UpdaterFrame updaterFrame) {
+		this(updaterFrame, updaterFrame.files);
+	}
+
+	/**
+	 * Creates a table of the given files. The frame may be null, e.g. in
+	 * benchmarks, as long as the table shows no dialogs.
+	 */
+	FileTable(final UpdaterFrame updaterFrame, final FilesCollection files) {
 		this.updaterFrame = updaterFrame;
-		files = updaterFrame.files;
+		this.files = files;
 		row2file = new ArrayList<>();
 		for (final FileObject file : files) {
 			row2file.add(file);
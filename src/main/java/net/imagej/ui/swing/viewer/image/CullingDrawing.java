@@ -0,0 +1,342 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.ui.swing.viewer.image;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import org.jhotdraw.draw.AttributeKeys;
+import org.jhotdraw.draw.DefaultDrawing;
+import org.jhotdraw.draw.Figure;
+
+/**
+ * A {@link DefaultDrawing} which does not draw figures smaller than a device
+ * pixel.
+ * <p>
+ * When zoomed out far enough, thousands of overlays can shrink below a single
+ * screen pixel, where drawing each of them fully is wasted effort. Such
+ * figures are instead counted per device pixel, and the counts are painted as
+ * a density layer of translucent pixels in the figures' stroke colors, so that
+ * the user still sees where the annotations are. At or above the zoom
+ * threshold, all figures are drawn as usual.
+ * </p>
+ */
+public class CullingDrawing extends DefaultDrawing {
+
+	private static final long serialVersionUID = 1L;
+
+	/** Default zoom factor from which on all figures are drawn. */
+	public static final double DEFAULT_ZOOM_THRESHOLD = 1;
+
+	/** Color of culled figures which have no stroke color. */
+	private static final Color DEFAULT_COLOR = Color.yellow;
+
+	private double zoomThreshold = DEFAULT_ZOOM_THRESHOLD;
+
+	/** Number of figures culled during the last draw. */
+	private int culledCount;
+
+	/** Hints applied on top of the drawing view's own, or null. */
+	private transient RenderingHints renderingHints;
+
+	// -- density layer, reused between draws --
+
+	private transient BufferedImage densityImage;
+	private transient int[] pixels;
+	private transient int[] counts;
+	private transient int[] touched;
+	private int touchedCount;
+	private final Point2D.Double point = new Point2D.Double();
+
+	// -- CullingDrawing methods --
+
+	/** Gets the zoom factor from which on all figures are drawn. */
+	public double getZoomThreshold() {
+		return zoomThreshold;
+	}
+
+	/**
+	 * Sets the zoom factor from which on all figures are drawn. Below it,
+	 * figures smaller than a device pixel only contribute to the density layer.
+	 * A threshold of 0 disables culling.
+	 */
+	public void setZoomThreshold(final double zoomThreshold) {
+		if (zoomThreshold < 0) {
+			throw new IllegalArgumentException("Negative threshold: " +
+				zoomThreshold);
+		}
+		this.zoomThreshold = zoomThreshold;
+	}
+
+	/** Gets the number of figures culled during the last draw. */
+	public int getCulledCount() {
+		return culledCount;
+	}
+
+	/** Gets the rendering hints with which the figures are drawn, or null. */
+	public RenderingHints getRenderingHints() {
+		return renderingHints;
+	}
+
+	/**
+	 * Sets the rendering hints with which the figures are drawn, on top of those
+	 * of the drawing view, and invalidates the whole drawing if they differ from
+	 * the current ones. Null and empty hints are equivalent.
+	 */
+	public void setRenderingHints(final RenderingHints hints) {
+		if (equivalent(renderingHints, hints)) return;
+		renderingHints = hints;
+		fireAreaInvalidated();
+	}
+
+	/**
+	 * Appends the given figures to the drawing as a single change.
+	 * <p>
+	 * Adding figures one at a time notifies the drawing's listeners of every
+	 * figure. Here, the figures are appended without per-figure notifications,
+	 * and the listeners are told once about the union of their drawing areas.
+	 * </p>
+	 *
+	 * @param figures the figures to add, which must not be in a drawing yet
+	 */
+	public void addFigures(final Collection<? extends Figure> figures) {
+		if (figures.isEmpty()) return;
+		Rectangle2D.Double area = null;
+		willChange();
+		try {
+			for (final Figure figure : figures) {
+				basicAdd(children.size(), figure);
+				figure.addNotify(this);
+				final Rectangle2D.Double figureArea = figure.getDrawingArea();
+				if (area == null) area = (Rectangle2D.Double) figureArea.clone();
+				else area.add(figureArea);
+			}
+			fireAreaInvalidated(area);
+		}
+		finally {
+			changed();
+		}
+	}
+
+	/**
+	 * Removes the given figures from the drawing as a single change.
+	 * <p>
+	 * Removing figures one at a time costs a linear search and a shift of the
+	 * remaining children per figure. Here, the children are partitioned in one
+	 * pass, with the doomed figures moved to the end, from where they are
+	 * removed at constant cost each. Figures which are not children of the
+	 * drawing are ignored.
+	 * </p>
+	 *
+	 * @param figures the figures to remove
+	 * @return the number of figures removed
+	 */
+	public int removeFigures(final Collection<? extends Figure> figures) {
+		if (figures.isEmpty()) return 0;
+		final Set<Figure> doomed =
+			Collections.newSetFromMap(new IdentityHashMap<Figure, Boolean>());
+		doomed.addAll(figures);
+		final List<Figure> kept = new ArrayList<>(children.size());
+		final List<Figure> removed = new ArrayList<>(doomed.size());
+		final List<Integer> indices = new ArrayList<>(doomed.size());
+		for (int i = 0; i < children.size(); i++) {
+			final Figure child = children.get(i);
+			if (doomed.contains(child)) {
+				removed.add(child);
+				indices.add(i);
+			}
+			else kept.add(child);
+		}
+		if (removed.isEmpty()) return 0;
+
+		willChange();
+		try {
+			children.clear();
+			children.addAll(kept);
+			children.addAll(removed);
+			for (int i = children.size() - 1; i >= kept.size(); i--) {
+				basicRemoveChild(i);
+			}
+			for (int i = 0; i < removed.size(); i++) {
+				final Figure figure = removed.get(i);
+				figure.removeNotify(this);
+				fireFigureRemoved(figure, indices.get(i));
+			}
+		}
+		finally {
+			changed();
+		}
+		return removed.size();
+	}
+
+	// -- Figure methods --
+
+	@Override
+	public void draw(final Graphics2D g) {
+		if (renderingHints != null) g.addRenderingHints(renderingHints);
+		drawFigures(g);
+	}
+
+	// -- Internal methods --
+
+	/**
+	 * Draws the visible children within the clip, culling those smaller than a
+	 * device pixel below the zoom threshold.
+	 */
+	protected void drawFigures(final Graphics2D g) {
+		final AffineTransform tx = g.getTransform();
+		final double scale = Math.sqrt(Math.abs(tx.getDeterminant()));
+		final boolean cull = scale < zoomThreshold;
+		final Rectangle clip = g.getClipBounds();
+		final Rectangle deviceClip = clip == null || !cull ? null : tx
+			.createTransformedShape(clip).getBounds();
+		int culled = 0;
+		for (final Figure figure : getChildren()) {
+			if (!figure.isVisible() || !isDrawn(figure)) continue;
+			final Rectangle2D.Double area = figure.getDrawingArea();
+			if (clip != null && !area.intersects(clip)) continue;
+			if (cull && area.width * scale < 1 && area.height * scale < 1) {
+				if (deviceClip != null) {
+					if (culled == 0) resetDensity(deviceClip);
+					accumulate(figure, area, tx, deviceClip);
+				}
+				culled++;
+				continue;
+			}
+			figure.draw(g);
+		}
+		culledCount = culled;
+		if (culled > 0 && deviceClip != null) drawDensity(g, deviceClip);
+	}
+
+	/**
+	 * Gets whether {@link #drawFigures} draws the given (visible) figure. By
+	 * default, all figures are drawn.
+	 */
+	protected boolean isDrawn(@SuppressWarnings("unused") final Figure figure) {
+		return true;
+	}
+
+	// -- Helper methods --
+
+	private static boolean equivalent(final RenderingHints a,
+		final RenderingHints b)
+	{
+		if (a == null || a.isEmpty()) return b == null || b.isEmpty();
+		return a.equals(b);
+	}
+
+	/** Prepares the density buffers for the given region of device space. */
+	private void resetDensity(final Rectangle deviceClip) {
+		final int w = Math.max(1, deviceClip.width);
+		final int h = Math.max(1, deviceClip.height);
+		if (densityImage == null || densityImage.getWidth() < w ||
+			densityImage.getHeight() < h)
+		{
+			densityImage = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+			pixels = ((DataBufferInt) densityImage.getRaster().getDataBuffer())
+				.getData();
+			counts = new int[w * h];
+			touched = new int[64];
+		}
+		touchedCount = 0;
+	}
+
+	/** Adds a culled figure to the density layer. */
+	private void accumulate(final Figure figure, final Rectangle2D.Double area,
+		final AffineTransform tx, final Rectangle deviceClip)
+	{
+		point.setLocation(area.getCenterX(), area.getCenterY());
+		tx.transform(point, point);
+		final int x = (int) Math.floor(point.x) - deviceClip.x;
+		final int y = (int) Math.floor(point.y) - deviceClip.y;
+		if (x < 0 || y < 0 || x >= deviceClip.width || y >= deviceClip.height) {
+			return;
+		}
+		final int stride = densityImage.getWidth();
+		final int index = y * stride + x;
+		if (counts[index]++ == 0) {
+			if (touchedCount == touched.length) {
+				final int[] grown = new int[2 * touched.length];
+				System.arraycopy(touched, 0, grown, 0, touchedCount);
+				touched = grown;
+			}
+			touched[touchedCount++] = index;
+		}
+		final Color color = figure.get(AttributeKeys.STROKE_COLOR);
+		final int rgb = (color == null ? DEFAULT_COLOR : color).getRGB();
+		pixels[index] = (alpha(counts[index]) << 24) | (rgb & 0xffffff);
+	}
+
+	/** Paints the density layer and clears it for the next draw. */
+	private void drawDensity(final Graphics2D g, final Rectangle deviceClip) {
+		final Graphics2D g2 = (Graphics2D) g.create();
+		try {
+			// NB: The density layer is in device space.
+			g2.setTransform(new AffineTransform());
+			final int w = deviceClip.width, h = deviceClip.height;
+			g2.drawImage(densityImage, deviceClip.x, deviceClip.y,
+				deviceClip.x + w, deviceClip.y + h, 0, 0, w, h, null);
+		}
+		finally {
+			g2.dispose();
+		}
+		for (int i = 0; i < touchedCount; i++) {
+			final int index = touched[i];
+			counts[index] = 0;
+			pixels[index] = 0;
+		}
+		touchedCount = 0;
+	}
+
+	/** Gets the opacity of a pixel covered by the given number of figures. */
+	private static int alpha(final int count) {
+		// NB: Grow logarithmically, so that single figures remain visible
+		// without dense clusters saturating immediately.
+		final int a = 96 + 32 * (31 - Integer.numberOfLeadingZeros(count));
+		return Math.min(255, a);
+	}
+
+}
@@ -0,0 +1,198 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.ui.swing.viewer.image;
+
+import java.awt.Rectangle;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.JComponent;
+import javax.swing.RepaintManager;
+import javax.swing.SwingUtilities;
+
+import org.jhotdraw.draw.DrawingView;
+
+/**
+ * Accumulates the regions of a {@link DrawingView} which need repainting
+ * during one event dispatch cycle, merges them and hands the merged rectangles
+ * to Swing's {@link RepaintManager}.
+ * <p>
+ * The damage tracker keeps a short list of rectangles, merging two of them
+ * only when their union is not much larger than the rectangles themselves,
+ * and drops the parts outside of the visible region of the view. The
+ * remaining rectangles are marked dirty on the event dispatch thread, so that
+ * they are painted in Swing's regular paint cycle.
+ * </p>
+ * <p>
+ * The number of repainted pixels is counted, so that regressions in the
+ * amount of repainting can be measured.
+ * </p>
+ */
+public class DamageTracker {
+
+	/** Beyond this many separate rectangles, all damage is merged into one. */
+	private static final int MAX_RECTS = 8;
+
+	/**
+	 * Two rectangles are merged when the area of their union does not exceed
+	 * their summed areas by more than this factor.
+	 */
+	private static final double MERGE_SLACK = 1.25;
+
+	/** Margin, in view pixels, added around damaged drawing areas. */
+	private static final int MARGIN = 2;
+
+	private final DrawingView view;
+	private final JComponent component;
+
+	private final List<Rectangle> dirty = new ArrayList<>();
+	private boolean flushQueued;
+
+	private long repaintedPixels;
+	private long repaintCount;
+
+	public DamageTracker(final DrawingView view) {
+		this.view = view;
+		this.component = view.getComponent();
+	}
+
+	// -- DamageTracker methods --
+
+	/**
+	 * Marks a region of the drawing as needing repaint.
+	 *
+	 * @param drawingArea the damaged region, in drawing coordinates
+	 */
+	public void damage(final Rectangle2D.Double drawingArea) {
+		final Rectangle r = view.drawingToView(drawingArea);
+		r.grow(MARGIN, MARGIN);
+		damage(r);
+	}
+
+	/**
+	 * Marks a region of the view as needing repaint.
+	 *
+	 * @param viewArea the damaged region, in view coordinates
+	 */
+	public void damage(final Rectangle viewArea) {
+		if (viewArea.isEmpty()) return;
+		synchronized (dirty) {
+			add(new Rectangle(viewArea));
+			if (flushQueued) return;
+			flushQueued = true;
+		}
+		SwingUtilities.invokeLater(new Runnable() {
+
+			@Override
+			public void run() {
+				flush();
+			}
+		});
+	}
+
+	/**
+	 * Marks the visible part of all damage accumulated so far as dirty with the
+	 * {@link RepaintManager}. Must be called on the EDT.
+	 */
+	public void flush() {
+		final List<Rectangle> rects;
+		synchronized (dirty) {
+			rects = new ArrayList<>(dirty);
+			dirty.clear();
+			flushQueued = false;
+		}
+		if (!component.isShowing()) return;
+		final Rectangle visible = component.getVisibleRect();
+		final RepaintManager repaintManager =
+			RepaintManager.currentManager(component);
+		for (final Rectangle rect : rects) {
+			final Rectangle r = rect.intersection(visible);
+			if (r.isEmpty()) continue;
+			repaintedPixels += (long) r.width * r.height;
+			repaintCount++;
+			repaintManager.addDirtyRegion(component, r.x, r.y, r.width, r.height);
+		}
+	}
+
+	/** Gets the total number of pixels repainted so far. */
+	public long getRepaintedPixelCount() {
+		return repaintedPixels;
+	}
+
+	/** Gets the total number of dirty regions marked so far. */
+	public long getRepaintCount() {
+		return repaintCount;
+	}
+
+	/** Resets the repaint counters to zero. */
+	public void resetCounts() {
+		repaintedPixels = 0;
+		repaintCount = 0;
+	}
+
+	// -- Helper methods --
+
+	/** Adds a rectangle to the dirty list, merging it where worthwhile. */
+	private void add(final Rectangle rect) {
+		Rectangle r = rect;
+		boolean merged = true;
+		while (merged) {
+			merged = false;
+			for (int i = 0; i < dirty.size(); i++) {
+				final Rectangle d = dirty.get(i);
+				if (d.contains(r)) return;
+				final Rectangle union = d.union(r);
+				if (area(union) <= MERGE_SLACK * (area(d) + area(r))) {
+					dirty.remove(i);
+					r = union;
+					merged = true;
+					break;
+				}
+			}
+		}
+		dirty.add(r);
+		if (dirty.size() > MAX_RECTS) {
+			Rectangle all = dirty.get(0);
+			for (int i = 1; i < dirty.size(); i++) {
+				all = all.union(dirty.get(i));
+			}
+			dirty.clear();
+			dirty.add(all);
+		}
+	}
+
+	private static double area(final Rectangle r) {
+		return (double) r.width * r.height;
+	}
+
+}
@@ -59,7 +59,8 @@ public class DatasetFigureView extends AbstractContextual implements FigureView
 {
 
 	private final DatasetView datasetView;
-	private final ImageFigure figure;
+	private final ZoomImageFigure figure;
+	private final JHotDrawImageCanvas canvas;
 
 	@Parameter
 	private LogService log;
@@ -69,9 +70,9 @@ public class DatasetFigureView extends AbstractContextual implements FigureView
 	{
 		setContext(datasetView.getContext());
 		this.datasetView = datasetView;
-		final JHotDrawImageCanvas canvas = displayViewer.getCanvas();
+		canvas = displayViewer.getCanvas();
 		final Drawing drawing = canvas.getDrawing();
-		figure = new ImageFigure();
+		figure = new ZoomImageFigure(canvas.getBlitter());
 		figure.setSelectable(false);
 		figure.setTransformable(false);
 		final Dataset dataset = datasetView.getData();
@@ -93,16 +94,23 @@ public class DatasetFigureView extends AbstractContextual implements FigureView
 	public void update() {
 		log.debug("Updating image figure: " + this);
 		final Image image = datasetView.getScreenImage().image();
+		final RenderMetrics metrics = canvas.getMetrics();
+		final long start = metrics.start();
 		final BufferedImage bufImage = AWTImageTools.makeBuffered(image);
+		metrics.record(RenderMetrics.BUFFER, start);
 		figure.setBounds(new Rectangle2D.Double(0, 0, bufImage.getWidth(),
 			bufImage.getHeight()));
 		figure.setBufferedImage(bufImage);
+		// NB: Make sure the cached image layer is redrawn, along with the
+		// overlays drawn from the pixels of the plane.
+		canvas.damage(figure, figure.getDrawingArea());
+		canvas.damagePlaneFigures();
 	}
 
 	// -- FigureView methods --
 
 	@Override
-	public ImageFigure getFigure() {
+	public ZoomImageFigure getFigure() {
 		return figure;
 	}
 
@@ -32,24 +32,42 @@
 package net.imagej.ui.swing.viewer.image;
 
 import java.awt.BorderLayout;
+import java.awt.Color;
 import java.awt.Cursor;
 import java.awt.Dimension;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
 import java.awt.Image;
 import java.awt.Point;
 import java.awt.Rectangle;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.AdjustmentEvent;
 import java.awt.event.AdjustmentListener;
 import java.awt.event.ComponentEvent;
 import java.awt.event.ComponentListener;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseMotionAdapter;
+import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JViewport;
+import javax.swing.Timer;
 
 import net.imagej.Dataset;
 import net.imagej.DatasetService;
@@ -61,10 +79,14 @@ import net.imagej.display.ImageCanvas;
 import net.imagej.display.ImageDisplay;
 import net.imagej.display.ImageDisplayService;
 import net.imagej.display.OverlayView;
+import net.imagej.display.event.AxisPositionEvent;
 import net.imagej.display.event.DataViewDeselectedEvent;
 import net.imagej.display.event.DataViewSelectedEvent;
 import net.imagej.display.event.MouseCursorEvent;
 import net.imagej.display.event.PanZoomEvent;
+import net.imagej.event.OverlayRestructuredEvent;
+import net.imagej.event.OverlayUpdatedEvent;
+import net.imagej.overlay.Overlay;
 import net.imagej.ui.swing.overlay.FigureCreatedEvent;
 import net.imagej.ui.swing.overlay.JHotDrawAdapter;
 import net.imagej.ui.swing.overlay.JHotDrawService;
@@ -74,7 +96,6 @@ import net.imglib2.RandomAccess;
 import net.imglib2.display.screenimage.awt.ARGBScreenImage;
 import net.imglib2.type.numeric.RealType;
 
-import org.jhotdraw.draw.DefaultDrawing;
 import org.jhotdraw.draw.DefaultDrawingEditor;
 import org.jhotdraw.draw.DefaultDrawingView;
 import org.jhotdraw.draw.Drawing;
@@ -113,17 +134,73 @@ public class JHotDrawImageCanvas extends JPanel implements AdjustmentListener,
 	ComponentListener, FigureSelectionListener, Disposable
 {
 
+	/** Default capacity of the cache of recently visible figure views. */
+	public static final int DEFAULT_FIGURE_CACHE_CAPACITY = 256;
+
+	/** Refresh interval of the performance overlay, in milliseconds. */
+	private static final int METRICS_OVERLAY_REFRESH = 500;
+
 	private final SwingImageDisplayViewer displayViewer;
 
-	private final Drawing drawing;
+	private final LayeredDrawing drawing;
+	private final ZoomBlitter blitter = new ZoomBlitter();
 	private final DefaultDrawingView drawingView;
 	private final DrawingEditor drawingEditor;
 	private final ToolDelegator toolDelegator;
+	private final DamageTracker damageTracker;
+
+	private final RenderMetrics metrics = new RenderMetrics();
+	private boolean metricsOverlayVisible;
+	private Timer metricsOverlayTimer;
+	private Rectangle metricsOverlayBounds;
 
 	private final JScrollPane scrollPane;
 
+	/** Figure views of the data views visible at the current position. */
 	private final List<FigureView> figureViews = new ArrayList<>();
 
+	/** Fast lookup of the figure views in {@link #figureViews}. */
+	private final Map<DataView, FigureView> figureViewMap =
+		new IdentityHashMap<>();
+
+	/**
+	 * Figure views of overlays which recently left the current plane, in least
+	 * recently used order. Their figures are detached from the drawing, but kept
+	 * around so that scrubbing back and forth does not recreate them.
+	 */
+	private final LinkedHashMap<DataView, FigureView> cachedFigureViews =
+		new LinkedHashMap<>(16, 0.75f, true);
+
+	private int figureCacheCapacity = DEFAULT_FIGURE_CACHE_CAPACITY;
+
+	/** Index of overlay views by the plane they are pinned to. */
+	private final OverlayPositionIndex positionIndex =
+		new OverlayPositionIndex();
+
+	/** The plane whose overlays are currently materialized. */
+	private OverlayPositionIndex.Plane currentPlane;
+
+	/** Overlay views whose overlay changed since the last plane sync. */
+	private final Set<OverlayView> movedViews =
+		Collections.newSetFromMap(new IdentityHashMap<OverlayView, Boolean>());
+
+	/** Whether an update of the canvas to match the UI is queued. */
+	private final AtomicBoolean canvasSyncQueued = new AtomicBoolean();
+
+	/** Whether an update of the UI to match the canvas is queued. */
+	private final AtomicBoolean uiSyncQueued = new AtomicBoolean();
+
+	private RenderingPolicy renderingPolicy = new RenderingPolicy();
+
+	/** Whether the user is currently navigating the view. */
+	private boolean interacting;
+
+	/** Whether {@link #setSelected} is changing the selection of views. */
+	private boolean selectingViews;
+
+	/** Switches back to the idle rendering hints after the idle delay. */
+	private final Timer idleTimer;
+
 	private final List<EventSubscriber<?>> subscribers;
 
 	@Parameter
@@ -151,7 +228,7 @@ public class JHotDrawImageCanvas extends JPanel implements AdjustmentListener,
 		displayViewer.getDisplay().getContext().inject(this);
 		this.displayViewer = displayViewer;
 
-		drawing = new DefaultDrawing(); // or QuadTreeDrawing?
+		drawing = new LayeredDrawing();
 
 		drawingView = new DefaultDrawingView() {
 
@@ -173,8 +250,27 @@ public class JHotDrawImageCanvas extends JPanel implements AdjustmentListener,
 				final int extra = 2;
 				return new Dimension(x + extra, y + extra);
 			}
+
+			@Override
+			public void repaint(final long tm, final int x, final int y,
+				final int width, final int height)
+			{
+				// NB: Route repaints through the damage tracker, once it exists.
+				if (damageTracker == null) super.repaint(tm, x, y, width, height);
+				else damageTracker.damage(new Rectangle(x, y, width, height));
+			}
+
+			@Override
+			protected void paintComponent(final Graphics g) {
+				final long start = metrics.start();
+				super.paintComponent(g);
+				metrics.record(RenderMetrics.PAINT, start);
+				metrics.frame();
+				if (metricsOverlayVisible) paintMetricsOverlay((Graphics2D) g);
+			}
 		};
 		drawingView.setDrawing(drawing);
+		damageTracker = new DamageTracker(drawingView);
 
 		drawingEditor = new DefaultDrawingEditor();
 		drawingEditor.add(drawingView);
@@ -195,6 +291,24 @@ public class JHotDrawImageCanvas extends JPanel implements AdjustmentListener,
 
 		drawingView.addFigureSelectionListener(this);
 		drawingView.addComponentListener(this);
+
+		drawing.setRenderingHints(renderingPolicy.getIdleHints());
+		idleTimer = new Timer(renderingPolicy.getIdleDelay(), new ActionListener() {
+
+			@Override
+			public void actionPerformed(final ActionEvent e) {
+				interacting = false;
+				drawing.setRenderingHints(renderingPolicy.getIdleHints());
+			}
+		});
+		idleTimer.setRepeats(false);
+		drawingView.addMouseMotionListener(new MouseMotionAdapter() {
+
+			@Override
+			public void mouseDragged(final MouseEvent e) {
+				interact();
+			}
+		});
 	}
 
 	// -- JHotDrawImageCanvas methods --
@@ -211,6 +325,134 @@ public class JHotDrawImageCanvas extends JPanel implements AdjustmentListener,
 		return drawingEditor;
 	}
 
+	/** Gets the registry of rendering stage timings of this canvas. */
+	public RenderMetrics getMetrics() {
+		return metrics;
+	}
+
+	/** Gets whether the performance overlay is shown on top of the image. */
+	public boolean isMetricsOverlayVisible() {
+		return metricsOverlayVisible;
+	}
+
+	/**
+	 * Shows or hides an overlay with the frame rate, the timings of the
+	 * rendering stages, the number of figures and the image buffer memory.
+	 */
+	public void setMetricsOverlayVisible(final boolean visible) {
+		if (visible == metricsOverlayVisible) return;
+		metricsOverlayVisible = visible;
+		if (visible) {
+			metricsOverlayTimer = new Timer(METRICS_OVERLAY_REFRESH,
+				new ActionListener() {
+
+					@Override
+					public void actionPerformed(final ActionEvent e) {
+						if (metricsOverlayBounds != null) {
+							drawingView.repaint(metricsOverlayBounds);
+						}
+					}
+				});
+			metricsOverlayTimer.start();
+		}
+		else {
+			metricsOverlayTimer.stop();
+			metricsOverlayTimer = null;
+		}
+		drawingView.repaint();
+	}
+
+	/**
+	 * Gets the zoom factor below which figures smaller than a screen pixel are
+	 * not drawn, but shown as a density layer instead.
+	 */
+	public double getCullingZoomThreshold() {
+		return drawing.getZoomThreshold();
+	}
+
+	/**
+	 * Sets the zoom factor below which figures smaller than a screen pixel are
+	 * not drawn, but shown as a density layer instead. A threshold of 0 draws
+	 * all figures at every zoom level.
+	 *
+	 * @see CullingDrawing
+	 */
+	public void setCullingZoomThreshold(final double threshold) {
+		drawing.setZoomThreshold(threshold);
+		drawingView.repaint();
+	}
+
+	/** Gets the rendering hints policy of this canvas. */
+	public RenderingPolicy getRenderingPolicy() {
+		return renderingPolicy;
+	}
+
+	/**
+	 * Sets which rendering hints this canvas uses while the user navigates the
+	 * view, and once it is at rest.
+	 */
+	public void setRenderingPolicy(final RenderingPolicy policy) {
+		if (policy == null) throw new IllegalArgumentException("Null policy");
+		renderingPolicy = policy;
+		idleTimer.setInitialDelay(policy.getIdleDelay());
+		drawing.setRenderingHints(interacting ? policy.getInteractiveHints()
+			: policy.getIdleHints());
+	}
+
+	/** Gets whether the view is drawn with the interactive rendering hints. */
+	public boolean isInteracting() {
+		return interacting;
+	}
+
+	/**
+	 * Gets the blitter with which image planes are drawn at integer
+	 * magnifications.
+	 */
+	public ZoomBlitter getBlitter() {
+		return blitter;
+	}
+
+	/** Gets the color of the pixel grid shown at high zoom, or null if none. */
+	public Color getPixelGridColor() {
+		return blitter.getGridColor();
+	}
+
+	/**
+	 * Sets the color of the pixel grid shown at integer magnifications of at
+	 * least {@link ZoomBlitter#getMinGridZoom()}, or null to show no grid.
+	 */
+	public void setPixelGridColor(final Color color) {
+		blitter.setGridColor(color);
+		drawing.invalidateImageLayer();
+		drawingView.repaint();
+	}
+
+	/** Gets the tracker through which the drawing view is repainted. */
+	public DamageTracker getDamageTracker() {
+		return damageTracker;
+	}
+
+	/**
+	 * Gets the maximum number of figure views kept alive for overlays which are
+	 * not visible at the current position.
+	 */
+	public int getFigureCacheCapacity() {
+		return figureCacheCapacity;
+	}
+
+	/**
+	 * Sets the maximum number of figure views kept alive for overlays which are
+	 * not visible at the current position. Overlays beyond this limit have their
+	 * figures recreated when they become visible again.
+	 */
+	public void setFigureCacheCapacity(final int capacity) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("Negative capacity: " + capacity);
+		}
+		figureCacheCapacity = capacity;
+		trimFigureCache();
+	}
+
 	public void addEventDispatcher(final AWTInputEventDispatcher dispatcher) {
 		dispatcher.register(drawingView, true, true);
 	}
@@ -220,6 +462,244 @@ public class JHotDrawImageCanvas extends JPanel implements AdjustmentListener,
 		dispatcher.register(drawingView);
 	}
 
+	/**
+	 * Attaches many overlays to the display at once.
+	 * <p>
+	 * Unlike adding overlays one at a time, which updates and repaints the
+	 * display after each one, this method creates the data views and the figure
+	 * views of all overlays in a single pass, adds the figures to the drawing as
+	 * one change, and then issues a single {@link ImageDisplay#update()} and a
+	 * single repaint.
+	 * </p>
+	 * <p>
+	 * Overlays lacking a non-XY axis of the display are pinned to the current
+	 * position along it, as for overlays drawn with a tool. Figures are only
+	 * created for the overlays visible at the current position.
+	 * </p>
+	 * 
+	 * @param overlays the overlays to attach
+	 * @return the newly created overlay views
+	 */
+	public List<OverlayView> addOverlays(
+		final Collection<? extends Overlay> overlays)
+	{
+		if (!threadService.isDispatchThread()) {
+			final List<OverlayView> result = new ArrayList<>();
+			try {
+				threadService.invoke(new Runnable() {
+
+					@Override
+					public void run() {
+						result.addAll(addOverlays(overlays));
+					}
+				});
+			}
+			catch (final InterruptedException exc) {
+				log.error(exc);
+			}
+			catch (final InvocationTargetException exc) {
+				log.error(exc);
+			}
+			return result;
+		}
+
+		final ImageDisplay display = getDisplay();
+		final List<OverlayView> views = new ArrayList<>(overlays.size());
+		for (final Overlay overlay : overlays) {
+			final DataView view = imageDisplayService.createDataView(overlay);
+			if (!(view instanceof OverlayView)) {
+				log.error("Unexpected data view: " + view);
+				continue;
+			}
+			final OverlayView overlayView = (OverlayView) view;
+			for (int i = 0; i < display.numDimensions(); i++) {
+				final AxisType axisType = display.axis(i).type();
+				if (axisType.isXY()) continue;
+				if (overlay.dimensionIndex(axisType) < 0) {
+					final long pos = display.getLongPosition(axisType);
+					overlayView.setPosition(pos, axisType);
+				}
+			}
+			views.add(overlayView);
+		}
+		if (views.isEmpty()) return views;
+
+		final boolean indexed = !positionIndex.isStale(display);
+		display.addAll(views);
+		if (indexed) {
+			for (final OverlayView view : views) {
+				positionIndex.add(view);
+			}
+		}
+
+		// create the figures of the visible overlays, detached from the drawing
+		final List<OverlayFigureView> newFigureViews = new ArrayList<>();
+		final List<Figure> figures = new ArrayList<>();
+		for (final OverlayView view : views) {
+			if (!display.isVisible(view)) continue;
+			final OverlayFigureView figureView =
+				new OverlayFigureView(displayViewer, view, null, false);
+			newFigureViews.add(figureView);
+			figures.add(figureView.getFigure());
+		}
+
+		// attach them to the drawing as a single change
+		drawing.addFigures(figures);
+		for (final OverlayFigureView figureView : newFigureViews) {
+			figureView.setShown(true);
+			addFigureView(figureView);
+		}
+
+		display.update();
+		drawingView.repaint();
+		return views;
+	}
+
+	/**
+	 * Removes many overlays from the display at once.
+	 * <p>
+	 * Unlike removing overlays one at a time, which searches the display and the
+	 * drawing and updates and repaints the display for each one, this method
+	 * removes the data views of all given overlays from the display in a single
+	 * pass, detaches their figures from the drawing as one change, and then
+	 * issues a single {@link ImageDisplay#update()} and a single repaint.
+	 * </p>
+	 * 
+	 * @param overlays the overlays to remove
+	 * @return the number of data views removed
+	 */
+	public int removeOverlays(final Collection<? extends Overlay> overlays) {
+		if (!threadService.isDispatchThread()) {
+			final int[] result = new int[1];
+			try {
+				threadService.invoke(new Runnable() {
+
+					@Override
+					public void run() {
+						result[0] = removeOverlays(overlays);
+					}
+				});
+			}
+			catch (final InterruptedException exc) {
+				log.error(exc);
+			}
+			catch (final InvocationTargetException exc) {
+				log.error(exc);
+			}
+			return result[0];
+		}
+
+		final ImageDisplay display = getDisplay();
+		final Set<Object> doomed =
+			Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+		doomed.addAll(overlays);
+		final Set<DataView> views =
+			Collections.newSetFromMap(new IdentityHashMap<DataView, Boolean>());
+		for (final DataView view : display) {
+			if (doomed.contains(view.getData())) views.add(view);
+		}
+		if (views.isEmpty()) return 0;
+		display.removeAll(views);
+
+		// detach the figures of the removed views as a single change
+		final List<FigureView> removed = new ArrayList<>();
+		final List<Figure> figures = new ArrayList<>();
+		final List<FigureView> staying = new ArrayList<>(figureViews.size());
+		for (final FigureView figureView : figureViews) {
+			if (!views.contains(figureView.getDataView())) {
+				staying.add(figureView);
+				continue;
+			}
+			figureViewMap.remove(figureView.getDataView());
+			if (figureView instanceof OverlayFigureView) {
+				((OverlayFigureView) figureView).detach();
+			}
+			removed.add(figureView);
+			figures.add(figureView.getFigure());
+		}
+		figureViews.clear();
+		figureViews.addAll(staying);
+		final Iterator<FigureView> iter = cachedFigureViews.values().iterator();
+		while (iter.hasNext()) {
+			final FigureView figureView = iter.next();
+			if (views.contains(figureView.getDataView())) {
+				iter.remove();
+				removed.add(figureView);
+			}
+		}
+		drawing.removeFigures(figures);
+		for (final FigureView figureView : removed) {
+			figureView.dispose();
+		}
+		for (final DataView view : views) {
+			view.dispose();
+		}
+
+		display.update();
+		drawingView.repaint();
+		return views.size();
+	}
+
+	/**
+	 * Selects and deselects the given views of the display as a single change.
+	 * <p>
+	 * Changing views one at a time makes each of them publish an event, upon
+	 * which the canvas changes the selection of the drawing view, which in turn
+	 * syncs every view of the display. Here, these syncs are suppressed while
+	 * the views change, and the drawing view's selection is updated once.
+	 * </p>
+	 *
+	 * @param toSelect the views to select
+	 * @param toDeselect the views to deselect
+	 */
+	public void setSelected(final Collection<? extends DataView> toSelect,
+		final Collection<? extends DataView> toDeselect)
+	{
+		if (!threadService.isDispatchThread()) {
+			try {
+				threadService.invoke(new Runnable() {
+
+					@Override
+					public void run() {
+						setSelected(toSelect, toDeselect);
+					}
+				});
+			}
+			catch (final InterruptedException exc) {
+				log.error(exc);
+			}
+			catch (final InvocationTargetException exc) {
+				log.error(exc);
+			}
+			return;
+		}
+
+		selectingViews = true;
+		try {
+			for (final DataView view : toDeselect) {
+				view.setSelected(false);
+			}
+			for (final DataView view : toSelect) {
+				view.setSelected(true);
+			}
+			for (final DataView view : toDeselect) {
+				final FigureView figureView = getFigureView(view);
+				if (figureView != null) {
+					drawingView.removeFromSelection(figureView.getFigure());
+				}
+			}
+			final List<Figure> figures = new ArrayList<>(toSelect.size());
+			for (final DataView view : toSelect) {
+				final FigureView figureView = getFigureView(view);
+				if (figureView != null) figures.add(figureView.getFigure());
+			}
+			drawingView.addToSelection(figures);
+		}
+		finally {
+			selectingViews = false;
+		}
+	}
+
 	/**
 	 * Captures the current view of data displayed in the canvas, including all
 	 * JHotDraw embellishments.
@@ -277,7 +757,8 @@ public class JHotDrawImageCanvas extends JPanel implements AdjustmentListener,
 
 	@Override
 	public void adjustmentValueChanged(final AdjustmentEvent e) {
-		syncCanvas();
+		interact();
+		queueSyncCanvas();
 	}
 
 	// -- FigureSelectionListener methods --
@@ -290,6 +771,7 @@ public class JHotDrawImageCanvas extends JPanel implements AdjustmentListener,
 	 */
 	@Override
 	public void selectionChanged(FigureSelectionEvent event) {
+		if (selectingViews) return; // the views are changed already
 		final Set<Figure> newSelection = event.getNewSelection();
 		final Set<Figure> oldSelection = event.getOldSelection();
 		for (final DataView view : getDisplay()) {
@@ -310,7 +792,7 @@ public class JHotDrawImageCanvas extends JPanel implements AdjustmentListener,
 
 	@Override
 	public void componentResized(ComponentEvent e) {
-		syncCanvas();
+		queueSyncCanvas();
 	}
 
 	@Override
@@ -332,6 +814,7 @@ public class JHotDrawImageCanvas extends JPanel implements AdjustmentListener,
 
 	@EventHandler
 	protected void onEvent(final DataViewSelectedEvent event) {
+		if (selectingViews) return; // synced once by setSelected
 		final DataView view = event.getView();
 		final FigureView figureView = getFigureView(view);
 		if (figureView == null) return; // not one of this canvas's views
@@ -344,6 +827,7 @@ public class JHotDrawImageCanvas extends JPanel implements AdjustmentListener,
 
 	@EventHandler
 	protected void onEvent(final DataViewDeselectedEvent event) {
+		if (selectingViews) return; // synced once by setSelected
 		final DataView view = event.getView();
 		final FigureView figureView = getFigureView(view);
 		if (figureView == null) return; // not one of this canvas's views
@@ -354,6 +838,16 @@ public class JHotDrawImageCanvas extends JPanel implements AdjustmentListener,
 		}
 	}
 
+	@EventHandler
+	protected void onEvent(final OverlayUpdatedEvent event) {
+		overlayChanged(event.getObject());
+	}
+
+	@EventHandler
+	protected void onEvent(final OverlayRestructuredEvent event) {
+		overlayChanged(event.getObject());
+	}
+
 	@EventHandler
 	protected void onEvent(final ToolActivatedEvent event) {
 		final Tool iTool = event.getTool();
@@ -372,7 +866,16 @@ public class JHotDrawImageCanvas extends JPanel implements AdjustmentListener,
 		final ImageCanvas canvas = event.getCanvas();
 		if (canvas != getDisplay().getCanvas()) return; // not this canvas
 
-		syncUI();
+		interact();
+		queueSyncUI();
+	}
+
+	@EventHandler
+	protected void onEvent(final AxisPositionEvent event) {
+		if (event.getDisplay() != getDisplay()) return; // not this canvas
+
+		interact();
+		damagePlaneFigures();
 	}
 
 	@EventHandler
@@ -407,52 +910,103 @@ public class JHotDrawImageCanvas extends JPanel implements AdjustmentListener,
 		}
 		final OverlayFigureView figureView =
 			new OverlayFigureView(displayViewer, overlay, event.getFigure());
-		figureViews.add(figureView);
+		addFigureView(figureView);
+		final boolean indexed = !positionIndex.isStale(display);
 		display.add(overlay);
+		if (indexed) positionIndex.add(overlay);
 		display.update();
 	}
 
 	// -- Internal methods --
 
 	void rebuild() {
-		for (final DataView dataView : getDisplay()) {
-			FigureView figureView = getFigureView(dataView);
-			if (figureView == null) {
-				if (dataView instanceof DatasetView) {
-					figureView =
-						new DatasetFigureView(this.displayViewer, (DatasetView) dataView);
-				}
-				else if (dataView instanceof OverlayView) {
-					figureView =
-						new OverlayFigureView(this.displayViewer, (OverlayView) dataView);
-				}
-				else {
-					log.error("Don't know how to make a figure view for " +
-						dataView.getClass().getName());
-					continue;
-				}
-				figureViews.add(figureView);
+		final ImageDisplay display = getDisplay();
+		final Set<DataView> dataViews =
+			Collections.newSetFromMap(new IdentityHashMap<DataView, Boolean>());
+		for (final DataView dataView : display) {
+			dataViews.add(dataView);
+			if (getFigureView(dataView) != null) continue;
+			if (dataView instanceof DatasetView) {
+				addFigureView(new DatasetFigureView(this.displayViewer,
+					(DatasetView) dataView));
+			}
+			else if (dataView instanceof OverlayView) {
+				// NB: Overlay figures are created on demand by syncPlane().
+				continue;
+			}
+			else {
+				log.error("Don't know how to make a figure view for " +
+					dataView.getClass().getName());
 			}
 		}
-		int idx = 0;
-		while (idx < figureViews.size()) {
-			final FigureView figureView = figureViews.get(idx);
-			if (!getDisplay().contains(figureView.getDataView())) {
-				figureViews.remove(idx);
+		final List<FigureView> staying = new ArrayList<>(figureViews.size());
+		for (final FigureView figureView : figureViews) {
+			if (!dataViews.contains(figureView.getDataView())) {
+				figureViewMap.remove(figureView.getDataView());
 				figureView.dispose();
 			}
 			else {
-				idx++;
+				staying.add(figureView);
+			}
+		}
+		if (staying.size() != figureViews.size()) {
+			figureViews.clear();
+			figureViews.addAll(staying);
+		}
+		final Iterator<FigureView> iter = cachedFigureViews.values().iterator();
+		while (iter.hasNext()) {
+			final FigureView figureView = iter.next();
+			if (!dataViews.contains(figureView.getDataView())) {
+				iter.remove();
+				figureView.dispose();
 			}
 		}
+		positionIndex.rebuild(display);
+		currentPlane = null;
+		syncPlane();
 	}
 
 	void update() {
+		syncPlane();
 		for (final FigureView figureView : figureViews) {
 			figureView.update();
 		}
 	}
 
+	/**
+	 * Marks a region of the given figure as changed, for changes of which the
+	 * figure does not notify its listeners.
+	 *
+	 * @param figure the changed figure
+	 * @param area the changed region, in drawing coordinates
+	 */
+	void damage(final Figure figure, final Rectangle2D.Double area) {
+		drawing.damage(figure, area);
+		damageTracker.damage(area);
+	}
+
+	/**
+	 * Marks the figures which depend on the plane being shown as changed, after
+	 * another plane was shown or its pixels changed.
+	 *
+	 * @see PlaneDependentFigure
+	 */
+	void damagePlaneFigures() {
+		if (!threadService.isDispatchThread()) {
+			// NB: The drawing's children are changed on the EDT.
+			threadService.queue(new Runnable() {
+
+				@Override
+				public void run() {
+					damagePlaneFigures();
+				}
+			});
+			return;
+		}
+		final Rectangle2D.Double area = drawing.damagePlaneFigures();
+		if (area != null) damageTracker.damage(area);
+	}
+
 	// -- Helper methods --
 
 	private ImageDisplay getDisplay() {
@@ -460,23 +1014,181 @@ public class JHotDrawImageCanvas extends JPanel implements AdjustmentListener,
 	}
 
 	private FigureView getFigureView(final DataView dataView) {
+		return figureViewMap.get(dataView);
+	}
+
+	private void addFigureView(final FigureView figureView) {
+		figureViews.add(figureView);
+		figureViewMap.put(figureView.getDataView(), figureView);
+	}
+
+	/**
+	 * Creates figure views for overlays which became visible at the current
+	 * position, and releases those of overlays which are no longer visible.
+	 * <p>
+	 * Only the overlays shown so far, those of a new plane and those which moved
+	 * since the last call are examined, so the cost of a plane change does not
+	 * depend on the total number of overlays.
+	 * </p>
+	 */
+	private void syncPlane() {
+		final ImageDisplay display = getDisplay();
+		boolean reindexed = false;
+		final List<OverlayView> moved = new ArrayList<>(movedViews.size());
+		if (positionIndex.isStale(display)) {
+			positionIndex.rebuild(display);
+			reindexed = true;
+		}
+		else {
+			for (final OverlayView overlayView : movedViews) {
+				if (positionIndex.refile(overlayView)) moved.add(overlayView);
+			}
+		}
+		movedViews.clear();
+		final OverlayPositionIndex.Plane plane = positionIndex.currentPlane(display);
+		final boolean planeChanged = reindexed || !plane.equals(currentPlane);
+		currentPlane = plane;
+
+		// release overlays leaving the plane
+		final List<FigureView> staying = new ArrayList<>(figureViews.size());
 		for (final FigureView figureView : figureViews) {
-			if (figureView.getDataView() == dataView) return figureView;
+			final DataView dataView = figureView.getDataView();
+			if (dataView instanceof OverlayView && !display.isVisible(dataView)) {
+				release(figureView);
+			}
+			else staying.add(figureView);
+		}
+		if (staying.size() != figureViews.size()) {
+			figureViews.clear();
+			figureViews.addAll(staying);
+		}
+
+		// materialize overlays entering the plane
+		final Collection<OverlayView> entering =
+			planeChanged ? positionIndex.candidates(plane) : moved;
+		for (final OverlayView overlayView : entering) {
+			if (getFigureView(overlayView) != null) continue;
+			if (display.isVisible(overlayView)) materialize(overlayView);
 		}
-		return null;
 	}
 
-	/** Updates the {@link ImageCanvas} to match the UI. */
-	private void syncCanvas() {
-		sync(true);
+	/**
+	 * Makes a figure view for the given overlay view live, reusing a cached one
+	 * when available.
+	 */
+	private void materialize(final OverlayView overlayView) {
+		FigureView figureView = cachedFigureViews.remove(overlayView);
+		if (figureView == null) {
+			figureView = new OverlayFigureView(this.displayViewer, overlayView);
+		}
+		addFigureView(figureView);
 	}
 
-	/** Updates the UI to match the {@link ImageCanvas}. */
-	private void syncUI() {
-		sync(false);
+	/**
+	 * Detaches the figure of an overlay which left the current plane, keeping
+	 * its view in the cache of recently visible figure views. The caller is
+	 * responsible for removing it from {@link #figureViews}.
+	 */
+	private void release(final FigureView figureView) {
+		figureViewMap.remove(figureView.getDataView());
+		if (figureView instanceof OverlayFigureView) {
+			((OverlayFigureView) figureView).show(false);
+		}
+		cachedFigureViews.put(figureView.getDataView(), figureView);
+		trimFigureCache();
+	}
+
+	/** Disposes least recently visible figure views beyond the capacity. */
+	private void trimFigureCache() {
+		final Iterator<FigureView> iter = cachedFigureViews.values().iterator();
+		while (cachedFigureViews.size() > figureCacheCapacity && iter.hasNext()) {
+			final FigureView figureView = iter.next();
+			iter.remove();
+			figureView.dispose();
+		}
+	}
+
+	/**
+	 * Records that the views of the given overlay may have moved to another
+	 * plane, so that the next plane sync files them again.
+	 */
+	private void overlayChanged(final Overlay overlay) {
+		movedViews.addAll(positionIndex.views(overlay));
+	}
+
+	/**
+	 * Switches to the interactive rendering hints, and (re)starts the countdown
+	 * to switching back to the idle ones.
+	 */
+	private void interact() {
+		if (!threadService.isDispatchThread()) {
+			threadService.queue(new Runnable() {
+
+				@Override
+				public void run() {
+					interact();
+				}
+			});
+			return;
+		}
+		if (!interacting) {
+			interacting = true;
+			drawing.setRenderingHints(renderingPolicy.getInteractiveHints());
+		}
+		idleTimer.restart();
+	}
+
+	/**
+	 * Queues an update of the {@link ImageCanvas} to match the UI, unless one is
+	 * queued already. This way, a burst of scroll bar adjustments during one
+	 * event dispatch cycle results in a single sync with the final offset.
+	 */
+	private void queueSyncCanvas() {
+		if (!canvasSyncQueued.compareAndSet(false, true)) return;
+		threadService.queue(new Runnable() {
+
+			@Override
+			public void run() {
+				canvasSyncQueued.set(false);
+				sync(true);
+			}
+		});
+	}
+
+	/**
+	 * Queues an update of the UI to match the {@link ImageCanvas}, unless one is
+	 * queued already.
+	 * <p>
+	 * NB: Syncing the canvas to the UI publishes a {@link PanZoomEvent}, and
+	 * syncing the UI to the canvas adjusts the scroll bars. Rather than bouncing
+	 * back synchronously, each direction is queued at most once, and the queued
+	 * sync returns early once both sides agree. So the feedback settles within
+	 * the next dispatch cycle, instead of recursing.
+	 * </p>
+	 */
+	private void queueSyncUI() {
+		if (!uiSyncQueued.compareAndSet(false, true)) return;
+		threadService.queue(new Runnable() {
+
+			@Override
+			public void run() {
+				uiSyncQueued.set(false);
+				sync(false);
+			}
+		});
 	}
 
 	private void sync(final boolean updateCanvas) {
+		final long start = metrics.start();
+		try {
+			syncViewport(updateCanvas);
+		}
+		finally {
+			metrics.record(RenderMetrics.SYNC, start);
+		}
+	}
+
+	private void syncViewport(final boolean updateCanvas) {
 		final ImageCanvas canvas = getDisplay().getCanvas();
 
 		// threading sanity check
@@ -548,7 +1260,57 @@ public class JHotDrawImageCanvas extends JPanel implements AdjustmentListener,
 		}
 	}
 
+	/** Paints the performance overlay in the top left corner of the view. */
+	private void paintMetricsOverlay(final Graphics2D g) {
+		final List<String> lines = new ArrayList<>();
+		lines.add(String.format("%.1f fps", metrics.getFramesPerSecond()));
+		for (final Map.Entry<String, RenderMetrics.Histogram> entry : metrics
+			.histograms().entrySet())
+		{
+			final RenderMetrics.Histogram h = entry.getValue();
+			lines.add(String.format("%s: p50 %.2f ms, p99 %.2f ms", entry.getKey(),
+				h.p50(), h.p99()));
+		}
+		lines.add("figures: " + figureViews.size() + " live, " +
+			cachedFigureViews.size() + " cached, " + drawing.getChildCount() +
+			" drawn, " + drawing.getCulledCount() + " culled");
+		long bufferBytes = 0;
+		for (final FigureView figureView : figureViews) {
+			if (!(figureView instanceof DatasetFigureView)) continue;
+			final BufferedImage image =
+				((DatasetFigureView) figureView).getFigure().getBufferedImage();
+			if (image == null) continue;
+			bufferBytes += 4L * image.getWidth() * image.getHeight();
+		}
+		lines.add(String.format("buffers: %.1f MB", bufferBytes / 1048576d));
+
+		final FontMetrics fm = g.getFontMetrics();
+		final int lineHeight = fm.getHeight();
+		int width = 0;
+		for (final String line : lines) {
+			width = Math.max(width, fm.stringWidth(line));
+		}
+		final Rectangle visible = drawingView.getVisibleRect();
+		final int pad = 4;
+		final Rectangle bounds = new Rectangle(visible.x + pad, visible.y + pad,
+			width + 2 * pad, lines.size() * lineHeight + 2 * pad);
+		metricsOverlayBounds = bounds;
+
+		final Color oldColor = g.getColor();
+		g.setColor(new Color(0, 0, 0, 160));
+		g.fill(bounds);
+		g.setColor(Color.white);
+		int y = bounds.y + pad + fm.getAscent();
+		for (final String line : lines) {
+			g.drawString(line, bounds.x + pad, y);
+			y += lineHeight;
+		}
+		g.setColor(oldColor);
+	}
+
 	private void maybeResizeWindow() {
+		// NB: Without a screen, there is no work space to fit the window into.
+		if (GraphicsEnvironment.isHeadless()) return;
 		final Rectangle bounds = StaticSwingUtils.getWorkSpaceBounds();
 		final RealRect imageBounds = getDisplay().getPlaneExtents();
 		final ImageCanvas canvas = getDisplay().getCanvas();
@@ -587,7 +1349,11 @@ public class JHotDrawImageCanvas extends JPanel implements AdjustmentListener,
 	 */
 	@Override
 	public void dispose() {
+		if (metricsOverlayTimer != null) metricsOverlayTimer.stop();
+		idleTimer.stop();
 		figureViews.clear();
+		figureViewMap.clear();
+		cachedFigureViews.clear();
 	}
 
 }
@@ -0,0 +1,544 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.ui.swing.viewer.image;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jhotdraw.draw.AttributeKeys;
+import org.jhotdraw.draw.Figure;
+import org.jhotdraw.draw.event.FigureAdapter;
+import org.jhotdraw.draw.event.FigureEvent;
+import org.jhotdraw.draw.event.FigureListener;
+
+/**
+ * A {@link CullingDrawing} which caches its image planes and its overlays in
+ * two separate device-space layers, composited when painted.
+ * <p>
+ * Each layer tracks the regions invalidated by its own figures, and only
+ * those are redrawn: moving an overlay does not redraw the image plane, and
+ * showing another plane does not redraw the overlays, as long as the same
+ * overlays remain visible. When the view is panned, the layers are moved
+ * along, and only the newly exposed regions are drawn. Both layers are
+ * rebuilt when the view is zoomed, or when they cannot cover the region to
+ * paint. Figures whose appearance depends on the plane being shown are marked
+ * with {@link PlaneDependentFigure}, and redrawn with
+ * {@link #damagePlaneFigures} when the plane or its pixels change.
+ * </p>
+ * <p>
+ * When the canvas is filled with an opaque color, the image layer is kept
+ * opaque: it is cleared to the canvas color and copied rather than blended
+ * when painted.
+ * </p>
+ */
+public class LayeredDrawing extends CullingDrawing {
+
+	private static final long serialVersionUID = 1L;
+
+	/** Largest layer, in pixels, beyond which figures are drawn directly. */
+	private static final long MAX_LAYER_PIXELS = 16 * 1024 * 1024;
+
+	/** Margin, in device pixels, added around invalidated areas. */
+	private static final int MARGIN = 2;
+
+	private transient Layer imageLayer = new Layer();
+	private transient Layer overlayLayer = new Layer();
+	private transient FigureListener layerHandler = new LayerHandler();
+
+	/** Device transform with which the layers were drawn. */
+	private transient AffineTransform layerTransform;
+
+	/** Region of device space covered by the layers. */
+	private transient Rectangle layerBounds;
+
+	/** Layer being drawn by {@link #drawFigures}, if any. */
+	private transient Layer drawingLayer;
+
+	/** Number of figures culled during the last draw of the overlay layer. */
+	private int overlayCulledCount;
+
+	/** Number of children which belong to the overlay layer. */
+	private int overlayCount;
+
+	/** Children which depend on the plane being shown. */
+	private transient List<Figure> planeFigures = new ArrayList<>();
+
+	// -- LayeredDrawing methods --
+
+	/** Marks the whole image layer as needing to be redrawn. */
+	public void invalidateImageLayer() {
+		invalidate(imageLayer);
+	}
+
+	/** Marks the whole overlay layer as needing to be redrawn. */
+	public void invalidateOverlayLayer() {
+		invalidate(overlayLayer);
+	}
+
+	/**
+	 * Marks a region of the layer the given figure belongs to as needing to be
+	 * redrawn. Needed only for changes of which the figure does not notify its
+	 * listeners.
+	 *
+	 * @param figure the changed figure
+	 * @param area the changed region, in drawing coordinates
+	 */
+	public void damage(final Figure figure, final Rectangle2D.Double area) {
+		final Layer layer = isImage(figure) ? imageLayer : overlayLayer;
+		synchronized (layer) {
+			if (layer.invalid) return;
+			if (layer.dirty == null) layer.dirty = (Rectangle2D.Double) area.clone();
+			else layer.dirty.add(area);
+		}
+	}
+
+	/**
+	 * Marks the areas of the {@link PlaneDependentFigure}s as needing to be
+	 * redrawn, after another plane was shown or its pixels changed.
+	 *
+	 * @return the union of their drawing areas, or null if there are none
+	 */
+	public Rectangle2D.Double damagePlaneFigures() {
+		Rectangle2D.Double union = null;
+		for (final Figure figure : planeFigures) {
+			final Rectangle2D.Double area = figure.getDrawingArea();
+			damage(figure, area);
+			if (union == null) union = area;
+			else union.add(area);
+		}
+		return union;
+	}
+
+	// -- CullingDrawing methods --
+
+	@Override
+	public void setZoomThreshold(final double zoomThreshold) {
+		super.setZoomThreshold(zoomThreshold);
+		invalidateOverlayLayer();
+	}
+
+	@Override
+	public int getCulledCount() {
+		return overlayCulledCount;
+	}
+
+	@Override
+	public void setRenderingHints(final RenderingHints hints) {
+		final RenderingHints oldHints = getRenderingHints();
+		super.setRenderingHints(hints);
+		if (getRenderingHints() == oldHints) return; // unchanged
+		invalidate(imageLayer);
+		invalidate(overlayLayer);
+	}
+
+	@Override
+	protected boolean isDrawn(final Figure figure) {
+		if (drawingLayer == null) return true;
+		return isImage(figure) == (drawingLayer == imageLayer);
+	}
+
+	// -- CompositeFigure methods --
+
+	@Override
+	public void basicAdd(final int index, final Figure figure) {
+		super.basicAdd(index, figure);
+		if (!isImage(figure)) overlayCount++;
+		if (figure instanceof PlaneDependentFigure) planeFigures.add(figure);
+		figure.addFigureListener(layerHandler);
+		damage(figure, figure.getDrawingArea());
+	}
+
+	@Override
+	public Figure basicRemoveChild(final int index) {
+		final Figure figure = super.basicRemoveChild(index);
+		if (!isImage(figure)) overlayCount--;
+		if (figure instanceof PlaneDependentFigure) planeFigures.remove(figure);
+		figure.removeFigureListener(layerHandler);
+		damage(figure, figure.getDrawingArea());
+		return figure;
+	}
+
+	@Override
+	public void basicRemoveAllChildren() {
+		for (final Figure figure : getChildren()) {
+			figure.removeFigureListener(layerHandler);
+		}
+		super.basicRemoveAllChildren();
+		overlayCount = 0;
+		planeFigures.clear();
+		invalidate(imageLayer);
+		invalidate(overlayLayer);
+	}
+
+	// -- Figure methods --
+
+	@Override
+	public void draw(final Graphics2D g) {
+		final RenderingHints hints = getRenderingHints();
+		if (hints != null) g.addRenderingHints(hints);
+		final AffineTransform tx = g.getTransform();
+		final Rectangle clip = g.getClipBounds();
+		if (clip == null) {
+			drawFigures(g);
+			return;
+		}
+		final Rectangle deviceClip = tx.createTransformedShape(clip).getBounds();
+		if (deviceClip.isEmpty()) return;
+		if (!prepareLayers(tx, deviceClip)) {
+			// NB: Too large to cache; e.g., printing.
+			drawFigures(g);
+			return;
+		}
+
+		final boolean overlays = overlayCount > 0;
+		drawLayer(imageLayer, g);
+		if (overlays) drawLayer(overlayLayer, g);
+		else invalidate(overlayLayer);
+
+		final Graphics2D g2 = (Graphics2D) g.create();
+		try {
+			// NB: The layers are in device space.
+			g2.setTransform(new AffineTransform());
+			composite(g2, imageLayer);
+			if (overlays) composite(g2, overlayLayer);
+		}
+		finally {
+			g2.dispose();
+		}
+	}
+
+	@Override
+	public LayeredDrawing clone() {
+		final LayeredDrawing that = (LayeredDrawing) super.clone();
+		// NB: The clone's children are copies, not added via basicAdd.
+		that.imageLayer = new Layer();
+		that.overlayLayer = new Layer();
+		that.layerHandler = that.new LayerHandler();
+		that.layerTransform = null;
+		that.layerBounds = null;
+		that.drawingLayer = null;
+		that.overlayCount = 0;
+		that.planeFigures = new ArrayList<>();
+		for (final Figure figure : that.getChildren()) {
+			figure.addFigureListener(that.layerHandler);
+			if (!that.isImage(figure)) that.overlayCount++;
+			if (figure instanceof PlaneDependentFigure) that.planeFigures.add(figure);
+		}
+		return that;
+	}
+
+	// -- Internal methods --
+
+	/**
+	 * Gets whether the given figure belongs to the image layer, rather than the
+	 * overlay layer. By default, this is the case for image planes.
+	 */
+	protected boolean isImage(final Figure figure) {
+		return figure instanceof ZoomImageFigure;
+	}
+
+	// -- Helper methods --
+
+	/**
+	 * Makes sure the layers cover the given device region with the given
+	 * transform, invalidating them otherwise.
+	 *
+	 * @return false if the layers would be too large
+	 */
+	private boolean prepareLayers(final AffineTransform tx,
+		final Rectangle deviceClip)
+	{
+		final Color background = canvasColor();
+		if (background != imageLayer.background &&
+			(background == null || !background.equals(imageLayer.background)))
+		{
+			// NB: The image layer changes type; reallocate the layers.
+			imageLayer.background = background;
+			layerTransform = null;
+		}
+		if (tx.equals(layerTransform) && layerBounds.contains(deviceClip)) {
+			return true;
+		}
+		if (scrollLayers(tx, deviceClip)) return true;
+		final Rectangle bounds = tx.equals(layerTransform) ? layerBounds.union(
+			deviceClip) : new Rectangle(deviceClip);
+		if ((long) bounds.width * bounds.height > MAX_LAYER_PIXELS) return false;
+		layerTransform = new AffineTransform(tx);
+		layerBounds = bounds;
+		imageLayer.allocate(bounds.width, bounds.height);
+		overlayLayer.allocate(bounds.width, bounds.height);
+		return true;
+	}
+
+	/**
+	 * Moves the layers along with a translation of the view by whole device
+	 * pixels, so that only the newly exposed regions need to be drawn.
+	 *
+	 * @return false if the transform changed otherwise, or if the layers are too
+	 *         small to cover the given device region
+	 */
+	private boolean scrollLayers(final AffineTransform tx,
+		final Rectangle deviceClip)
+	{
+		if (layerTransform == null) return false;
+		if (tx.getScaleX() != layerTransform.getScaleX() ||
+			tx.getScaleY() != layerTransform.getScaleY() ||
+			tx.getShearX() != layerTransform.getShearX() ||
+			tx.getShearY() != layerTransform.getShearY())
+		{
+			return false;
+		}
+		final double dx = tx.getTranslateX() - layerTransform.getTranslateX();
+		final double dy = tx.getTranslateY() - layerTransform.getTranslateY();
+		if (dx != Math.rint(dx) || dy != Math.rint(dy)) return false;
+
+		final Rectangle moved = new Rectangle(layerBounds);
+		moved.translate((int) dx, (int) dy);
+		Rectangle bounds = moved.union(deviceClip);
+		if (!fits(bounds)) bounds = new Rectangle(deviceClip);
+		if (!fits(bounds)) return false;
+		scroll(imageLayer, moved, bounds);
+		scroll(overlayLayer, moved, bounds);
+		layerTransform = new AffineTransform(tx);
+		layerBounds = bounds;
+		return true;
+	}
+
+	/** Gets whether the layer images are large enough for the given bounds. */
+	private boolean fits(final Rectangle bounds) {
+		final BufferedImage image = imageLayer.image;
+		return image != null && bounds.width <= image.getWidth() &&
+			bounds.height <= image.getHeight();
+	}
+
+	/**
+	 * Moves the contents of the given layer from one device region to another,
+	 * marking the rest of the new region as needing to be drawn.
+	 */
+	private void scroll(final Layer layer, final Rectangle from,
+		final Rectangle to)
+	{
+		final Rectangle overlap = from.intersection(to);
+		synchronized (layer) {
+			if (layer.invalid) return;
+			if (overlap.isEmpty() || !layer.exposed.isEmpty()) {
+				// NB: Regions exposed by an earlier move were not drawn yet.
+				layer.invalid = true;
+				layer.dirty = null;
+				layer.exposed.clear();
+				return;
+			}
+			addExposed(layer.exposed, to.x, to.y, to.width, overlap.y - to.y);
+			addExposed(layer.exposed, to.x, overlap.y + overlap.height, to.width,
+				to.y + to.height - overlap.y - overlap.height);
+			addExposed(layer.exposed, to.x, overlap.y, overlap.x - to.x,
+				overlap.height);
+			addExposed(layer.exposed, overlap.x + overlap.width, overlap.y, to.x +
+				to.width - overlap.x - overlap.width, overlap.height);
+		}
+		if (from.x == to.x && from.y == to.y) return;
+		final Graphics2D lg = layer.image.createGraphics();
+		try {
+			lg.copyArea(overlap.x - from.x, overlap.y - from.y, overlap.width,
+				overlap.height, from.x - to.x, from.y - to.y);
+		}
+		finally {
+			lg.dispose();
+		}
+	}
+
+	private static void addExposed(final List<Rectangle> exposed, final int x,
+		final int y, final int width, final int height)
+	{
+		if (width > 0 && height > 0) exposed.add(new Rectangle(x, y, width,
+			height));
+	}
+
+	/**
+	 * Gets the color with which the drawing view fills the whole view behind the
+	 * figures, or null if it is not uniform and opaque.
+	 */
+	private Color canvasColor() {
+		if (get(AttributeKeys.CANVAS_WIDTH) != null &&
+			get(AttributeKeys.CANVAS_HEIGHT) != null)
+		{
+			// NB: The view's background shows around the canvas.
+			return null;
+		}
+		final Color color = get(AttributeKeys.CANVAS_FILL_COLOR);
+		final Double opacity = get(AttributeKeys.CANVAS_FILL_OPACITY);
+		if (color == null || color.getAlpha() != 255) return null;
+		if (opacity != null && opacity < 1) return null;
+		return color;
+	}
+
+	/** Redraws the invalidated regions of the given layer. */
+	private void drawLayer(final Layer layer, final Graphics2D g) {
+		final List<Rectangle> regions = new ArrayList<>();
+		synchronized (layer) {
+			if (layer.invalid) regions.add(new Rectangle(layerBounds));
+			else {
+				regions.addAll(layer.exposed);
+				if (layer.dirty != null) {
+					final Rectangle region =
+						layerTransform.createTransformedShape(layer.dirty).getBounds();
+					region.grow(MARGIN, MARGIN);
+					regions.add(region);
+				}
+			}
+			layer.invalid = false;
+			layer.dirty = null;
+			layer.exposed.clear();
+		}
+		for (final Rectangle region : regions) {
+			Rectangle2D.intersect(region, layerBounds, region);
+			if (region.isEmpty()) continue;
+			region.translate(-layerBounds.x, -layerBounds.y);
+			drawRegion(layer, region, g);
+		}
+	}
+
+	/** Redraws the given region of the given layer, in layer coordinates. */
+	private void drawRegion(final Layer layer, final Rectangle region,
+		final Graphics2D g)
+	{
+		final Graphics2D lg = layer.image.createGraphics();
+		try {
+			lg.setRenderingHints(g.getRenderingHints());
+			if (layer.background == null) {
+				lg.setComposite(AlphaComposite.Clear);
+			}
+			else {
+				lg.setComposite(AlphaComposite.Src);
+				lg.setColor(layer.background);
+			}
+			lg.fillRect(region.x, region.y, region.width, region.height);
+			lg.setComposite(AlphaComposite.SrcOver);
+			lg.clipRect(region.x, region.y, region.width, region.height);
+			lg.translate(-layerBounds.x, -layerBounds.y);
+			lg.transform(layerTransform);
+			drawingLayer = layer;
+			drawFigures(lg);
+			if (layer == overlayLayer) overlayCulledCount = super.getCulledCount();
+		}
+		finally {
+			drawingLayer = null;
+			lg.dispose();
+		}
+	}
+
+	/**
+	 * Draws the given layer, with an identity transform. Opaque layers are
+	 * copied rather than blended.
+	 */
+	private void composite(final Graphics2D g, final Layer layer) {
+		g.setComposite(layer.background == null ? AlphaComposite.SrcOver
+			: AlphaComposite.Src);
+		final int w = layerBounds.width, h = layerBounds.height;
+		g.drawImage(layer.image, layerBounds.x, layerBounds.y, layerBounds.x + w,
+			layerBounds.y + h, 0, 0, w, h, null);
+	}
+
+	/** Marks the whole of the given layer as needing to be redrawn. */
+	private void invalidate(final Layer layer) {
+		synchronized (layer) {
+			layer.invalid = true;
+			layer.dirty = null;
+			layer.exposed.clear();
+		}
+	}
+
+	// -- Helper classes --
+
+	/** A cached layer of the drawing, in device space. */
+	private static class Layer {
+
+		private BufferedImage image;
+
+		/** Opaque color the layer is cleared to, or null if translucent. */
+		private Color background;
+
+		/** Whether the whole layer needs to be redrawn. */
+		private boolean invalid = true;
+
+		/** Region needing to be redrawn, in drawing coordinates, or null. */
+		private Rectangle2D.Double dirty;
+
+		/** Regions exposed by moving the layer, in device coordinates. */
+		private final List<Rectangle> exposed = new ArrayList<>();
+
+		/** Makes sure the layer has the given size, invalidating it. */
+		private synchronized void allocate(final int width, final int height) {
+			final int type = background == null ? BufferedImage.TYPE_INT_ARGB_PRE
+				: BufferedImage.TYPE_INT_RGB;
+			if (image == null || image.getType() != type ||
+				image.getWidth() < width || image.getHeight() < height)
+			{
+				image = new BufferedImage(Math.max(1, width), Math.max(1, height),
+					type);
+			}
+			invalid = true;
+			dirty = null;
+			exposed.clear();
+		}
+
+	}
+
+	/** Marks the areas invalidated by child figures in their layers. */
+	private class LayerHandler extends FigureAdapter {
+
+		@Override
+		public void areaInvalidated(final FigureEvent e) {
+			damage(e.getFigure(), e.getInvalidatedArea());
+		}
+
+		@Override
+		public void figureChanged(final FigureEvent e) {
+			damage(e.getFigure(), e.getInvalidatedArea());
+		}
+
+		@Override
+		public void attributeChanged(final FigureEvent e) {
+			damage(e.getFigure(), e.getFigure().getDrawingArea());
+		}
+
+	}
+
+}
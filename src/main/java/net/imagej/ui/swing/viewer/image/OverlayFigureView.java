@@ -31,6 +31,8 @@
 
 package net.imagej.ui.swing.viewer.image;
 
+import java.awt.geom.Rectangle2D;
+
 import net.imagej.display.DataView;
 import net.imagej.display.ImageDisplay;
 import net.imagej.display.OverlayView;
@@ -70,6 +72,18 @@ public class OverlayFigureView extends AbstractContextual implements FigureView
 
 	private boolean updatingOverlay = false;
 
+	/**
+	 * Whether the figure is part of the canvas's drawing. Tracked here, since
+	 * {@link Drawing#contains(Figure)} is a linear search.
+	 */
+	private boolean shown;
+
+	/**
+	 * Whether the canvas is removing the figure itself, so that its removal
+	 * from the drawing does not mean the user deleted the overlay.
+	 */
+	private boolean detached;
+
 	/**
 	 * Constructor to use to discover the figure to use for an overlay
 	 * 
@@ -92,6 +106,21 @@ public class OverlayFigureView extends AbstractContextual implements FigureView
 	 */
 	public OverlayFigureView(final SwingImageDisplayViewer displayViewer,
 		final OverlayView overlayView, final Figure figure)
+	{
+		this(displayViewer, overlayView, figure, true);
+	}
+
+	/**
+	 * Constructor allowing a newly created figure to be left out of the drawing,
+	 * so that the canvas can attach many figures at once.
+	 * 
+	 * @param displayViewer - hook to this display viewer
+	 * @param overlayView - represent this overlay
+	 * @param figure - draw using this figure, or null to create one
+	 * @param attach - whether to add a newly created figure to the drawing
+	 */
+	OverlayFigureView(final SwingImageDisplayViewer displayViewer,
+		final OverlayView overlayView, final Figure figure, final boolean attach)
 	{
 		setContext(displayViewer.getDisplay().getContext());
 		this.displayViewer = displayViewer;
@@ -106,15 +135,24 @@ public class OverlayFigureView extends AbstractContextual implements FigureView
 			this.figure = adapter.createDefaultFigure();
 			adapter.updateFigure(overlayView, this.figure);
 
-			final JHotDrawImageCanvas canvas = displayViewer.getCanvas();
-			final Drawing drawing = canvas.getDrawing();
-			drawing.add(this.figure);
+			if (attach) {
+				final JHotDrawImageCanvas canvas = displayViewer.getCanvas();
+				final Drawing drawing = canvas.getDrawing();
+				drawing.add(this.figure);
+				shown = true;
+			}
 		}
 		else {
 			this.figure = figure;
+			shown = displayViewer.getCanvas().getDrawing().contains(figure);
 		}
 		this.figure.addFigureListener(new FigureAdapter() {
 
+			@Override
+			public void figureAdded(final FigureEvent e) {
+				shown = true;
+			}
+
 			@Override
 			public void attributeChanged(final FigureEvent e) {
 				if (updatingFigure) return;
@@ -145,6 +183,8 @@ public class OverlayFigureView extends AbstractContextual implements FigureView
 
 			@Override
 			public void figureRemoved(final FigureEvent e) {
+				shown = false;
+				if (detached) return;
 				final ImageDisplay d = getDisplay();
 				if (d.isVisible(overlayView)) {
 					DataView view = getDataView();
@@ -168,18 +208,35 @@ public class OverlayFigureView extends AbstractContextual implements FigureView
 		return (ImageDisplay) display;
 	}
 
-	private void show(final boolean doShow) {
+	/** Records whether the canvas added the figure to its drawing. */
+	void setShown(final boolean shown) {
+		this.shown = shown;
+	}
+
+	/**
+	 * Records that the canvas is about to remove the figure from its drawing
+	 * along with its overlay view, which it has already removed from the
+	 * display.
+	 */
+	void detach() {
+		detached = true;
+	}
+
+	/** Adds the figure to, or removes it from, the canvas's drawing. */
+	void show(final boolean doShow) {
 		final JHotDrawImageCanvas canvas = displayViewer.getCanvas();
 		final Drawing drawing = canvas.getDrawing();
 		final Figure fig = getFigure();
 		if (doShow) {
-			if (!drawing.contains(fig)) {
+			if (!shown) {
 				drawing.add(fig);
+				shown = true;
 			}
 		}
 		else {
-			if (drawing.contains(fig)) {
+			if (shown) {
 				drawing.remove(fig);
+				shown = false;
 			}
 		}
 	}
@@ -196,6 +253,7 @@ public class OverlayFigureView extends AbstractContextual implements FigureView
 
 	@Override
 	public void dispose() {
+		if (detached && !shown) return;
 		figure.requestRemove();
 	}
 
@@ -203,8 +261,18 @@ public class OverlayFigureView extends AbstractContextual implements FigureView
 		if (updatingOverlay) return;
 		updatingFigure = true;
 		try {
+			final Rectangle2D.Double oldArea = shown ? figure.getDrawingArea() : null;
 			adapter.updateFigure(overlayView, figure);
 			show(getDisplay().isVisible(overlayView));
+			if (oldArea != null && shown) {
+				// NB: Some adapters change the geometry without notifying JHotDraw.
+				final Rectangle2D.Double newArea = figure.getDrawingArea();
+				if (!newArea.equals(oldArea)) {
+					final JHotDrawImageCanvas canvas = displayViewer.getCanvas();
+					canvas.damage(figure, oldArea);
+					canvas.damage(figure, newArea);
+				}
+			}
 		}
 		finally {
 			updatingFigure = false;
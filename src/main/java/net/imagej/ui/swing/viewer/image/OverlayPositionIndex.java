@@ -0,0 +1,246 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.ui.swing.viewer.image;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.imagej.axis.AxisType;
+import net.imagej.display.DataView;
+import net.imagej.display.ImageDisplay;
+import net.imagej.display.OverlayView;
+import net.imagej.overlay.Overlay;
+
+/**
+ * Index from non-XY plane positions to the {@link OverlayView}s pinned there.
+ * <p>
+ * Overlays which do not have a given non-XY axis are pinned to a single
+ * position along it. Such overlays are filed under that position, so that the
+ * overlays present on a plane can be looked up without asking the display
+ * about every one of them. Overlays which span one of the display's non-XY
+ * axes are kept aside, and are always candidates.
+ * </p>
+ */
+class OverlayPositionIndex {
+
+	/** The display's non-XY axes, in the order used by {@link Plane} keys. */
+	private final List<AxisType> axes = new ArrayList<>();
+
+	private final Map<Plane, Set<OverlayView>> planes = new HashMap<>();
+
+	private final Set<OverlayView> unpinned = newIdentitySet();
+
+	/** The plane each pinned view is filed under; null for unpinned views. */
+	private final Map<OverlayView, Plane> filed = new IdentityHashMap<>();
+
+	/** The views of each indexed overlay. */
+	private final Map<Overlay, List<OverlayView>> overlayViews =
+		new IdentityHashMap<>();
+
+	/** Number of data views of the display at the time of indexing. */
+	private int viewCount = -1;
+
+	/** Last data view of the display at the time of indexing. */
+	private DataView lastView;
+
+	/**
+	 * Checks whether the index no longer matches the given display, i.e. data
+	 * views were added or removed, or its axes changed, behind the index's back.
+	 * <p>
+	 * Additions are detected by the display's size and last view, so a removal
+	 * followed by an addition is noticed too. Overlay views which move to
+	 * another plane must be reported through {@link #refile(OverlayView)}.
+	 * </p>
+	 */
+	boolean isStale(final ImageDisplay display) {
+		final int size = display.size();
+		if (size != viewCount) return true;
+		if (size > 0 && display.get(size - 1) != lastView) return true;
+		int a = 0;
+		for (int i = 0; i < display.numDimensions(); i++) {
+			final AxisType axisType = display.axis(i).type();
+			if (axisType.isXY()) continue;
+			if (a >= axes.size() || axes.get(a++) != axisType) return true;
+		}
+		return a != axes.size();
+	}
+
+	/** Re-indexes all overlay views of the given display. */
+	void rebuild(final ImageDisplay display) {
+		axes.clear();
+		for (int i = 0; i < display.numDimensions(); i++) {
+			final AxisType axisType = display.axis(i).type();
+			if (!axisType.isXY()) axes.add(axisType);
+		}
+		planes.clear();
+		unpinned.clear();
+		filed.clear();
+		overlayViews.clear();
+		viewCount = 0;
+		lastView = null;
+		for (final DataView view : display) {
+			viewCount++;
+			lastView = view;
+			if (view instanceof OverlayView) index((OverlayView) view);
+		}
+	}
+
+	/** Adds an overlay view which was just appended to the display. */
+	void add(final OverlayView view) {
+		viewCount++;
+		lastView = view;
+		index(view);
+	}
+
+	/**
+	 * Files the given overlay view again, after its position or its overlay's
+	 * dimensions changed.
+	 *
+	 * @return false if the view is not indexed
+	 */
+	boolean refile(final OverlayView view) {
+		if (!filed.containsKey(view)) return false;
+		unfile(view);
+		file(view);
+		return true;
+	}
+
+	/** Gets the indexed views of the given overlay. */
+	List<OverlayView> views(final Overlay overlay) {
+		final List<OverlayView> views = overlayViews.get(overlay);
+		if (views == null) return Collections.emptyList();
+		return views;
+	}
+
+	/** Gets the key of the plane currently shown by the given display. */
+	Plane currentPlane(final ImageDisplay display) {
+		final long[] pos = new long[axes.size()];
+		for (int a = 0; a < pos.length; a++) {
+			pos[a] = display.getLongPosition(axes.get(a));
+		}
+		return new Plane(pos);
+	}
+
+	/**
+	 * Gets the overlay views which may be visible on the given plane: those
+	 * pinned to it, plus those spanning a non-XY axis.
+	 */
+	Collection<OverlayView> candidates(final Plane plane) {
+		final Set<OverlayView> pinned = planes.get(plane);
+		if (unpinned.isEmpty()) {
+			if (pinned == null) return Collections.emptyList();
+			return pinned;
+		}
+		final List<OverlayView> result = new ArrayList<>(unpinned);
+		if (pinned != null) result.addAll(pinned);
+		return result;
+	}
+
+	// -- Helper methods --
+
+	private void index(final OverlayView view) {
+		List<OverlayView> views = overlayViews.get(view.getData());
+		if (views == null) {
+			views = new ArrayList<>(1);
+			overlayViews.put(view.getData(), views);
+		}
+		views.add(view);
+		file(view);
+	}
+
+	private void file(final OverlayView view) {
+		final long[] pos = new long[axes.size()];
+		for (int a = 0; a < pos.length; a++) {
+			final AxisType axisType = axes.get(a);
+			if (view.getData().dimensionIndex(axisType) >= 0) {
+				unpinned.add(view);
+				filed.put(view, null);
+				return;
+			}
+			pos[a] = view.getLongPosition(axisType);
+		}
+		final Plane plane = new Plane(pos);
+		Set<OverlayView> views = planes.get(plane);
+		if (views == null) {
+			views = newIdentitySet();
+			planes.put(plane, views);
+		}
+		views.add(view);
+		filed.put(view, plane);
+	}
+
+	private void unfile(final OverlayView view) {
+		final Plane plane = filed.remove(view);
+		if (plane == null) {
+			unpinned.remove(view);
+			return;
+		}
+		final Set<OverlayView> views = planes.get(plane);
+		views.remove(view);
+		if (views.isEmpty()) planes.remove(plane);
+	}
+
+	private static Set<OverlayView> newIdentitySet() {
+		return Collections.newSetFromMap(new IdentityHashMap<OverlayView, Boolean>());
+	}
+
+	// -- Helper classes --
+
+	/** A position along the display's non-XY axes. */
+	static final class Plane {
+
+		private final long[] pos;
+
+		private Plane(final long[] pos) {
+			this.pos = pos;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			return o instanceof Plane && Arrays.equals(pos, ((Plane) o).pos);
+		}
+
+		@Override
+		public int hashCode() {
+			return Arrays.hashCode(pos);
+		}
+
+	}
+
+}
@@ -0,0 +1,174 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.ui.swing.viewer.image;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Registry of timing histograms for the stages of rendering an image display,
+ * plus a frame rate estimate.
+ * <p>
+ * Each stage keeps the most recent samples in a fixed-size ring buffer, from
+ * which percentiles are computed on demand. Typical usage:
+ * </p>
+ * <pre>
+ * final long start = metrics.start();
+ * projector.map();
+ * metrics.record(RenderMetrics.MAP, start);
+ * </pre>
+ */
+public class RenderMetrics {
+
+	/** Stage: projecting the current plane into the screen image. */
+	public static final String MAP = "map";
+
+	/** Stage: converting the screen image into a buffered image. */
+	public static final String BUFFER = "buffer";
+
+	/** Stage: updating the figures to match their data views. */
+	public static final String UPDATE = "update";
+
+	/** Stage: painting the JHotDraw drawing view. */
+	public static final String PAINT = "paint";
+
+	/** Stage: synchronizing the viewport between canvas and UI. */
+	public static final String SYNC = "sync";
+
+	/** Number of samples retained per histogram. */
+	private static final int CAPACITY = 512;
+
+	private final Map<String, Histogram> histograms = new LinkedHashMap<>();
+
+	/** Timestamps of the most recent frames, for the frame rate estimate. */
+	private final long[] frames = new long[64];
+	private int frameCount;
+
+	// -- RenderMetrics methods --
+
+	/** Gets the start timestamp of a stage, to be passed to {@link #record}. */
+	public long start() {
+		return System.nanoTime();
+	}
+
+	/** Records the time elapsed since the given start timestamp. */
+	public void record(final String stage, final long startNanos) {
+		histogram(stage).add(System.nanoTime() - startNanos);
+	}
+
+	/** Records the completion of a frame. */
+	public synchronized void frame() {
+		frames[frameCount++ % frames.length] = System.nanoTime();
+	}
+
+	/**
+	 * Gets the recent frame rate, in frames per second, or 0 if there are not
+	 * enough frames to tell.
+	 */
+	public synchronized double getFramesPerSecond() {
+		final int n = Math.min(frameCount, frames.length);
+		if (n < 2) return 0;
+		final long last = frames[(frameCount - 1) % frames.length];
+		final long first = frames[(frameCount - n) % frames.length];
+		if (last == first) return 0;
+		return (n - 1) * 1e9 / (last - first);
+	}
+
+	/** Gets the histogram of the given stage, creating it if needed. */
+	public synchronized Histogram histogram(final String stage) {
+		Histogram h = histograms.get(stage);
+		if (h == null) {
+			h = new Histogram(CAPACITY);
+			histograms.put(stage, h);
+		}
+		return h;
+	}
+
+	/** Gets the histograms of all stages recorded so far. */
+	public synchronized Map<String, Histogram> histograms() {
+		return Collections.unmodifiableMap(new LinkedHashMap<>(histograms));
+	}
+
+	/** Discards all samples and frames. */
+	public synchronized void clear() {
+		histograms.clear();
+		frameCount = 0;
+	}
+
+	// -- Helper classes --
+
+	/** A ring buffer of duration samples, in nanoseconds. */
+	public static class Histogram {
+
+		private final long[] samples;
+		private int count;
+
+		public Histogram(final int capacity) {
+			samples = new long[capacity];
+		}
+
+		public synchronized void add(final long nanos) {
+			samples[count++ % samples.length] = nanos;
+		}
+
+		/** Gets the total number of samples recorded. */
+		public synchronized int count() {
+			return count;
+		}
+
+		/**
+		 * Gets the given percentile of the retained samples, in milliseconds.
+		 *
+		 * @param p percentile, between 0 and 100
+		 */
+		public synchronized double percentile(final double p) {
+			final int n = Math.min(count, samples.length);
+			if (n == 0) return 0;
+			final long[] sorted = Arrays.copyOf(samples, n);
+			Arrays.sort(sorted);
+			final int index = (int) Math.ceil(p / 100 * n) - 1;
+			return sorted[Math.max(0, Math.min(n - 1, index))] / 1e6;
+		}
+
+		public double p50() {
+			return percentile(50);
+		}
+
+		public double p99() {
+			return percentile(99);
+		}
+
+	}
+
+}
@@ -0,0 +1,119 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.ui.swing.viewer.image;
+
+import java.awt.RenderingHints;
+
+/**
+ * Rendering hints used by a {@link JHotDrawImageCanvas} while the user is
+ * navigating (panning, zooming, dragging sliders or figures), and while the
+ * view is at rest.
+ * <p>
+ * The interactive hints favor speed: nearest neighbor interpolation, no
+ * antialiasing and normalized rather than pure strokes. Once no interaction
+ * happened for the idle delay, the view is repainted with the idle hints,
+ * which by default add nothing to the drawing view's own hints.
+ * </p>
+ */
+public class RenderingPolicy {
+
+	/** Default time without interaction before the idle hints apply, in ms. */
+	public static final int DEFAULT_IDLE_DELAY = 250;
+
+	private final RenderingHints interactiveHints;
+	private final RenderingHints idleHints;
+	private final int idleDelay;
+
+	/** Creates a policy with the default hints and idle delay. */
+	public RenderingPolicy() {
+		this(defaultInteractiveHints(), defaultIdleHints(), DEFAULT_IDLE_DELAY);
+	}
+
+	/**
+	 * Creates a policy with the given hints and idle delay.
+	 *
+	 * @param interactiveHints hints used while the user interacts with the view
+	 * @param idleHints hints used once the view is at rest
+	 * @param idleDelay time without interaction before the idle hints apply, in
+	 *          milliseconds
+	 */
+	public RenderingPolicy(final RenderingHints interactiveHints,
+		final RenderingHints idleHints, final int idleDelay)
+	{
+		if (idleDelay < 0) {
+			throw new IllegalArgumentException("Negative idle delay: " + idleDelay);
+		}
+		this.interactiveHints = (RenderingHints) interactiveHints.clone();
+		this.idleHints = (RenderingHints) idleHints.clone();
+		this.idleDelay = idleDelay;
+	}
+
+	// -- RenderingPolicy methods --
+
+	public RenderingHints getInteractiveHints() {
+		return (RenderingHints) interactiveHints.clone();
+	}
+
+	public RenderingHints getIdleHints() {
+		return (RenderingHints) idleHints.clone();
+	}
+
+	public int getIdleDelay() {
+		return idleDelay;
+	}
+
+	/** Gets the hints used by default while the user interacts with the view. */
+	public static RenderingHints defaultInteractiveHints() {
+		final RenderingHints hints = new RenderingHints(null);
+		hints.put(RenderingHints.KEY_INTERPOLATION,
+			RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+		hints.put(RenderingHints.KEY_ANTIALIASING,
+			RenderingHints.VALUE_ANTIALIAS_OFF);
+		hints.put(RenderingHints.KEY_TEXT_ANTIALIASING,
+			RenderingHints.VALUE_TEXT_ANTIALIAS_OFF);
+		hints.put(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_SPEED);
+		hints.put(RenderingHints.KEY_ALPHA_INTERPOLATION,
+			RenderingHints.VALUE_ALPHA_INTERPOLATION_SPEED);
+		hints.put(RenderingHints.KEY_STROKE_CONTROL,
+			RenderingHints.VALUE_STROKE_NORMALIZE);
+		return hints;
+	}
+
+	/**
+	 * Gets the hints used by default once the view is at rest. They are empty,
+	 * so that the view at rest is drawn exactly as without a policy.
+	 */
+	public static RenderingHints defaultIdleHints() {
+		return new RenderingHints(null);
+	}
+
+}
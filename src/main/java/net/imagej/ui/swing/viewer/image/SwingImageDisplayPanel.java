@@ -36,6 +36,7 @@ import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Component;
 import java.awt.Dimension;
+import java.awt.GraphicsEnvironment;
 import java.awt.Rectangle;
 import java.awt.event.AdjustmentEvent;
 import java.awt.event.AdjustmentListener;
@@ -200,8 +201,13 @@ public class SwingImageDisplayPanel extends JPanel implements ImageDisplayPanel
 	public void redraw() {
 		final DatasetView view = imageDisplayService.getActiveDatasetView(display);
 		if (view == null || view.getProjector() == null) return; // no active dataset
+		final RenderMetrics metrics = displayViewer.getCanvas().getMetrics();
+		long start = metrics.start();
 		view.getProjector().map();
+		metrics.record(RenderMetrics.MAP, start);
+		start = metrics.start();
 		displayViewer.getCanvas().update();
+		metrics.record(RenderMetrics.UPDATE, start);
 	}
 
 	// -- Event handlers --
@@ -318,6 +324,8 @@ public class SwingImageDisplayPanel extends JPanel implements ImageDisplayPanel
 	private double findFullyVisibleScale() {
 		final JHotDrawImageCanvas canvas = displayViewer.getCanvas();
 		final Dimension canvasSize = canvas.getPreferredSize();
+		// NB: Without a screen, there is no work space to fit the image into.
+		if (GraphicsEnvironment.isHeadless()) return 1;
 		final Rectangle deskBounds = StaticSwingUtils.getWorkSpaceBounds();
 
 		// calc height variables
@@ -0,0 +1,329 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.ui.swing.viewer.image;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+
+/**
+ * Draws images at integer magnifications without going through Java2D's
+ * scaling.
+ * <p>
+ * Only the source pixels within the clip are read, and each of them is
+ * replicated into a viewport-sized {@code int[]} buffer (nearest neighbor),
+ * which is then drawn unscaled. Successive device rows mapping to the same
+ * source row are copied rather than recomputed. Optionally, a pixel grid is
+ * drawn along the source pixel boundaries.
+ * </p>
+ */
+public class ZoomBlitter {
+
+	/** Smallest magnification at which images are blitted. */
+	public static final int MIN_ZOOM = 4;
+
+	/** Default smallest magnification at which the pixel grid is drawn. */
+	public static final int DEFAULT_MIN_GRID_ZOOM = 8;
+
+	private static final int ALPHA = 0xff000000;
+	private static final int RED = 0xff0000;
+	private static final int GREEN = 0xff00;
+	private static final int BLUE = 0xff;
+
+	private boolean enabled = true;
+	private Color gridColor;
+	private int minGridZoom = DEFAULT_MIN_GRID_ZOOM;
+
+	// -- viewport buffers, reused between blits --
+
+	private BufferedImage opaqueBuffer;
+	private BufferedImage translucentBuffer;
+	private int[] pixels;
+	private int[] sourceRow = new int[0];
+	private int[] runEnds = new int[0];
+	private int[] runSources = new int[0];
+	private boolean[] runBoundaries = new boolean[0];
+
+	// -- ZoomBlitter methods --
+
+	/** Gets whether images are blitted at integer magnifications. */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Sets whether images are blitted at integer magnifications. When disabled,
+	 * {@link #blit} always declines, and images are scaled by Java2D.
+	 */
+	public void setEnabled(final boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/** Gets the color of the pixel grid, or null if no grid is drawn. */
+	public Color getGridColor() {
+		return gridColor;
+	}
+
+	/** Sets the color of the pixel grid, or null to draw no grid. */
+	public void setGridColor(final Color gridColor) {
+		this.gridColor = gridColor;
+	}
+
+	/** Gets the smallest magnification at which the pixel grid is drawn. */
+	public int getMinGridZoom() {
+		return minGridZoom;
+	}
+
+	/** Sets the smallest magnification at which the pixel grid is drawn. */
+	public void setMinGridZoom(final int minGridZoom) {
+		if (minGridZoom < 1) {
+			throw new IllegalArgumentException("Invalid grid zoom: " + minGridZoom);
+		}
+		this.minGridZoom = minGridZoom;
+	}
+
+	/** Gets whether the given transform can be handled by {@link #blit}. */
+	public boolean canBlit(final AffineTransform tx) {
+		if (!enabled) return false;
+		final int type = tx.getType() &
+			~(AffineTransform.TYPE_TRANSLATION | AffineTransform.TYPE_UNIFORM_SCALE);
+		if (type != AffineTransform.TYPE_IDENTITY) return false;
+		final double scale = tx.getScaleX();
+		return scale >= MIN_ZOOM && scale == Math.rint(scale) &&
+			scale == tx.getScaleY();
+	}
+
+	/**
+	 * Draws the given image, with its upper left corner at the given position
+	 * in user space and one user space unit per image pixel.
+	 *
+	 * @return false if the transform of the graphics context is not an integer
+	 *         magnification (see {@link #canBlit}), in which case nothing was
+	 *         drawn
+	 */
+	public boolean blit(final Graphics2D g, final BufferedImage image,
+		final double x, final double y)
+	{
+		final AffineTransform tx = g.getTransform();
+		if (!canBlit(tx)) return false;
+
+		final int scale = (int) tx.getScaleX();
+		final double originX = tx.getTranslateX() + scale * x;
+		final double originY = tx.getTranslateY() + scale * y;
+		final int width = image.getWidth(), height = image.getHeight();
+
+		// device pixels whose centers lie within the image
+		final Rectangle area = new Rectangle(deviceStart(originX, scale, 0),
+			deviceStart(originY, scale, 0), 0, 0);
+		area.add(deviceStart(originX, scale, width), deviceStart(originY, scale,
+			height));
+		final Rectangle clip = g.getClipBounds();
+		if (clip != null) {
+			Rectangle2D.intersect(area, tx.createTransformedShape(clip).getBounds(),
+				area);
+		}
+		if (area.width <= 0 || area.height <= 0) return true;
+
+		final boolean grid = gridColor != null && scale >= minGridZoom;
+		final int gridRGB = grid ? gridColor.getRGB() : 0;
+		ensureBuffer(area.width, area.height);
+		final int stride = opaqueBuffer.getWidth();
+
+		// map device columns to runs of the same source column
+		int runCount = 0;
+		for (int dx = 0; dx < area.width; dx++) {
+			final int sx = source(area.x + dx, originX, scale, width);
+			if (runCount > 0 && runSources[runCount - 1] == sx) {
+				runEnds[runCount - 1]++;
+				continue;
+			}
+			runSources[runCount] = sx;
+			runEnds[runCount] = dx + 1;
+			runBoundaries[runCount] = area.x + dx == deviceStart(originX, scale, sx);
+			runCount++;
+		}
+		final int minX = runSources[0];
+		final int maxX = runSources[runCount - 1];
+
+		// direct access to the source samples, where possible
+		final int[] data = intData(image);
+		final int dataOffset, dataStride;
+		if (data == null) {
+			dataOffset = dataStride = 0;
+		}
+		else {
+			final WritableRaster raster = image.getRaster();
+			final SinglePixelPackedSampleModel sampleModel =
+				(SinglePixelPackedSampleModel) raster.getSampleModel();
+			dataStride = sampleModel.getScanlineStride();
+			dataOffset = raster.getDataBuffer().getOffset() + sampleModel.getOffset(
+				-raster.getSampleModelTranslateX(), -raster
+					.getSampleModelTranslateY());
+		}
+		final int alpha = image.getColorModel().hasAlpha() ? 0 : ALPHA;
+		int opacity = grid ? gridRGB : ALPHA;
+
+		int dy = 0;
+		while (dy < area.height) {
+			final int sy = source(area.y + dy, originY, scale, height);
+			final int rowStart = dy * stride;
+
+			// fill one device row from the source row
+			final int[] row;
+			final int rowOffset;
+			if (data == null) {
+				image.getRGB(minX, sy, maxX - minX + 1, 1, sourceRow, 0, maxX - minX +
+					1);
+				row = sourceRow;
+				rowOffset = -minX;
+			}
+			else {
+				row = data;
+				rowOffset = dataOffset + sy * dataStride;
+			}
+			int start = 0;
+			for (int r = 0; r < runCount; r++) {
+				final int end = runEnds[r];
+				final int rgb = row[rowOffset + runSources[r]] | alpha;
+				opacity &= rgb;
+				Arrays.fill(pixels, rowStart + start, rowStart + end, rgb);
+				if (grid && runBoundaries[r]) pixels[rowStart + start] = gridRGB;
+				start = end;
+			}
+
+			// replicate it for the other device rows of the same source row
+			int next = dy + 1;
+			while (next < area.height && source(area.y + next, originY, scale,
+				height) == sy)
+			{
+				System.arraycopy(pixels, rowStart, pixels, next * stride, area.width);
+				next++;
+			}
+			if (grid && area.y + dy == deviceStart(originY, scale, sy)) {
+				Arrays.fill(pixels, rowStart, rowStart + area.width, gridRGB);
+			}
+			dy = next;
+		}
+
+		final Graphics2D g2 = (Graphics2D) g.create();
+		try {
+			// NB: The buffer is in device space.
+			g2.setTransform(new AffineTransform());
+			// NB: Blending is much slower than copying, so avoid it if possible.
+			final BufferedImage buffer = (opacity & ALPHA) == ALPHA
+				? opaqueBuffer : translucentBuffer;
+			g2.drawImage(buffer, area.x, area.y, area.x + area.width, area.y +
+				area.height, 0, 0, area.width, area.height, null);
+		}
+		finally {
+			g2.dispose();
+		}
+		return true;
+	}
+
+	// -- Helper methods --
+
+	/** Gets the first device pixel whose center lies in the given source pixel. */
+	private static int deviceStart(final double origin, final int scale,
+		final int source)
+	{
+		return (int) Math.ceil(origin + (double) scale * source - 0.5);
+	}
+
+	/** Gets the source pixel in which the given device pixel's center lies. */
+	private static int source(final int device, final double origin,
+		final int scale, final int size)
+	{
+		final int s = (int) Math.floor((device + 0.5 - origin) / scale);
+		return s < 0 ? 0 : s >= size ? size - 1 : s;
+	}
+
+	/** Makes sure the buffers fit a viewport of the given size. */
+	private void ensureBuffer(final int w, final int h) {
+		if (opaqueBuffer == null || opaqueBuffer.getWidth() < w ||
+			opaqueBuffer.getHeight() < h)
+		{
+			final int bw = opaqueBuffer == null ? w : //
+				Math.max(w, opaqueBuffer.getWidth());
+			final int bh = opaqueBuffer == null ? h : //
+				Math.max(h, opaqueBuffer.getHeight());
+			// NB: Both views share the same pixels.
+			final DataBufferInt dataBuffer = new DataBufferInt(bw * bh);
+			opaqueBuffer = new BufferedImage(new DirectColorModel(24, RED, GREEN,
+				BLUE), Raster.createPackedRaster(dataBuffer, bw, bh, bw, new int[] {
+					RED, GREEN, BLUE }, null), false, null);
+			translucentBuffer = new BufferedImage(ColorModel.getRGBdefault(), Raster
+				.createPackedRaster(dataBuffer, bw, bh, bw, new int[] { RED, GREEN,
+					BLUE, ALPHA }, null), false, null);
+			pixels = dataBuffer.getData();
+		}
+		if (runEnds.length < w) {
+			sourceRow = new int[w];
+			runEnds = new int[w];
+			runSources = new int[w];
+			runBoundaries = new boolean[w];
+		}
+	}
+
+	/**
+	 * Gets the samples of the given image, if they are (A)RGB packed into ints
+	 * such that they can be copied as is, or null otherwise.
+	 */
+	private static int[] intData(final BufferedImage image) {
+		final ColorModel colorModel = image.getColorModel();
+		if (!(colorModel instanceof DirectColorModel)) return null;
+		final DirectColorModel dcm = (DirectColorModel) colorModel;
+		if (dcm.isAlphaPremultiplied() || dcm.getRedMask() != RED ||
+			dcm.getGreenMask() != GREEN || dcm.getBlueMask() != BLUE ||
+			dcm.hasAlpha() && dcm.getAlphaMask() != ALPHA)
+		{
+			return null;
+		}
+		final DataBuffer dataBuffer = image.getRaster().getDataBuffer();
+		if (!(dataBuffer instanceof DataBufferInt)) return null;
+		if (!(image.getRaster()
+			.getSampleModel() instanceof SinglePixelPackedSampleModel)) return null;
+		return ((DataBufferInt) dataBuffer).getData();
+	}
+
+}
@@ -0,0 +1,275 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.ui.swing.overlay;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.swing.SwingUtilities;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+
+import net.imagej.display.OverlayInfoList;
+
+import org.junit.Test;
+
+/**
+ * Tests the list data events fired by {@link OverlayListModel#flush()}.
+ */
+public class OverlayListModelTest {
+
+	@Test
+	public void testNothingPending() throws Exception {
+		final Fixture f = new Fixture(4);
+		f.flush();
+		f.assertEvents();
+		assertEquals(4, f.model.getSize());
+	}
+
+	@Test
+	public void testAppends() throws Exception {
+		final Fixture f = new Fixture(0);
+		f.list.count = 3;
+		f.onEDT(new Runnable() {
+
+			@Override
+			public void run() {
+				f.model.added();
+				f.model.added();
+				f.model.added();
+				// NB: The list only learns about the new rows when flushed.
+				assertEquals(0, f.model.getSize());
+				f.model.flush();
+			}
+		});
+		f.assertEvents("added 0-2");
+		assertEquals(3, f.model.getSize());
+	}
+
+	@Test
+	public void testUpdates() throws Exception {
+		final Fixture f = new Fixture(6);
+		f.onEDT(new Runnable() {
+
+			@Override
+			public void run() {
+				f.model.changed(4);
+				f.model.changed(1);
+				f.model.changed(2);
+				f.model.flush();
+			}
+		});
+		f.assertEvents("changed 1-4");
+	}
+
+	@Test
+	public void testAppendsAndUpdates() throws Exception {
+		final Fixture f = new Fixture(3);
+		f.list.count = 5;
+		f.onEDT(new Runnable() {
+
+			@Override
+			public void run() {
+				f.model.added();
+				f.model.changed(1);
+				f.model.changed(4);
+				f.model.flush();
+			}
+		});
+		// NB: The update of an added row is covered by its addition.
+		f.assertEvents("added 3-4", "changed 1-2");
+	}
+
+	@Test
+	public void testSingleRemoval() throws Exception {
+		final Fixture f = new Fixture(5);
+		f.list.count = 4;
+		f.onEDT(new Runnable() {
+
+			@Override
+			public void run() {
+				f.model.removed(2);
+				f.model.changed(0);
+				f.model.flush();
+			}
+		});
+		f.assertEvents("removed 2-2", "changed 0-0");
+		assertEquals(4, f.model.getSize());
+	}
+
+	@Test
+	public void testSeveralRemovals() throws Exception {
+		final Fixture f = new Fixture(6);
+		f.list.count = 4;
+		f.onEDT(new Runnable() {
+
+			@Override
+			public void run() {
+				f.model.removed(3);
+				f.model.removed(1);
+				f.model.flush();
+			}
+		});
+		// rows from the first removed one on shift; the list shrinks at the end
+		f.assertEvents("removed 4-5", "changed 1-3");
+	}
+
+	@Test
+	public void testRemovalAndAppend() throws Exception {
+		final Fixture f = new Fixture(4);
+		f.onEDT(new Runnable() {
+
+			@Override
+			public void run() {
+				f.model.removed(1);
+				f.model.added();
+				f.model.flush();
+			}
+		});
+		// same size, but rows from the removed one on changed
+		f.assertEvents("changed 1-3");
+	}
+
+	@Test
+	public void testRestructured() throws Exception {
+		final Fixture f = new Fixture(3);
+		f.list.count = 5;
+		f.onEDT(new Runnable() {
+
+			@Override
+			public void run() {
+				f.model.changed(4);
+				f.model.restructured();
+				f.model.flush();
+			}
+		});
+		f.assertEvents("added 3-4", "changed 0-2");
+	}
+
+	@Test
+	public void testRemoveAll() throws Exception {
+		final Fixture f = new Fixture(3);
+		f.list.count = 0;
+		f.onEDT(new Runnable() {
+
+			@Override
+			public void run() {
+				f.model.restructured();
+				f.model.flush();
+			}
+		});
+		f.assertEvents("removed 0-2");
+		assertEquals(0, f.model.getSize());
+	}
+
+	@Test
+	public void testQueuedFlush() throws Exception {
+		final Fixture f = new Fixture(2);
+		f.list.count = 3;
+		f.model.added();
+		f.model.changed(0);
+		// NB: The queued flush runs before this no-op.
+		f.flush();
+		f.assertEvents("added 2-2", "changed 0-0");
+	}
+
+	// -- Helper classes --
+
+	/** An overlay info list with a settable number of overlays. */
+	private static class CountingList extends OverlayInfoList {
+
+		private int count;
+
+		@Override
+		public int getOverlayInfoCount() {
+			return count;
+		}
+
+	}
+
+	/** A model over a {@link CountingList}, recording its events. */
+	private static class Fixture implements ListDataListener {
+
+		private final CountingList list = new CountingList();
+		private final OverlayListModel model;
+		private final List<String> events = new ArrayList<>();
+
+		private Fixture(final int count) {
+			list.count = count;
+			model = new OverlayListModel(list);
+			model.addListDataListener(this);
+		}
+
+		private void onEDT(final Runnable runnable) throws InterruptedException,
+			InvocationTargetException
+		{
+			SwingUtilities.invokeAndWait(runnable);
+		}
+
+		private void flush() throws InterruptedException,
+			InvocationTargetException
+		{
+			onEDT(new Runnable() {
+
+				@Override
+				public void run() {
+					model.flush();
+				}
+			});
+		}
+
+		private void assertEvents(final String... expected) {
+			assertEquals(Arrays.asList(expected), events);
+		}
+
+		@Override
+		public void intervalAdded(final ListDataEvent e) {
+			events.add("added " + e.getIndex0() + "-" + e.getIndex1());
+		}
+
+		@Override
+		public void intervalRemoved(final ListDataEvent e) {
+			events.add("removed " + e.getIndex0() + "-" + e.getIndex1());
+		}
+
+		@Override
+		public void contentsChanged(final ListDataEvent e) {
+			events.add("changed " + e.getIndex0() + "-" + e.getIndex1());
+		}
+
+	}
+
+}
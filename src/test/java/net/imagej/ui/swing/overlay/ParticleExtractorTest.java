@@ -0,0 +1,211 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.ui.swing.overlay;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Path2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import net.imglib2.img.array.ArrayImgs;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+import org.scijava.thread.ThreadService;
+
+/**
+ * Tests {@link ParticleExtractor}, by comparing its particles with the
+ * 8-connected components found by a flood fill, with as many bands, and thus
+ * band seams, as there are workers.
+ */
+public class ParticleExtractorTest {
+
+	private Context context;
+	private ThreadService threadService;
+
+	@Before
+	public void setUp() {
+		context = new Context(ThreadService.class);
+		threadService = context.service(ThreadService.class);
+	}
+
+	@After
+	public void tearDown() {
+		context.dispose();
+	}
+
+	@Test
+	public void testRandomImages() {
+		final Random random = new Random(48);
+		for (int i = 0; i < 20; i++) {
+			final int width = 1 + random.nextInt(60);
+			final int height = 1 + random.nextInt(60);
+			final byte[] pixels = new byte[width * height];
+			final int density = 30 + random.nextInt(40);
+			for (int p = 0; p < pixels.length; p++) {
+				if (random.nextInt(100) < density) pixels[p] = 1;
+			}
+			for (final int workers : new int[] { 1, 2, 3, 7, 64 }) {
+				assertSameAsFloodFill(pixels, width, height, workers);
+			}
+		}
+	}
+
+	@Test
+	public void testSeams() {
+		// with 4 workers, the bands of this 8 row image meet below rows 1, 3
+		// and 5, where the parts of each shape only touch diagonally or join
+		// further down
+		final String[] rows = {
+			"#...#..#.....#",
+			".#.#...#..#..#",
+			"..#....#.#...#",
+			"......#..#...#",
+			".##..#...#...#",
+			"#..#.....#####",
+			"#..#..........",
+			".##...#.#.#.#." };
+		final int width = rows[0].length(), height = rows.length;
+		final byte[] pixels = new byte[width * height];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				if (rows[y].charAt(x) == '#') pixels[y * width + x] = 1;
+			}
+		}
+		for (int workers = 1; workers <= height; workers++) {
+			assertSameAsFloodFill(pixels, width, height, workers);
+		}
+	}
+
+	@Test
+	public void testHoles() {
+		final int width = 9, height = 9;
+		final byte[] pixels = new byte[width * height];
+		for (int y = 1; y < 8; y++) {
+			for (int x = 1; x < 8; x++) {
+				if (x == 1 || x == 7 || y == 1 || y == 7 || x == 4 && y == 4) {
+					pixels[y * width + x] = 1;
+				}
+			}
+		}
+		final List<ParticleExtractor.Particle> particles =
+			assertSameAsFloodFill(pixels, width, height, 3);
+		// the ring encloses its hole, and the dot in it is a particle of its own
+		assertEquals(2, particles.size());
+		assertEquals(24, particles.get(0).getArea());
+		assertEquals(4, particles.get(0).getVertexCount());
+		assertEquals(1, particles.get(1).getArea());
+	}
+
+	// -- Helper methods --
+
+	/**
+	 * Asserts that the particles of the given binary image are its 8-connected
+	 * components, in raster order of their first pixel: each with the area of
+	 * its component, an outline starting at the top left corner of its first
+	 * pixel, and enclosing all of its pixels.
+	 */
+	private List<ParticleExtractor.Particle> assertSameAsFloodFill(
+		final byte[] pixels, final int width, final int height, final int workers)
+	{
+		final List<ParticleExtractor.Particle> particles = new ParticleExtractor(
+			threadService, workers).extract(ArrayImgs.unsignedBytes(pixels, width,
+				height), 0, 1, new long[2], 1, 1);
+		final List<int[]> components = floodFill(pixels, width, height);
+		final String where = width + " x " + height + ", " + workers + " workers";
+		assertEquals(where, components.size(), particles.size());
+		for (int c = 0; c < components.size(); c++) {
+			final int[] component = components.get(c);
+			final ParticleExtractor.Particle particle = particles.get(c);
+			assertEquals(where, component.length, particle.getArea());
+			assertEquals(where, component[0] % width, particle.getX(0));
+			assertEquals(where, component[0] / width, particle.getY(0));
+			final Path2D.Double outline = new Path2D.Double();
+			outline.moveTo(particle.getX(0), particle.getY(0));
+			for (int v = 1; v < particle.getVertexCount(); v++) {
+				outline.lineTo(particle.getX(v), particle.getY(v));
+			}
+			outline.closePath();
+			for (final int i : component) {
+				assertTrue(where, outline.contains(i % width + 0.5, i / width + 0.5));
+			}
+		}
+		return particles;
+	}
+
+	/**
+	 * Finds the 8-connected components of the set pixels, each as its pixel
+	 * indices starting with the first one in raster order.
+	 */
+	private static List<int[]> floodFill(final byte[] pixels, final int width,
+		final int height)
+	{
+		final boolean[] seen = new boolean[pixels.length];
+		final List<int[]> components = new ArrayList<>();
+		final int[] stack = new int[pixels.length];
+		for (int start = 0; start < pixels.length; start++) {
+			if (pixels[start] == 0 || seen[start]) continue;
+			final List<Integer> component = new ArrayList<>();
+			int top = 0;
+			stack[top++] = start;
+			seen[start] = true;
+			while (top > 0) {
+				final int i = stack[--top];
+				component.add(i);
+				final int x = i % width, y = i / width;
+				for (int dy = -1; dy <= 1; dy++) {
+					for (int dx = -1; dx <= 1; dx++) {
+						final int nx = x + dx, ny = y + dy;
+						if (nx < 0 || ny < 0 || nx >= width || ny >= height) continue;
+						final int n = ny * width + nx;
+						if (pixels[n] != 0 && !seen[n]) {
+							seen[n] = true;
+							stack[top++] = n;
+						}
+					}
+				}
+			}
+			final int[] indices = new int[component.size()];
+			for (int k = 0; k < indices.length; k++) {
+				indices[k] = component.get(k);
+			}
+			components.add(indices);
+		}
+		return components;
+	}
+
+}
@@ -0,0 +1,370 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.ui.swing.overlay;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.GeneralPath;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.imagej.axis.Axes;
+import net.imagej.axis.AxisType;
+import net.imagej.overlay.AngleOverlay;
+import net.imagej.overlay.CompositeOverlay;
+import net.imagej.overlay.EllipseOverlay;
+import net.imagej.overlay.GeneralPathOverlay;
+import net.imagej.overlay.LineOverlay;
+import net.imagej.overlay.Overlay;
+import net.imagej.overlay.PointOverlay;
+import net.imagej.overlay.PolygonOverlay;
+import net.imagej.overlay.RectangleOverlay;
+import net.imglib2.RealLocalizable;
+import net.imglib2.RealPoint;
+import net.imglib2.roi.GeneralPathRegionOfInterest;
+import net.imglib2.roi.PolygonRegionOfInterest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+import org.scijava.util.ColorRGB;
+
+/**
+ * Tests {@link RoiSetReader}, by reading back the overlays of every supported
+ * type written by a {@link RoiSetWriter}.
+ */
+public class RoiSetReaderTest {
+
+	private Context context;
+	private File file;
+
+	@Before
+	public void setUp() throws IOException {
+		context = new Context();
+		file = File.createTempFile("RoiSetReaderTest", ".roiset");
+	}
+
+	@After
+	public void tearDown() {
+		context.dispose();
+		file.delete();
+	}
+
+	@Test
+	public void testRectangle() throws IOException {
+		final RectangleOverlay r = new RectangleOverlay(context);
+		r.setOrigin(3.5, 0);
+		r.setOrigin(-2, 1);
+		r.setExtent(10, 0);
+		r.setExtent(20.25, 1);
+		final RectangleOverlay read = (RectangleOverlay) roundTrip(r);
+		assertEquals(3.5, read.getOrigin(0), 0);
+		assertEquals(-2, read.getOrigin(1), 0);
+		assertEquals(10, read.getExtent(0), 0);
+		assertEquals(20.25, read.getExtent(1), 0);
+	}
+
+	@Test
+	public void testEllipse() throws IOException {
+		final EllipseOverlay e = new EllipseOverlay(context);
+		e.setOrigin(40, 0);
+		e.setOrigin(30, 1);
+		e.setRadius(5, 0);
+		e.setRadius(7.5, 1);
+		final EllipseOverlay read = (EllipseOverlay) roundTrip(e);
+		assertEquals(40, read.getOrigin(0), 0);
+		assertEquals(30, read.getOrigin(1), 0);
+		assertEquals(5, read.getRadius(0), 0);
+		assertEquals(7.5, read.getRadius(1), 0);
+	}
+
+	@Test
+	public void testLine() throws IOException {
+		final LineOverlay l = new LineOverlay(context);
+		l.setLineStart(1, 0);
+		l.setLineStart(2, 1);
+		l.setLineEnd(30, 0);
+		l.setLineEnd(40, 1);
+		final LineOverlay read = (LineOverlay) roundTrip(l);
+		assertEquals(1, read.getLineStart(0), 0);
+		assertEquals(2, read.getLineStart(1), 0);
+		assertEquals(30, read.getLineEnd(0), 0);
+		assertEquals(40, read.getLineEnd(1), 0);
+	}
+
+	@Test
+	public void testAngle() throws IOException {
+		final AngleOverlay a = new AngleOverlay(context);
+		a.setPoint1(10, 0);
+		a.setPoint1(0, 1);
+		a.setCenter(0, 0);
+		a.setCenter(0, 1);
+		a.setPoint2(0, 0);
+		a.setPoint2(12.5, 1);
+		final AngleOverlay read = (AngleOverlay) roundTrip(a);
+		assertEquals(10, read.getPoint1(0), 0);
+		assertEquals(0, read.getPoint1(1), 0);
+		assertEquals(0, read.getCenter(0), 0);
+		assertEquals(0, read.getCenter(1), 0);
+		assertEquals(0, read.getPoint2(0), 0);
+		assertEquals(12.5, read.getPoint2(1), 0);
+	}
+
+	@Test
+	public void testPolygon() throws IOException {
+		final PolygonOverlay p = new PolygonOverlay(context);
+		final double[][] vertices = { { 0, 0 }, { 10, 1 }, { 12.5, 8 }, { 3, 9 } };
+		for (int v = 0; v < vertices.length; v++) {
+			p.getRegionOfInterest().addVertex(v, new RealPoint(vertices[v]));
+		}
+		final PolygonRegionOfInterest roi =
+			((PolygonOverlay) roundTrip(p)).getRegionOfInterest();
+		assertEquals(vertices.length, roi.getVertexCount());
+		for (int v = 0; v < vertices.length; v++) {
+			final RealLocalizable vertex = roi.getVertex(v);
+			assertEquals(vertices[v][0], vertex.getDoublePosition(0), 0);
+			assertEquals(vertices[v][1], vertex.getDoublePosition(1), 0);
+		}
+	}
+
+	@Test
+	public void testPoints() throws IOException {
+		final PointOverlay p = new PointOverlay(context);
+		final List<double[]> points = new ArrayList<>();
+		points.add(new double[] { 1, 2 });
+		points.add(new double[] { 3.25, 4 });
+		points.add(new double[] { 5, 6.5 });
+		p.setPoints(points);
+		final List<double[]> read = ((PointOverlay) roundTrip(p)).getPoints();
+		assertEquals(points.size(), read.size());
+		for (int i = 0; i < points.size(); i++) {
+			assertEquals(points.get(i)[0], read.get(i)[0], 0);
+			assertEquals(points.get(i)[1], read.get(i)[1], 0);
+		}
+	}
+
+	@Test
+	public void testPath() throws IOException {
+		final GeneralPathOverlay g = new GeneralPathOverlay(context);
+		final GeneralPathRegionOfInterest roi = g.getRegionOfInterest();
+		roi.moveTo(0, 0);
+		roi.lineTo(10, 0);
+		roi.quadTo(15, 5, 10, 10);
+		roi.cubicTo(8, 12, 2, 12, 0, 10);
+		roi.close();
+		roi.moveTo(3, 3);
+		roi.lineTo(6, 3);
+		roi.lineTo(6, 6);
+		roi.close();
+		final GeneralPathOverlay read = (GeneralPathOverlay) roundTrip(g);
+		assertSamePath(roi.getGeneralPath(), read.getRegionOfInterest()
+			.getGeneralPath());
+	}
+
+	@Test
+	public void testEvenOddPath() throws IOException {
+		final GeneralPathOverlay g = new GeneralPathOverlay(context);
+		final GeneralPathRegionOfInterest roi = g.getRegionOfInterest();
+		roi.getGeneralPath().setWindingRule(PathIterator.WIND_EVEN_ODD);
+		// a square with a square hole, both drawn in the same direction
+		roi.moveTo(0, 0);
+		roi.lineTo(10, 0);
+		roi.lineTo(10, 10);
+		roi.lineTo(0, 10);
+		roi.close();
+		roi.moveTo(3, 3);
+		roi.lineTo(7, 3);
+		roi.lineTo(7, 7);
+		roi.lineTo(3, 7);
+		roi.close();
+		final GeneralPath read = ((GeneralPathOverlay) roundTrip(g))
+			.getRegionOfInterest().getGeneralPath();
+		assertSamePath(roi.getGeneralPath(), read);
+		// the hole is only left out under the even-odd rule
+		assertTrue(read.contains(1, 1));
+		assertFalse(read.contains(5, 5));
+	}
+
+	@Test
+	public void testStyles() throws IOException {
+		final RectangleOverlay styled = rectangle();
+		styled.setLineColor(new ColorRGB(10, 20, 30));
+		styled.setLineWidth(2.5);
+		styled.setLineStyle(Overlay.LineStyle.DOT_DASH);
+		styled.setFillColor(new ColorRGB(200, 100, 0));
+		styled.setAlpha(77);
+		styled.setLineStartArrowStyle(Overlay.ArrowStyle.ARROW);
+		styled.setLineEndArrowStyle(Overlay.ArrowStyle.ARROW);
+		roundTrip(styled);
+
+		// a missing fill stays missing, rather than becoming the default fill
+		final RectangleOverlay unfilled = rectangle();
+		unfilled.setFillColor(null);
+		assertNull(roundTrip(unfilled).getFillColor());
+	}
+
+	@Test
+	public void testPositions() throws IOException {
+		final Map<AxisType, Long> position = new LinkedHashMap<>();
+		position.put(Axes.Z, 3L);
+		position.put(Axes.TIME, 1L);
+		position.put(Axes.X, 5L);
+		final RectangleOverlay r = rectangle();
+		final RoiSetWriter writer = new RoiSetWriter(file);
+		try {
+			assertTrue(writer.write(r, position));
+			assertTrue(writer.write(rectangle()));
+		}
+		finally {
+			writer.close();
+		}
+		final RoiSetReader reader = new RoiSetReader(file);
+		try {
+			final Map<AxisType, Long> expected = new LinkedHashMap<>();
+			expected.put(Axes.Z, 3L);
+			expected.put(Axes.TIME, 1L);
+			assertEquals(expected, reader.getPosition(0));
+			assertTrue(reader.getPosition(1).isEmpty());
+			// the position does not get in the way of the geometry
+			assertEquals(2, reader.createOverlay(0, context).realMin(0), 0);
+		}
+		finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	public void testIndex() throws IOException {
+		final RectangleOverlay named = rectangle();
+		named.setName("n\u00e4med");
+		final RoiSetWriter writer = new RoiSetWriter(file);
+		try {
+			assertTrue(writer.write(named));
+			assertTrue(writer.write(rectangle()));
+			assertFalse(writer.write(new CompositeOverlay(context)));
+			assertEquals(2, writer.getCount());
+		}
+		finally {
+			writer.close();
+		}
+		final RoiSetReader reader = new RoiSetReader(file);
+		try {
+			assertEquals(2, reader.getCount());
+			assertEquals("n\u00e4med", reader.getName(0));
+			assertNull(reader.getName(1));
+			assertEquals(new Rectangle2D.Double(2, 3, 4, 5), reader.getBounds(0));
+		}
+		finally {
+			reader.close();
+		}
+	}
+
+	// -- Helper methods --
+
+	private RectangleOverlay rectangle() {
+		final RectangleOverlay r = new RectangleOverlay(context);
+		r.setOrigin(2, 0);
+		r.setOrigin(3, 1);
+		r.setExtent(4, 0);
+		r.setExtent(5, 1);
+		return r;
+	}
+
+	/**
+	 * Writes the given overlay to the file, reads it back, and asserts that its
+	 * type, name and style survived.
+	 */
+	private Overlay roundTrip(final Overlay overlay) throws IOException {
+		overlay.setName(overlay.getClass().getSimpleName());
+		final RoiSetWriter writer = new RoiSetWriter(file);
+		try {
+			assertTrue(writer.write(overlay));
+		}
+		finally {
+			writer.close();
+		}
+		final RoiSetReader reader = new RoiSetReader(file);
+		final Overlay read;
+		try {
+			assertEquals(1, reader.getCount());
+			read = reader.createOverlay(0, context);
+		}
+		finally {
+			reader.close();
+		}
+		assertEquals(overlay.getClass(), read.getClass());
+		assertEquals(overlay.getName(), read.getName());
+		assertEquals(RoiSetWriter.packColor(overlay.getLineColor()), RoiSetWriter
+			.packColor(read.getLineColor()));
+		assertEquals(overlay.getLineWidth(), read.getLineWidth(), 0);
+		assertEquals(overlay.getLineStyle(), read.getLineStyle());
+		assertEquals(RoiSetWriter.packColor(overlay.getFillColor()), RoiSetWriter
+			.packColor(read.getFillColor()));
+		assertEquals(overlay.getAlpha(), read.getAlpha());
+		assertEquals(overlay.getLineStartArrowStyle(), read
+			.getLineStartArrowStyle());
+		assertEquals(overlay.getLineEndArrowStyle(), read.getLineEndArrowStyle());
+		return read;
+	}
+
+	private static void assertSamePath(final GeneralPath expected,
+		final GeneralPath actual)
+	{
+		assertEquals(expected.getWindingRule(), actual.getWindingRule());
+		final PathIterator e = expected.getPathIterator(null);
+		final PathIterator a = actual.getPathIterator(null);
+		final double[] ec = new double[6], ac = new double[6];
+		while (!e.isDone()) {
+			assertFalse(a.isDone());
+			Arrays.fill(ec, 0);
+			Arrays.fill(ac, 0);
+			assertEquals(e.currentSegment(ec), a.currentSegment(ac));
+			assertArrayEquals(ec, ac, 0);
+			e.next();
+			a.next();
+		}
+		assertTrue(a.isDone());
+	}
+
+}
@@ -0,0 +1,271 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.ui.swing.overlay;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Shape;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link SegmentIndex}, by comparing its containment and proximity tests
+ * with those of {@link Path2D}.
+ */
+public class SegmentIndexTest {
+
+	private static final int SAMPLES = 20000;
+
+	@Test
+	public void testConvexPolygon() {
+		final Path2D.Double path = new Path2D.Double();
+		path.moveTo(10, 10);
+		path.lineTo(90, 20);
+		path.lineTo(70, 80);
+		path.lineTo(20, 60);
+		path.closePath();
+		assertSameAsPath(path);
+	}
+
+	@Test
+	public void testSelfIntersectingEvenOdd() {
+		assertSameAsPath(star(Path2D.WIND_EVEN_ODD));
+	}
+
+	@Test
+	public void testSelfIntersectingNonZero() {
+		assertSameAsPath(star(Path2D.WIND_NON_ZERO));
+	}
+
+	@Test
+	public void testNestedWinding() {
+		for (final int rule : new int[] { Path2D.WIND_EVEN_ODD,
+			Path2D.WIND_NON_ZERO })
+		{
+			// same orientation: the inner square is wound twice
+			final Path2D.Double same = new Path2D.Double(rule);
+			square(same, 0, 0, 100, false);
+			square(same, 25, 25, 50, false);
+			assertSameAsPath(same);
+
+			// opposite orientation: the inner square is a hole either way
+			final Path2D.Double hole = new Path2D.Double(rule);
+			square(hole, 0, 0, 100, false);
+			square(hole, 25, 25, 50, true);
+			assertSameAsPath(hole);
+		}
+		final Path2D.Double same = new Path2D.Double(Path2D.WIND_NON_ZERO);
+		square(same, 0, 0, 100, false);
+		square(same, 25, 25, 50, false);
+		assertTrue(new SegmentIndex(same).contains(50.5, 50.5));
+		final Path2D.Double hole = new Path2D.Double(Path2D.WIND_NON_ZERO);
+		square(hole, 0, 0, 100, false);
+		square(hole, 25, 25, 50, true);
+		assertFalse(new SegmentIndex(hole).contains(50.5, 50.5));
+	}
+
+	@Test
+	public void testUnclosedSubpaths() {
+		final Path2D.Double path = new Path2D.Double();
+		path.moveTo(0, 0);
+		path.lineTo(60, 5);
+		path.lineTo(30, 50);
+		path.moveTo(50, 50);
+		path.lineTo(95, 60);
+		path.lineTo(70, 95);
+		path.lineTo(55, 80);
+		assertSameAsPath(path);
+
+		// the implicit closing edge is not part of the outline
+		final SegmentIndex index = new SegmentIndex(path);
+		assertEquals(5, index.getEdgeCount());
+		assertFalse(index.isNear(15, 25, 1));
+		assertTrue(index.isNear(30, 2.5, 1));
+	}
+
+	@Test
+	public void testCurves() {
+		final Path2D.Double path = new Path2D.Double(Path2D.WIND_EVEN_ODD);
+		path.append(new Ellipse2D.Double(5, 10, 80, 60), false);
+		path.append(new Ellipse2D.Double(30, 30, 50, 50), false);
+		path.moveTo(0, 100);
+		path.curveTo(30, 0, 60, 200, 100, 90);
+		path.quadTo(50, 50, 0, 100);
+		path.closePath();
+		assertSameAsPath(path);
+	}
+
+	@Test
+	public void testManyEdges() {
+		final Random random = new Random(40);
+		final Path2D.Double path = new Path2D.Double(Path2D.WIND_NON_ZERO);
+		path.moveTo(50, 50);
+		for (int i = 0; i < 2000; i++) {
+			path.lineTo(100 * random.nextDouble(), 100 * random.nextDouble());
+		}
+		path.closePath();
+		assertSameAsPath(path);
+	}
+
+	@Test
+	public void testDegenerate() {
+		final SegmentIndex empty = new SegmentIndex(new Path2D.Double());
+		assertEquals(0, empty.getEdgeCount());
+		assertFalse(empty.contains(0, 0));
+		assertFalse(empty.isNear(0, 0, 10));
+
+		final Path2D.Double horizontal = new Path2D.Double();
+		horizontal.moveTo(10, 20);
+		horizontal.lineTo(90, 20);
+		final SegmentIndex line = new SegmentIndex(horizontal);
+		assertFalse(line.contains(50, 20));
+		assertTrue(line.isNear(50, 21.5, 2));
+		assertFalse(line.isNear(50, 22.5, 2));
+		assertTrue(line.isNear(8.5, 20, 2));
+		assertFalse(line.isNear(92.5, 20, 2));
+	}
+
+	// -- Helper methods --
+
+	/**
+	 * Asserts that the index of the given shape agrees with {@link Path2D} on
+	 * random points in and around the shape: for containment with the
+	 * flattened shape, and for proximity with the distance to its flattened
+	 * outline.
+	 */
+	private static void assertSameAsPath(final Shape shape) {
+		final Path2D.Double flat = new Path2D.Double(shape
+			.getPathIterator(null).getWindingRule());
+		flat.append(shape.getPathIterator(null, 0.1), false);
+		final double[] outline = outline(shape);
+
+		final SegmentIndex index = new SegmentIndex(shape);
+		final Rectangle2D bounds = shape.getBounds2D();
+		final Random random = new Random(7);
+		for (int i = 0; i < SAMPLES; i++) {
+			final double x = bounds.getX() - 10 + (bounds.getWidth() + 20) * random
+				.nextDouble();
+			final double y = bounds.getY() - 10 + (bounds.getHeight() + 20) * random
+				.nextDouble();
+			final String where = "(" + x + ", " + y + ")";
+			assertEquals(where, flat.contains(x, y), index.contains(x, y));
+			final double tolerance = 3 * random.nextDouble();
+			final double distance = distance(outline, x, y);
+			// NB: Ignore points whose distance rounds either way.
+			if (Math.abs(distance - tolerance) < 1e-9) continue;
+			assertEquals(where, distance <= tolerance, index.isNear(x, y,
+				tolerance));
+		}
+	}
+
+	/** Gets the explicit edges of the flattened shape: x0, y0, x1, y1 each. */
+	private static double[] outline(final Shape shape) {
+		final PathIterator iter = shape.getPathIterator(null, 0.1);
+		double[] edges = new double[0];
+		final double[] c = new double[6];
+		double startX = 0, startY = 0, lastX = 0, lastY = 0;
+		while (!iter.isDone()) {
+			final int type = iter.currentSegment(c);
+			if (type == PathIterator.SEG_MOVETO) {
+				startX = lastX = c[0];
+				startY = lastY = c[1];
+			}
+			else {
+				final double x = type == PathIterator.SEG_CLOSE ? startX : c[0];
+				final double y = type == PathIterator.SEG_CLOSE ? startY : c[1];
+				final int n = edges.length;
+				edges = Arrays.copyOf(edges, n + 4);
+				edges[n] = lastX;
+				edges[n + 1] = lastY;
+				edges[n + 2] = x;
+				edges[n + 3] = y;
+				lastX = x;
+				lastY = y;
+			}
+			iter.next();
+		}
+		return edges;
+	}
+
+	private static double distance(final double[] edges, final double x,
+		final double y)
+	{
+		double min = Double.POSITIVE_INFINITY;
+		for (int o = 0; o < edges.length; o += 4) {
+			min = Math.min(min, Line2D.ptSegDist(edges[o], edges[o + 1],
+				edges[o + 2], edges[o + 3], x, y));
+		}
+		return min;
+	}
+
+	/** Creates a self-intersecting five-pointed star. */
+	private static Path2D.Double star(final int rule) {
+		final Path2D.Double path = new Path2D.Double(rule);
+		for (int i = 0; i < 5; i++) {
+			final double angle = Math.PI / 2 + i * 4 * Math.PI / 5;
+			final double x = 50 + 45 * Math.cos(angle);
+			final double y = 50 - 45 * Math.sin(angle);
+			if (i == 0) path.moveTo(x, y);
+			else path.lineTo(x, y);
+		}
+		path.closePath();
+		return path;
+	}
+
+	/** Appends a closed square, clockwise or counterclockwise. */
+	private static void square(final Path2D.Double path, final double x,
+		final double y, final double size, final boolean counterclockwise)
+	{
+		path.moveTo(x, y);
+		if (counterclockwise) {
+			path.lineTo(x, y + size);
+			path.lineTo(x + size, y + size);
+			path.lineTo(x + size, y);
+		}
+		else {
+			path.lineTo(x + size, y);
+			path.lineTo(x + size, y + size);
+			path.lineTo(x, y + size);
+		}
+		path.closePath();
+	}
+
+}
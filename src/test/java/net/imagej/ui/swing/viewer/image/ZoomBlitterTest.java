@@ -0,0 +1,207 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2016 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imagej.ui.swing.viewer.image;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link ZoomBlitter}, by comparing its output with that of Java2D's
+ * nearest neighbor scaling.
+ */
+public class ZoomBlitterTest {
+
+	private static final int WIDTH = 120, HEIGHT = 90;
+
+	private static final int BACKGROUND = 0xff204060;
+
+	@Test
+	public void testOpaqueImage() {
+		final BufferedImage image = randomImage(BufferedImage.TYPE_INT_RGB, 13, 11);
+		assertSameAsJava2D(image, AffineTransform.getScaleInstance(4, 4), 0, 0,
+			null);
+		assertSameAsJava2D(image, transform(5, 3, 7), 2, 1, null);
+	}
+
+	@Test
+	public void testFractionalTranslation() {
+		final BufferedImage image = randomImage(BufferedImage.TYPE_INT_RGB, 17, 9);
+		assertSameAsJava2D(image, transform(6, 2.3, 7.6), 0.25, -0.5, null);
+		assertSameAsJava2D(image, transform(4, -5.5, 1.49), 0, 0, null);
+	}
+
+	@Test
+	public void testClip() {
+		final BufferedImage image = randomImage(BufferedImage.TYPE_INT_RGB, 25, 20);
+		assertSameAsJava2D(image, transform(8, -12, -7), 0, 0, new Rectangle(3, 2,
+			7, 5));
+	}
+
+	@Test
+	public void testTranslucentImage() {
+		final BufferedImage image =
+			randomImage(BufferedImage.TYPE_INT_ARGB, 12, 10);
+		assertSameAsJava2D(image, transform(5, 1, 2), 0, 0, null);
+	}
+
+	@Test
+	public void testNonIntImage() {
+		final BufferedImage image =
+			randomImage(BufferedImage.TYPE_3BYTE_BGR, 14, 12);
+		assertSameAsJava2D(image, transform(4, 3, 3), 0, 0, null);
+	}
+
+	@Test
+	public void testDeclines() {
+		final ZoomBlitter blitter = new ZoomBlitter();
+		assertFalse(blitter.canBlit(AffineTransform.getScaleInstance(2, 2)));
+		assertFalse(blitter.canBlit(AffineTransform.getScaleInstance(4.5, 4.5)));
+		assertFalse(blitter.canBlit(AffineTransform.getScaleInstance(4, 5)));
+		assertFalse(blitter.canBlit(AffineTransform.getRotateInstance(0.1)));
+		assertTrue(blitter.canBlit(transform(4, 0.5, 0.5)));
+		blitter.setEnabled(false);
+		assertFalse(blitter.canBlit(transform(4, 0, 0)));
+
+		final BufferedImage image = randomImage(BufferedImage.TYPE_INT_RGB, 4, 4);
+		final BufferedImage dest = background();
+		final Graphics2D g = dest.createGraphics();
+		g.transform(AffineTransform.getScaleInstance(2.5, 2.5));
+		assertFalse(new ZoomBlitter().blit(g, image, 0, 0));
+		g.dispose();
+		assertPixels(background(), dest);
+	}
+
+	@Test
+	public void testGrid() {
+		final BufferedImage image = randomImage(BufferedImage.TYPE_INT_RGB, 6, 5);
+		final int scale = 8, tx = 3, ty = 2;
+		final ZoomBlitter blitter = new ZoomBlitter();
+		blitter.setGridColor(Color.red);
+		final BufferedImage dest = background();
+		final Graphics2D g = dest.createGraphics();
+		g.transform(transform(scale, tx, ty));
+		assertTrue(blitter.blit(g, image, 0, 0));
+		g.dispose();
+		final int grid = Color.red.getRGB();
+		for (int y = 0; y < image.getHeight() * scale; y++) {
+			for (int x = 0; x < image.getWidth() * scale; x++) {
+				final int expected = x % scale == 0 || y % scale == 0 ? grid : image
+					.getRGB(x / scale, y / scale);
+				assertEquals("(" + x + ", " + y + ")", expected, dest.getRGB(tx + x,
+					ty + y));
+			}
+		}
+	}
+
+	// -- Helper methods --
+
+	private static void assertSameAsJava2D(final BufferedImage image,
+		final AffineTransform tx, final double x, final double y,
+		final Rectangle clip)
+	{
+		final BufferedImage expected = background();
+		final Graphics2D eg = expected.createGraphics();
+		eg.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+			RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+		eg.transform(tx);
+		if (clip != null) eg.clip(clip);
+		eg.drawImage(image, AffineTransform.getTranslateInstance(x, y), null);
+		eg.dispose();
+
+		final BufferedImage actual = background();
+		final Graphics2D ag = actual.createGraphics();
+		ag.transform(tx);
+		if (clip != null) ag.clip(clip);
+		assertTrue(new ZoomBlitter().blit(ag, image, x, y));
+		ag.dispose();
+
+		assertPixels(expected, actual);
+	}
+
+	private static void assertPixels(final BufferedImage expected,
+		final BufferedImage actual)
+	{
+		for (int y = 0; y < HEIGHT; y++) {
+			for (int x = 0; x < WIDTH; x++) {
+				assertEquals("(" + x + ", " + y + ")", expected.getRGB(x, y), actual
+					.getRGB(x, y));
+			}
+		}
+	}
+
+	private static AffineTransform transform(final double scale,
+		final double tx, final double ty)
+	{
+		final AffineTransform transform = AffineTransform.getTranslateInstance(tx,
+			ty);
+		transform.scale(scale, scale);
+		return transform;
+	}
+
+	private static BufferedImage background() {
+		final BufferedImage image =
+			new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+		final Graphics2D g = image.createGraphics();
+		g.setColor(new Color(BACKGROUND));
+		g.fillRect(0, 0, WIDTH, HEIGHT);
+		g.dispose();
+		return image;
+	}
+
+	private static BufferedImage randomImage(final int type, final int width,
+		final int height)
+	{
+		final Random random = new Random(width * 31 + height);
+		final BufferedImage image = new BufferedImage(width, height, type);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				// NB: Alpha is fully opaque or fully transparent, so that blending
+				// is exact.
+				final int alpha = random.nextInt(4) == 0 ? 0 : 0xff000000;
+				image.setRGB(x, y, alpha | random.nextInt(0x1000000));
+			}
+		}
+		return image;
+	}
+
+}